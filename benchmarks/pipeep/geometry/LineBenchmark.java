@@ -0,0 +1,39 @@
+package pipeep.geometry;
+
+import pipeep.data.RandomNumber;
+import pipeep.geometry.data.NodeProvider;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of intersecting pairs of random lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LineBenchmark {
+	Line[] lines;
+	int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		RandomNumber.rand.setSeed(1);
+		lines = new Line[1024];
+		for(int i = 0; i < lines.length; ++i) {
+			lines[i] = new Line(NodeProvider.getRandomNode(),
+			                    NodeProvider.getRandomNode());
+		}
+	}
+	
+	@Benchmark
+	public boolean doesIntersect() {
+		Line a = lines[next], b = lines[next + 1];
+		next = (next + 2) % lines.length;
+		return a.doesIntersect(b);
+	}
+}
@@ -0,0 +1,45 @@
+package pipeep.geometry;
+
+import pipeep.data.RandomNumber;
+import pipeep.geometry.data.PolygonProvider;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of triangulating and expanding a large concave polygon, of a
+ * growing number of vertexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PolygonBenchmark {
+	@Param({"16", "128", "1024", "8192"})
+	public int vertexes;
+	
+	Node[] nodes;
+	Polygon polygon;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		RandomNumber.rand.setSeed(vertexes);
+		polygon = PolygonProvider.getConcavePolygon(new Node(0., 0.), 100.,
+		                                            vertexes);
+		nodes = polygon.getNodes();
+	}
+	
+	@Benchmark
+	public Triangle[] getTriangles() {
+		// triangles are cached, so start from a new polygon every time
+		return new Polygon(nodes).getTriangles();
+	}
+	
+	@Benchmark
+	public Polygon getExpanded() {
+		return polygon.getExpanded(1.);
+	}
+}
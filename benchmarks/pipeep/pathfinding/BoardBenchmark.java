@@ -0,0 +1,125 @@
+package pipeep.pathfinding;
+
+import pipeep.data.RandomNumber;
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.PolygonProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the queries of a <code>Board</code>, on generated boards of
+ * growing sizes. "Warm" benchmarks query a board whose visibility graph was
+ * precomputed beforehand, while "cold" ones query a brand new board every
+ * time, so they include building every cache the query needs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BoardBenchmark {
+	private static final PathSearch BIDIRECTIONAL = new BidirectionalSearch();
+	
+	/**
+	 * The kind of board: randomly scattered squares, a maze of corridors, or
+	 * a few large concave polygons.
+	 */
+	@Param({"scattered", "maze", "concave"})
+	public String layout;
+	
+	/**
+	 * The number of squares, of maze cells, or of vertexes per concave
+	 * polygon, depending on the layout.
+	 */
+	@Param({"16", "64", "256"})
+	public int size;
+	
+	Polygon[] polygons;
+	Board board;
+	Node[] ends; // pairs of endpoints, queried in turn
+	int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws InterruptedException {
+		RandomNumber.rand.setSeed(size);
+		polygons = getBoard(layout, size).toArray(new Polygon[0]);
+		board = new Board(polygons);
+		board.precomputeVisibilityGraph();
+		List<Node> nodes = new ArrayList<Node>(board.getNodes());
+		ends = new Node[256];
+		for(int i = 0; i < ends.length; ++i) {
+			ends[i] = nodes.get(RandomNumber.rand.nextInt(nodes.size()));
+		}
+	}
+	
+	static Board getBoard(String layout, int size) {
+		if(layout.equals("scattered")) {
+			return BoardProvider.getScatteredBoard(size);
+		} if(layout.equals("maze")) {
+			return BoardProvider.getMazeBoard((int)Math.ceil(Math.sqrt(size)),
+			                                  10.);
+		}
+		Board b = new Board();
+		for(int i = 0; i < 4; ++i) {
+			b.add(PolygonProvider.getConcavePolygon(
+				new Node(i % 2 * 30., i / 2 * 30.), 12., size
+			));
+		}
+		return b;
+	}
+	
+	Node getA() {
+		return ends[next];
+	}
+	
+	Node getB() {
+		Node b = ends[next + 1];
+		next = (next + 2) % ends.length;
+		return b;
+	}
+	
+	/**
+	 * A brand new board, with the same polygons, for every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class ColdBoard {
+		Board board;
+		
+		@Setup(Level.Invocation)
+		public void setUp(BoardBenchmark warm) {
+			board = new Board(warm.polygons);
+		}
+	}
+	
+	@Benchmark
+	public List<Node> getShortestPathWarm() {
+		return board.getShortestPath(getA(), getB());
+	}
+	
+	@Benchmark
+	public List<Node> getShortestPathBidirectional() {
+		return BIDIRECTIONAL.getShortestPath(board, getA(), getB());
+	}
+	
+	@Benchmark
+	public List<Node> getShortestPathCold(ColdBoard cold) {
+		return cold.board.getShortestPath(getA(), getB());
+	}
+	
+	@Benchmark
+	public boolean isVisibleWarm() {
+		return board.isVisible(getA(), getB());
+	}
+	
+	@Benchmark
+	public boolean isVisibleCold(ColdBoard cold) {
+		return cold.board.isVisible(getA(), getB());
+	}
+}
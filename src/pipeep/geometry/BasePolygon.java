@@ -2,11 +2,17 @@ package pipeep.geometry;
 
 import pipeep.arithmetic.Rounding;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 public abstract class BasePolygon {
 	// Lazily evaluated
 	private Line[] lines = null;
 	private double perimeter = -1.;
 	private Node center = null;
+	private double minX, minY, maxX, maxY;
+	private boolean boundsInit = false; // aids lazy evaluation
+	private Node[] convexHull = null;
 	
 	private Node[] nodes;
 	
@@ -53,6 +59,9 @@ public abstract class BasePolygon {
 	 * original :-P
 	 */
 	public boolean containsNodeInArea(Node p) {
+		if(!isInBounds(p)) {
+			return false;
+		}
 		boolean result = false;
 		for(int i = 1; i <= nodes.length; ++i) {
 			Node p1 = nodes[i % nodes.length];
@@ -108,6 +117,9 @@ public abstract class BasePolygon {
 	public abstract boolean doesIntersectLine(Line l);
 	
 	public boolean doesIntersectPolygon(BasePolygon poly) {
+		if(!mayIntersectPolygon(poly)) {
+			return false;
+		}
 		for(Line i : getLines()) {
 			for(Line k : poly.getLines()) {
 				if(i.doesIntersect(k, true)) {
@@ -129,4 +141,152 @@ public abstract class BasePolygon {
 		}
 		return center;
 	}
+	
+	private void initBounds() {
+		minX = minY = Double.POSITIVE_INFINITY;
+		maxX = maxY = Double.NEGATIVE_INFINITY;
+		for(Node n : nodes) {
+			minX = Math.min(minX, n.getX());
+			minY = Math.min(minY, n.getY());
+			maxX = Math.max(maxX, n.getX());
+			maxY = Math.max(maxY, n.getY());
+		}
+		boundsInit = true;
+	}
+	
+	/**
+	 * The lower horizontal limit of the axis-aligned bounding box of this
+	 * polygon.
+	 */
+	public double getMinX() {
+		if(!boundsInit) { initBounds(); }
+		return minX;
+	}
+	
+	public double getMinY() {
+		if(!boundsInit) { initBounds(); }
+		return minY;
+	}
+	
+	public double getMaxX() {
+		if(!boundsInit) { initBounds(); }
+		return maxX;
+	}
+	
+	public double getMaxY() {
+		if(!boundsInit) { initBounds(); }
+		return maxY;
+	}
+	
+	/**
+	 * Tests if the node lies within the axis-aligned bounding box of this
+	 * polygon, give or take rounding errors. If it does not, it cannot be
+	 * within the area of the polygon.
+	 */
+	public boolean isInBounds(Node p) {
+		return Rounding.isGreaterOrEqual(p.getX(), getMinX()) &&
+		       Rounding.isLessOrEqual(p.getX(), getMaxX()) &&
+		       Rounding.isGreaterOrEqual(p.getY(), getMinY()) &&
+		       Rounding.isLessOrEqual(p.getY(), getMaxY());
+	}
+	
+	/**
+	 * A cheap, conservative first-stage test for line intersection, using the
+	 * bounding box and, for larger polygons, the convex hull of this polygon.
+	 * 
+	 * @return  <code>false</code> if the line is guaranteed not to touch this
+	 *          polygon, <code>true</code> if it might.
+	 */
+	public boolean mayIntersectLine(Line l) {
+		Node a = l.getNodeA();
+		Node b = l.getNodeB();
+		if(Rounding.isLessThan(Math.max(a.getX(), b.getX()), getMinX()) ||
+		   Rounding.isGreaterThan(Math.min(a.getX(), b.getX()), getMaxX()) ||
+		   Rounding.isLessThan(Math.max(a.getY(), b.getY()), getMinY()) ||
+		   Rounding.isGreaterThan(Math.min(a.getY(), b.getY()), getMaxY())) {
+			return false;
+		}
+		if(nodes.length <= 4) { // the hull isn't worth it
+			return true;
+		}
+		Node[] hull = getConvexHull();
+		// look for a separating axis, first amongst the edges of the hull
+		for(int i = 0; i < hull.length; ++i) {
+			Node p = hull[i];
+			Node q = hull[(i + 1) % hull.length];
+			if(isStrictlyRight(p, q, a) && isStrictlyRight(p, q, b)) {
+				return false;
+			}
+		}
+		// then along the line itself
+		boolean left = false, right = false;
+		for(Node p : hull) {
+			left |= !isStrictlyRight(a, b, p);
+			right |= !isStrictlyRight(b, a, p);
+		}
+		return left && right;
+	}
+	
+	/**
+	 * Tests if <code>c</code> is to the right of the directed line from
+	 * <code>a</code> to <code>b</code>, by more than the rounding error.
+	 */
+	private static boolean isStrictlyRight(Node a, Node b, Node c) {
+		double dx = b.getX() - a.getX(), dy = b.getY() - a.getY();
+		double cross = dx * (c.getY() - a.getY()) - dy * (c.getX() - a.getX());
+		return Rounding.isLessThan(cross / Math.hypot(dx, dy), 0.);
+	}
+	
+	/**
+	 * A cheap, conservative first-stage test for polygon intersection, using
+	 * the bounding boxes of both polygons.
+	 * 
+	 * @return  <code>false</code> if the polygons are guaranteed not to touch,
+	 *          <code>true</code> if they might.
+	 */
+	public boolean mayIntersectPolygon(BasePolygon poly) {
+		return Rounding.isGreaterOrEqual(getMaxX(), poly.getMinX()) &&
+		       Rounding.isLessOrEqual(getMinX(), poly.getMaxX()) &&
+		       Rounding.isGreaterOrEqual(getMaxY(), poly.getMinY()) &&
+		       Rounding.isLessOrEqual(getMinY(), poly.getMaxY());
+	}
+	
+	/**
+	 * Gives the convex hull of this polygon, as its nodes in counter-clockwise
+	 * order. Computed with Andrew's monotone chain algorithm.
+	 */
+	public Node[] getConvexHull() {
+		if(convexHull == null) {
+			Node[] sorted = nodes.clone();
+			Arrays.sort(sorted, new Comparator<Node>() {
+				public int compare(Node a, Node b) {
+					int c = Double.compare(a.getX(), b.getX());
+					return c != 0 ? c : Double.compare(a.getY(), b.getY());
+				}
+			});
+			Node[] hull = new Node[sorted.length * 2];
+			int k = 0;
+			for(int i = 0; i < sorted.length; ++i) { // lower hull
+				while(k >= 2 && !isLeftTurn(hull[k - 2], hull[k - 1],
+				                            sorted[i])) {
+					--k;
+				}
+				hull[k++] = sorted[i];
+			}
+			for(int i = sorted.length - 2, t = k + 1; i >= 0; --i) { // upper
+				while(k >= t && !isLeftTurn(hull[k - 2], hull[k - 1],
+				                           sorted[i])) {
+					--k;
+				}
+				hull[k++] = sorted[i];
+			}
+			convexHull = Arrays.copyOf(hull, Math.max(k - 1, 1));
+		}
+		return convexHull;
+	}
+	
+	private static boolean isLeftTurn(Node a, Node b, Node c) {
+		return (b.getX() - a.getX()) * (c.getY() - a.getY()) -
+		       (b.getY() - a.getY()) * (c.getX() - a.getX()) > 0.;
+	}
 }
@@ -191,27 +191,47 @@ public class Line {
 	 * along with some special handlers for edge-cases (no pun intended).
 	 */
 	public boolean doesIntersect(Line other, boolean vertexesCount) {
+		return doesIntersect(nodeA.getX(), nodeA.getY(),
+		                     nodeB.getX(), nodeB.getY(),
+		                     other.getNodeA().getX(), other.getNodeA().getY(),
+		                     other.getNodeB().getX(), other.getNodeB().getY(),
+		                     vertexesCount);
+	}
+	
+	/**
+	 * The same test as <code>doesIntersect(Line, boolean)</code>, between the
+	 * segment from <code>(ax, ay)</code> to <code>(bx, by)</code>, and the
+	 * segment from <code>(cx, cy)</code> to <code>(dx, dy)</code>. This
+	 * allocates nothing, and is meant for code that keeps its geometry in
+	 * plain arrays. Vertexes are seen as shared if they have exactly the same
+	 * coordinates.
+	 */
+	public static boolean doesIntersect(double ax, double ay,
+	                                    double bx, double by,
+	                                    double cx, double cy,
+	                                    double dx, double dy,
+	                                    boolean vertexesCount) {
 		// the algorithm doesn't handle parallel lines, so check that first
 		// we'll cross-multiply the slopes, and then compare them
-		if(Rounding.isEqual(getDeltaX() * other.getDeltaY(),
-		                    getDeltaY() * other.getDeltaX())) {
+		if(Rounding.isEqual((bx - ax) * (dy - cy), (by - ay) * (dx - cx))) {
+			return false;
+		}
+		if(!vertexesCount && (ax == cx && ay == cy || ax == dx && ay == dy ||
+		                      bx == cx && by == cy || bx == dx && by == dy)) {
 			return false;
 		}
-		// define our shorthand
-		Node a = nodeA;
-		Node b = nodeB;
-		Node c = other.getNodeA();
-		Node d = other.getNodeB();
-		return ccw(a, c, d) != ccw(b, c, d) && ccw(a, b, c) != ccw(a, b, d) &&
-		       (vertexesCount || (a != c && a != d && b != c && b != d));
+		return isCCW(ax, ay, cx, cy, dx, dy) != isCCW(bx, by, cx, cy, dx, dy) &&
+		       isCCW(ax, ay, bx, by, cx, cy) != isCCW(ax, ay, bx, by, dx, dy);
 	}
 	
 	/**
-	 * A utility method for <code>doesIntersect</code>.
+	 * Tests if the points <code>a</code>, <code>b</code> and <code>c</code>
+	 * are listed in counter-clockwise order, in the same way as
+	 * <code>doesIntersect</code> does. Colinear points are not.
 	 */
-	private boolean ccw(Node a, Node b, Node c) {
-		return (c.getY() - a.getY()) * (b.getX() - a.getX()) >
-		       (b.getY() - a.getY()) * (c.getX() - a.getX());
+	public static boolean isCCW(double ax, double ay, double bx, double by,
+	                            double cx, double cy) {
+		return (cy - ay) * (bx - ax) > (by - ay) * (cx - ax);
 	}
 	
 	/**
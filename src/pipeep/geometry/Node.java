@@ -48,7 +48,6 @@ public class Node {
 	}
 	
 	public int hashCode() {
-		return (Double.valueOf(getX()).hashCode() >> 13) ^
-		       Double.valueOf(getY()).hashCode();
+		return (Double.hashCode(getX()) >> 13) ^ Double.hashCode(getY());
 	}
 }
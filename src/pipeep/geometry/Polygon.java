@@ -1,6 +1,6 @@
 package pipeep.geometry;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -28,57 +28,173 @@ public class Polygon extends BasePolygon{
 		super(nodes);
 	}
 	
+	/**
+	 * Constructs a <code>Polygon</code> along with its triangulation, as
+	 * previously given by <code>getTriangles</code>, so that it does not have
+	 * to be computed again.
+	 */
+	public Polygon(Node[] nodes, Triangle[] triangles) {
+		super(nodes);
+		this.triangles = triangles.clone();
+	}
+	
 	public boolean isCCW() {
 		if(!isCCWInit) {
-			Node center = getCenter();
-			double avgAngle = 0.;
-			for(Node n : getNodes()) {
-				Node diff = n.subtract(center);
-				avgAngle += Math.atan2(diff.getX(), diff.getY());
+			// the sign of the area given by the shoelace formula
+			Node[] nodes = getNodes();
+			double doubleArea = 0.;
+			for(int i = 0; i < nodes.length; ++i) {
+				Node a = nodes[i];
+				Node b = nodes[(i + 1) % nodes.length];
+				doubleArea += a.getX() * b.getY() - b.getX() * a.getY();
 			}
-			isCCW = avgAngle > 0.;
+			isCCW = doubleArea > 0.;
 			isCCWInit = true;
 		}
 		return isCCW;
 	}
 	
+	/**
+	 * Splits this polygon into <code>n - 2</code> counter-clockwise
+	 * triangles, by ear clipping. The remaining vertexes are kept in a
+	 * circular, doubly linked list over index arrays, and as only a reflex
+	 * vertex can lie within an ear, candidate ears are only tested against
+	 * the vertexes that are still reflex, rather than the whole polygon.
+	 * This takes <code>O(n * r)</code> time for <code>r</code> reflex
+	 * vertexes, so convex polygons are triangulated in linear time.
+	 */
 	public Triangle[] getTriangles() {
 		if(triangles != null) { return triangles; }
 		
-		LinkedList<Node> nodesList;
-		if(isCCW()) {
-			nodesList = new LinkedList<Node>(Arrays.asList(getNodes()));
-		} else {
-			nodesList = new LinkedList();
-			for(int i = getNodes().length - 1; i >= 0; --i) {
-				nodesList.add(getNodes()[i]);
+		// work on the nodes in counter-clockwise order
+		Node[] nodes = getNodes();
+		int n = nodes.length;
+		Node[] ccw = new Node[n];
+		for(int i = 0; i < n; ++i) {
+			ccw[i] = isCCW() ? nodes[i] : nodes[n - i - 1];
+		}
+		int[] prev = new int[n], next = new int[n];
+		for(int i = 0; i < n; ++i) {
+			prev[i] = (i + n - 1) % n;
+			next[i] = (i + 1) % n;
+		}
+		// colinear vertexes are kept along with the reflex ones, as they may
+		// lie on the edge of an ear
+		boolean[] reflex = new boolean[n];
+		int[] reflexList = new int[n];
+		int reflexCount = 0;
+		for(int i = 0; i < n; ++i) {
+			reflex[i] = !isConvex(ccw, prev[i], i, next[i]);
+			if(reflex[i]) {
+				reflexList[reflexCount++] = i;
 			}
 		}
-		LinkedList<Triangle> trianglesList = new LinkedList<Triangle>();
-		// perform triangulation
-		while(nodesList.size() >= 3) {
-			Triangle t = new Triangle(nodesList.get(0), nodesList.get(1),
-			                          nodesList.get(2));
-			boolean isEar = t.isCCW() &&
-				containsNodeInArea(
-					new Line(nodesList.get(0), nodesList.get(2)
-				).getMidpoint());
-			for(int i = 3; isEar && i < nodesList.size(); ++i) {
-				if(t.containsNodeInArea(nodesList.get(i))) {
-					isEar = false;
-				}
+		
+		List<Triangle> trianglesList =
+			new ArrayList<Triangle>(Math.max(n - 2, 0));
+		int remaining = n;
+		int current = 0;
+		int failures = 0; // the candidates tested since the last ear
+		while(remaining > 3) {
+			int a = prev[current], b = next[current];
+			// if a whole turn goes by without an ear, the polygon is not
+			// simple, so clip whatever vertex is at hand, rather than loop
+			boolean isEar = failures >= remaining ||
+			                !reflex[current] &&
+			                !containsReflex(ccw, reflex, reflexList,
+			                                reflexCount, a, current, b);
+			if(!isEar) {
+				current = b;
+				++failures;
+				continue;
 			}
-			if(isEar) {
-				trianglesList.add(t);
-				nodesList.remove(1);
-			} else {
-				nodesList.add(nodesList.removeFirst());
+			trianglesList.add(new Triangle(ccw[a], ccw[current], ccw[b]));
+			next[a] = b;
+			prev[b] = a;
+			reflex[current] = false;
+			--remaining;
+			failures = 0;
+			// clipping an ear can only make its neighbours convex
+			if(reflex[a] && isConvex(ccw, prev[a], a, b)) {
+				reflex[a] = false;
 			}
+			if(reflex[b] && isConvex(ccw, a, b, next[b])) {
+				reflex[b] = false;
+			}
+			if(reflexCount > 16 && reflexCount > remaining) {
+				reflexCount = compact(reflex, reflexList, reflexCount);
+			}
+			current = a;
+		}
+		if(remaining == 3) {
+			trianglesList.add(new Triangle(ccw[prev[current]], ccw[current],
+			                               ccw[next[current]]));
 		}
 		triangles = trianglesList.toArray(new Triangle[trianglesList.size()]);
 		return triangles;
 	}
 	
+	/**
+	 * Tests if the vertex <code>b</code> turns strictly left, going from
+	 * <code>a</code> to <code>c</code>.
+	 */
+	private static boolean isConvex(Node[] nodes, int a, int b, int c) {
+		return Line.isCCW(nodes[a].getX(), nodes[a].getY(),
+		                  nodes[b].getX(), nodes[b].getY(),
+		                  nodes[c].getX(), nodes[c].getY());
+	}
+	
+	/**
+	 * Tests if any vertex that is still reflex lies within the triangle
+	 * <code>abc</code>, or on its boundary. Vertexes at the same position as
+	 * one of the corners do not count.
+	 */
+	private static boolean containsReflex(Node[] nodes, boolean[] reflex,
+	                                      int[] reflexList, int reflexCount,
+	                                      int a, int b, int c) {
+		double ax = nodes[a].getX(), ay = nodes[a].getY();
+		double bx = nodes[b].getX(), by = nodes[b].getY();
+		double cx = nodes[c].getX(), cy = nodes[c].getY();
+		double minX = Math.min(ax, Math.min(bx, cx));
+		double maxX = Math.max(ax, Math.max(bx, cx));
+		double minY = Math.min(ay, Math.min(by, cy));
+		double maxY = Math.max(ay, Math.max(by, cy));
+		for(int i = 0; i < reflexCount; ++i) {
+			int r = reflexList[i];
+			if(!reflex[r]) {
+				continue;
+			}
+			double x = nodes[r].getX(), y = nodes[r].getY();
+			if(x < minX || x > maxX || y < minY || y > maxY ||
+			   x == ax && y == ay || x == bx && y == by ||
+			   x == cx && y == cy) {
+				continue;
+			}
+			if(!Line.isCCW(ax, ay, x, y, bx, by) &&
+			   !Line.isCCW(bx, by, x, y, cx, cy) &&
+			   !Line.isCCW(cx, cy, x, y, ax, ay)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Drops the vertexes that are no longer reflex from the list.
+	 * 
+	 * @return  The new number of vertexes in the list.
+	 */
+	private static int compact(boolean[] reflex, int[] reflexList,
+	                           int reflexCount) {
+		int kept = 0;
+		for(int i = 0; i < reflexCount; ++i) {
+			if(reflex[reflexList[i]]) {
+				reflexList[kept++] = reflexList[i];
+			}
+		}
+		return kept;
+	}
+	
 	public HashSet<Line> getTriangleLines() {
 		if(triangleLines != null) {
 			return triangleLines;
@@ -99,18 +215,27 @@ public class Polygon extends BasePolygon{
 	}
 	
 	public boolean doesIntersectLine(Line line, boolean forceColinearityTest) {
+		if(!mayIntersectLine(line)) {
+			return false;
+		}
 		for(Line l : getLines()) {
 			if(l.doesIntersect(line, false)) {
 				return true;
 			}
 		}
 		
-		// see if we have to address colinearity
+		// see if we have to address colinearity: a line crossing none of our
+		// edges can only pass through our area if it connects two of our nodes
 		List nodesList = Arrays.asList(getNodes());
-		if(!forceColinearityTest && nodesList.contains(line.getNodeA()) &&
-		   nodesList.contains(line.getNodeB())) {
+		if(!forceColinearityTest && !(nodesList.contains(line.getNodeA()) &&
+		                              nodesList.contains(line.getNodeB()))) {
 			return false;
 		}
+		for(Line l : getLines()) {
+			if(l.equals(line, false)) { // it's one of our own edges
+				return false;
+			}
+		}
 		if(getTriangleLines().contains(line)) {
 			return true;
 		}
@@ -55,11 +55,19 @@ public class Triangle extends BasePolygon {
 		return isCCW;
 	}
 	
+	/**
+	 * Tests if the line passes through the area of this triangle, either by
+	 * crossing one of its edges, or by lying within it. Merely touching a
+	 * vertex does not count.
+	 */
 	@Override
 	public boolean doesIntersectLine(Line l) {
+		if(!mayIntersectLine(l)) {
+			return false;
+		}
 		for(Line i: getLines()) {
-			if(i.doesIntersect(l)) { return false; }
+			if(i.doesIntersect(l, false)) { return true; }
 		}
-		return true;
+		return containsNodeInArea(l.getMidpoint());
 	}
 }
@@ -0,0 +1,205 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The default search engine of a <code>Board</code>. It is an implementation
+ * of the A* algorithm over the visibility graph of the board, using the
+ * straight-line (Euclidean) distance to the goal as its heuristic. As that
+ * heuristic is consistent, every node only ever has to be expanded once, and
+ * the resulting path is guarenteed to be mathematically optimal, just like
+ * with Dijkstra's algorithm, while typically expanding far fewer nodes.<p/>
+ * 
+ * The frontier is kept in an indexed binary heap, so finding the next node to
+ * expand and lowering the cost of an already discovered node are both
+ * <code>O(log n)</code> operations.<p/>
+ * 
+ * Search nodes are kept in an array indexed by node id, rather than in a
+ * map, and the visibility between two nodes on the board is read straight
+ * from the board's owned navigation mesh by id, so looking at a neighbour
+ * on the board does not hash any node. Every node is still allocated a
+ * search node when it is first discovered, and the visibility of endpoints
+ * that are not on the board still goes through the unowned navigation mesh,
+ * which does hash them.<p/>
+ * 
+ * When the board is in reduced-graph mode, reflex vertices and edges that
+ * are not tangent at both ends are skipped before their visibility is even
+ * looked up, except at the endpoints of the path, and unless one of them is
+ * inside a polygon.<p/>
+ * 
+ * Given <code>QueryOptions</code>, the search checks them before expanding
+ * every node, and gives up as soon as one of their limits is reached.
+ * 
+ * @see  Board#setReducedGraph
+ */
+public class AStarSearch implements LimitedPathSearch {
+	private final double weight;
+	
+	public AStarSearch() {
+		this(1.);
+	}
+	
+	/**
+	 * @param  weight  What the heuristic is multiplied by, at least
+	 *                 <code>1</code>.
+	 * @see    WeightedAStarSearch
+	 */
+	AStarSearch(double weight) {
+		if(!(weight >= 1.)) {
+			throw new IllegalArgumentException("weight < 1: " + weight);
+		}
+		this.weight = weight;
+	}
+	
+	@Override
+	public List<Node> getShortestPath(Board board, Node a, Node b) {
+		return getShortestPath(board, new PathQuery(a, b), null).getPath();
+	}
+	
+	/**
+	 * Finds a path as <code>getShortestPath</code> does, checking the
+	 * options before expanding every node.
+	 */
+	@Override
+	public PathResult getShortestPath(Board board, PathQuery query,
+	                                  QueryOptions options) {
+		Node a = query.getStart(), b = query.getEnd();
+		
+		// Handle special/common cases
+		if(board.isVisible(a, b)) { // direct is shortest
+			List<Node> path = new LinkedList<Node>();
+			path.add(b);
+			return new PathResult(query, path);
+		}
+		
+		// nodes are addressed by their ids on the board, and the endpoints
+		// are given the two ids after those if they are not on the board
+		int count = board.getNodeCount();
+		ReducedGraph reduced = null;
+		if(board.isReducedGraph() && !board.isInsidePolygon(a) &&
+		   !board.isInsidePolygon(b)) {
+			reduced = board.getReducedGraph();
+		}
+		SearchNode[] discovered = new SearchNode[count + 2];
+		NodeHeap<SearchNode> frontier = new NodeHeap<SearchNode>();
+		
+		int startId = board.getNodeId(a);
+		SearchNode start = new SearchNode(a, startId < 0 ? count : startId);
+		int goalId = board.getNodeId(b);
+		SearchNode goal = new SearchNode(b, goalId < 0 ? count + 1 : goalId);
+		start.cost = 0.;
+		discovered[start.id] = start;
+		discovered[goal.id] = goal;
+		frontier.add(start, weight * a.getDistance(b));
+		int expanded = 0;
+		
+		while(!frontier.isEmpty()) {
+			SearchNode current = frontier.poll();
+			current.closed = true;
+			
+			if(current == goal) { // we're done! wrap it up.
+				recordExpansions(board, expanded);
+				return new PathResult(query, getPath(current), weight);
+			}
+			PathResult.Status stop = options == null ? null
+			                                         : options.check(expanded);
+			if(stop != null) {
+				recordExpansions(board, expanded);
+				return new PathResult(query, stop);
+			}
+			++expanded;
+			
+			for(int id = 0; id <= count + 1; ++id) {
+				SearchNode next = discovered[id];
+				Node n = next != null ? next.getNode()
+				                      : id < count ? board.getNode(id) : null;
+				if(n == null || next != null && next.closed) {
+					continue;
+				}
+				if(reduced != null && !isReducedEdge(reduced, count, current,
+				                                     start, id, n, goal)) {
+					continue;
+				}
+				boolean visible = current.id < count && id < count
+				                  ? board.isVisible(current.id, id)
+				                  : board.isVisible(current.getNode(), n);
+				if(!visible) {
+					continue;
+				}
+				double cost = current.cost + current.getNode().getDistance(n);
+				if(next == null) {
+					next = new SearchNode(n, id);
+					discovered[id] = next;
+				} else if(cost >= next.cost) {
+					continue;
+				}
+				next.cost = cost;
+				next.parent = current;
+				// prefer deeper nodes when estimates tie, they are closer to b
+				frontier.add(next, cost + weight * n.getDistance(b), -cost);
+			}
+		}
+		recordExpansions(board, expanded);
+		return new PathResult(query, PathResult.Status.UNREACHABLE);
+	}
+	
+	/**
+	 * Reports the number of nodes a search expanded to the metrics of the
+	 * board, if it records any.
+	 */
+	static void recordExpansions(Board board, int expanded) {
+		BoardMetrics metrics = board.getMetrics();
+		if(metrics != null) {
+			metrics.recordExpansions(expanded);
+		}
+	}
+	
+	/**
+	 * Tests if going from the current node to the node with the given id is
+	 * an edge of the reduced graph: the next node must be a turning point,
+	 * and the line must be tangent at both ends, except at the start and the
+	 * goal, where paths may begin and end at any angle.
+	 */
+	static boolean isReducedEdge(ReducedGraph reduced, int count,
+	                             SearchNode current, SearchNode start,
+	                             int id, Node n, SearchNode goal) {
+		if(id < count && id != goal.id &&
+		   (!reduced.isTurningPoint(id) ||
+		    !reduced.isTangent(id, current.getNode().getX(),
+		                       current.getNode().getY()))) {
+			return false;
+		}
+		return current.id >= count || current == start ||
+		       reduced.isTangent(current.id, n.getX(), n.getY());
+	}
+	
+	/**
+	 * Walks the parent pointers back from the goal, giving a path that
+	 * excludes the starting node but includes the goal.
+	 */
+	static List<Node> getPath(SearchNode goal) {
+		LinkedList<Node> path = new LinkedList<Node>();
+		for(SearchNode n = goal; n.parent != null; n = n.parent) {
+			path.addFirst(n.getNode());
+		}
+		return path;
+	}
+	
+	/**
+	 * The search information kept about every node discovered so far.
+	 */
+	static class SearchNode extends NodeHeap.Entry {
+		final int id;
+		double cost = Double.POSITIVE_INFINITY;
+		SearchNode parent = null;
+		boolean closed = false;
+		
+		public SearchNode(Node node, int id) {
+			super(node);
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An anytime search engine, giving the best path it can find within a time
+ * budget. It is an implementation of ARA* (Anytime Repairing A*) over the
+ * visibility graph of the board: a first path is found quickly by a
+ * <code>WeightedAStarSearch</code> with a large <code>epsilon</code>, and
+ * then improved by searches with smaller and smaller weights, each reusing
+ * the work of the previous ones rather than starting over, until either the
+ * path is known to be the shortest one or the budget runs out.<p/>
+ * 
+ * The first path is always searched to completion, however long it takes,
+ * so that a path is found whenever there is one. After that, the search
+ * stops as soon as the budget is exceeded, and gives the best path found so
+ * far. <code>search</code> also tells how close to the shortest path that
+ * path is known to be, which is often much better than the weight it was
+ * found with.<p/>
+ * 
+ * Given <code>QueryOptions</code>, the first search gives up when one of
+ * their limits is reached, while later ones simply stop improving the path,
+ * as when the budget runs out.<p/>
+ * 
+ * Like <code>AStarSearch</code>, this keeps no per-query state, so it may be
+ * shared by any number of boards and threads. The reduced graph is not used.
+ * 
+ * @see  Board#setSearchEngine
+ */
+public class AnytimeSearch implements LimitedPathSearch {
+	private final double initialEpsilon;
+	private final double epsilonStep;
+	private final long budget;
+	
+	/**
+	 * @param  initialEpsilon  The suboptimality bound of the first search,
+	 *                         at least <code>1</code>.
+	 * @param  epsilonStep     How much the bound is lowered by from one
+	 *                         search to the next, more than <code>0</code>.
+	 * @param  budget          How long to keep improving the path for.
+	 * @param  unit            The unit of the budget.
+	 */
+	public AnytimeSearch(double initialEpsilon, double epsilonStep,
+	                     long budget, TimeUnit unit) {
+		if(!(initialEpsilon >= 1.)) {
+			throw new IllegalArgumentException("initialEpsilon < 1");
+		}
+		if(!(epsilonStep > 0.)) {
+			throw new IllegalArgumentException("epsilonStep <= 0");
+		}
+		this.initialEpsilon = initialEpsilon;
+		this.epsilonStep = epsilonStep;
+		this.budget = unit.toNanos(budget);
+	}
+	
+	@Override
+	public List<Node> getShortestPath(Board board, Node a, Node b) {
+		return search(board, a, b).getPath();
+	}
+	
+	/**
+	 * Finds the best path it can from node <code>a</code> to node
+	 * <code>b</code> within the time budget.
+	 * 
+	 * @return  The path found, along with how many times longer than the
+	 *          shortest path it may be, at most.
+	 */
+	public PathResult search(Board board, Node a, Node b) {
+		return getShortestPath(board, new PathQuery(a, b), null);
+	}
+	
+	/**
+	 * Finds the best path it can as <code>search</code> does, within both
+	 * the time budget and the limits of the options.
+	 */
+	@Override
+	public PathResult getShortestPath(Board board, PathQuery query,
+	                                  QueryOptions options) {
+		long deadline = System.nanoTime() + budget;
+		Node a = query.getStart(), b = query.getEnd();
+		if(board.isVisible(a, b)) { // direct is shortest
+			List<Node> path = new LinkedList<Node>();
+			path.add(b);
+			return new PathResult(query, path);
+		}
+		
+		Search search = new Search(board, a, b);
+		double epsilon = initialEpsilon;
+		if(!search.improvePath(epsilon, false, deadline, options)) {
+			AStarSearch.recordExpansions(board, search.expanded);
+			return new PathResult(query, search.stopped);
+		}
+		double bound = search.getBound(epsilon);
+		while(bound > 1. && search.goal.cost < Double.POSITIVE_INFINITY &&
+		      System.nanoTime() - deadline < 0) {
+			// no need to search with a weight the path already beats
+			epsilon = Math.max(1., Math.min(epsilon - epsilonStep, bound));
+			search.restart(epsilon);
+			if(!search.improvePath(epsilon, true, deadline, options)) {
+				break; // the path can only have improved, the bound still holds
+			}
+			bound = search.getBound(epsilon);
+		}
+		AStarSearch.recordExpansions(board, search.expanded);
+		if(search.goal.cost == Double.POSITIVE_INFINITY) {
+			return new PathResult(query, (List<Node>)null);
+		}
+		return new PathResult(query, AStarSearch.getPath(search.goal), bound);
+	}
+	
+	/**
+	 * The state of a search, kept from one weight to the next. Nodes are
+	 * addressed as in <code>AStarSearch</code>.
+	 */
+	private static final class Search {
+		final Board board;
+		final Node target;
+		final int count;
+		final SearchNode[] discovered;
+		final SearchNode goal;
+		final NodeHeap<SearchNode> open = new NodeHeap<SearchNode>();
+		// nodes improved after being expanded, waiting for the next weight
+		final List<SearchNode> inconsistent = new ArrayList<SearchNode>();
+		int iteration = 0;
+		int expanded = 0;
+		PathResult.Status stopped = null; // why the search gave up
+		
+		Search(Board board, Node a, Node b) {
+			this.board = board;
+			target = b;
+			count = board.getNodeCount();
+			discovered = new SearchNode[count + 2];
+			int startId = board.getNodeId(a);
+			SearchNode start = new SearchNode(a, startId < 0 ? count
+			                                                 : startId);
+			int goalId = board.getNodeId(b);
+			goal = new SearchNode(b, goalId < 0 ? count + 1 : goalId);
+			start.cost = 0.;
+			discovered[start.id] = start;
+			discovered[goal.id] = goal;
+			open.add(start, 0.);
+		}
+		
+		/**
+		 * Expands nodes until the goal can not be improved upon with the
+		 * given weight, or the deadline passes, or the options say to stop.
+		 * 
+		 * @return  <code>false</code> if the search stopped first.
+		 */
+		boolean improvePath(double epsilon, boolean timed, long deadline,
+		                    QueryOptions options) {
+			while(!open.isEmpty() && goal.cost > open.peek().getPriority()) {
+				if(timed && System.nanoTime() - deadline >= 0) {
+					stopped = PathResult.Status.TIMED_OUT;
+					return false;
+				}
+				if(options != null &&
+				   (stopped = options.check(expanded)) != null) {
+					return false;
+				}
+				SearchNode current = open.poll();
+				current.closedIn = iteration;
+				++expanded;
+				for(int id = 0; id <= count + 1; ++id) {
+					SearchNode next = discovered[id];
+					Node n = next != null ? next.getNode()
+					                      : id < count ? board.getNode(id)
+					                                   : null;
+					if(n == null || next == current) {
+						continue;
+					}
+					double cost = current.cost +
+					              current.getNode().getDistance(n);
+					if(next != null && cost >= next.cost ||
+					   !isVisible(current, id, n)) {
+						continue;
+					}
+					if(next == null) {
+						next = new SearchNode(n, id);
+						discovered[id] = next;
+					}
+					next.cost = cost;
+					next.parent = current;
+					if(next.closedIn != iteration) {
+						open.add(next, cost + epsilon * n.getDistance(target),
+						         -cost);
+					} else if(!next.inconsistent) {
+						next.inconsistent = true;
+						inconsistent.add(next);
+					}
+				}
+			}
+			return true;
+		}
+		
+		private boolean isVisible(SearchNode current, int id, Node n) {
+			return current.id < count && id < count
+			       ? board.isVisible(current.id, id)
+			       : board.isVisible(current.getNode(), n);
+		}
+		
+		/**
+		 * Starts the search over with a new weight, reopening the nodes that
+		 * were improved after being expanded.
+		 */
+		void restart(double epsilon) {
+			++iteration;
+			List<SearchNode> queued = new ArrayList<SearchNode>(
+				open.size() + inconsistent.size()
+			);
+			while(!open.isEmpty()) {
+				queued.add(open.poll());
+			}
+			for(SearchNode n : inconsistent) {
+				n.inconsistent = false;
+				queued.add(n);
+			}
+			inconsistent.clear();
+			for(SearchNode n : queued) {
+				open.add(n, n.cost + epsilon * n.getNode().getDistance(target),
+				         -n.cost);
+			}
+		}
+		
+		/**
+		 * Gives how many times longer than the shortest path the path to the
+		 * goal may be, at most. Any shorter path would have to go through a
+		 * node that is queued or inconsistent, and the straight line gives a
+		 * lower bound on how long it would be.
+		 */
+		double getBound(double epsilon) {
+			double lowest = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < open.size(); ++i) {
+				SearchNode n = open.get(i);
+				lowest = Math.min(lowest, n.cost +
+				                          n.getNode().getDistance(target));
+			}
+			for(SearchNode n : inconsistent) {
+				lowest = Math.min(lowest, n.cost +
+				                          n.getNode().getDistance(target));
+			}
+			if(lowest >= goal.cost) {
+				return 1.;
+			}
+			return Math.max(1., Math.min(epsilon, goal.cost / lowest));
+		}
+	}
+	
+	/**
+	 * The search information kept about every node discovered so far.
+	 */
+	private static final class SearchNode extends AStarSearch.SearchNode {
+		int closedIn = -1; // the last iteration this was expanded in
+		boolean inconsistent = false;
+		
+		SearchNode(Node node, int id) {
+			super(node, id);
+		}
+	}
+}
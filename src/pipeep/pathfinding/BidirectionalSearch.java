@@ -0,0 +1,169 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A search engine running two searches over the visibility graph at once,
+ * one forward from the start and one backward from the goal, until they meet.
+ * As visibility is symmetric, the backward search crosses the very same
+ * edges as the forward one does, only the other way around.<p/>
+ * 
+ * Both searches are guided by the same "balanced" heuristic: half the
+ * difference between the straight-line distances to either end of the path.
+ * It is consistent in both directions, so the usual A* rules hold for each
+ * search on its own, and the two frontiers together give a lower bound on
+ * any path not found yet. The search stops once that bound is no better
+ * than the shortest path found through a node reached by both searches, so
+ * the resulting path is guaranteed to be the shortest one, as it is with
+ * <code>AStarSearch</code>. Every step expands a node on the smaller of the
+ * two frontiers.<p/>
+ * 
+ * This expands the fewest nodes compared to <code>AStarSearch</code> on
+ * long paths across open areas, where the single frontier of a one-sided
+ * search widens as it goes. Like <code>AStarSearch</code>, this keeps no
+ * per-query state, so it may be shared by any number of boards and threads,
+ * and it honours the reduced graph and <code>QueryOptions</code>.
+ * 
+ * @see  Board#setSearchEngine
+ */
+public class BidirectionalSearch implements LimitedPathSearch {
+	@Override
+	public List<Node> getShortestPath(Board board, Node a, Node b) {
+		return getShortestPath(board, new PathQuery(a, b), null).getPath();
+	}
+	
+	@Override
+	public PathResult getShortestPath(Board board, PathQuery query,
+	                                  QueryOptions options) {
+		Node a = query.getStart(), b = query.getEnd();
+		if(board.isVisible(a, b)) { // direct is shortest
+			List<Node> path = new LinkedList<Node>();
+			path.add(b);
+			return new PathResult(query, path);
+		}
+		
+		// nodes are addressed as in AStarSearch, by both searches
+		int count = board.getNodeCount();
+		ReducedGraph reduced = null;
+		if(board.isReducedGraph() && !board.isInsidePolygon(a) &&
+		   !board.isInsidePolygon(b)) {
+			reduced = board.getReducedGraph();
+		}
+		int startId = board.getNodeId(a);
+		int goalId = board.getNodeId(b);
+		Frontier forward = new Frontier(count, a, startId < 0 ? count
+		                                                      : startId, b);
+		Frontier backward = new Frontier(count, b, goalId < 0 ? count + 1
+		                                                      : goalId, a);
+		
+		double best = Double.POSITIVE_INFINITY; // the shortest path found
+		int meeting = -1; // the id of the node it goes through
+		int expanded = 0;
+		while(!forward.open.isEmpty() && !backward.open.isEmpty()) {
+			if(forward.open.peek().getPriority() +
+			   backward.open.peek().getPriority() >= best) {
+				break; // nothing left can beat it
+			}
+			PathResult.Status stop = options == null ? null
+			                                         : options.check(expanded);
+			if(stop != null) {
+				AStarSearch.recordExpansions(board, expanded);
+				return new PathResult(query, stop);
+			}
+			Frontier side = forward, other = backward;
+			if(backward.open.size() < forward.open.size()) {
+				side = backward;
+				other = forward;
+			}
+			AStarSearch.SearchNode current = side.open.poll();
+			current.closed = true;
+			++expanded;
+			
+			for(int id = 0; id <= count + 1; ++id) {
+				AStarSearch.SearchNode next = side.discovered[id];
+				AStarSearch.SearchNode across = other.discovered[id];
+				Node n = next != null ? next.getNode()
+				         : across != null ? across.getNode()
+				         : id < count ? board.getNode(id) : null;
+				if(n == null || next != null && next.closed) {
+					continue;
+				}
+				if(reduced != null &&
+				   !AStarSearch.isReducedEdge(reduced, count, current,
+				                              side.origin, id, n,
+				                              other.origin)) {
+					continue;
+				}
+				boolean visible = current.id < count && id < count
+				                  ? board.isVisible(current.id, id)
+				                  : board.isVisible(current.getNode(), n);
+				if(!visible) {
+					continue;
+				}
+				double cost = current.cost + current.getNode().getDistance(n);
+				if(next == null) {
+					next = new AStarSearch.SearchNode(n, id);
+					side.discovered[id] = next;
+				} else if(cost >= next.cost) {
+					continue;
+				}
+				next.cost = cost;
+				next.parent = current;
+				side.open.add(next, cost + side.getPotential(n), -cost);
+				if(across != null && cost + across.cost < best) {
+					best = cost + across.cost;
+					meeting = id;
+				}
+			}
+		}
+		AStarSearch.recordExpansions(board, expanded);
+		if(meeting < 0) {
+			return new PathResult(query, PathResult.Status.UNREACHABLE);
+		}
+		
+		// the forward half leads up to the meeting node, the backward half
+		// leads on from it
+		LinkedList<Node> path = new LinkedList<Node>();
+		for(AStarSearch.SearchNode n = forward.discovered[meeting];
+		    n.parent != null; n = n.parent) {
+			path.addFirst(n.getNode());
+		}
+		for(AStarSearch.SearchNode n = backward.discovered[meeting].parent;
+		    n != null; n = n.parent) {
+			path.addLast(n.getNode());
+		}
+		return new PathResult(query, path);
+	}
+	
+	/**
+	 * The state of the search from one end of the path.
+	 */
+	private static final class Frontier {
+		final AStarSearch.SearchNode[] discovered;
+		final NodeHeap<AStarSearch.SearchNode> open =
+			new NodeHeap<AStarSearch.SearchNode>();
+		final AStarSearch.SearchNode origin;
+		final Node target;
+		
+		Frontier(int count, Node from, int id, Node target) {
+			discovered = new AStarSearch.SearchNode[count + 2];
+			origin = new AStarSearch.SearchNode(from, id);
+			origin.cost = 0.;
+			discovered[id] = origin;
+			this.target = target;
+			open.add(origin, getPotential(from));
+		}
+		
+		/**
+		 * The balanced heuristic, the potentials of the two searches adding
+		 * up to zero at every node.
+		 */
+		double getPotential(Node n) {
+			return (n.getDistance(target) -
+			        n.getDistance(origin.getNode())) / 2.;
+		}
+	}
+}
@@ -1,18 +1,27 @@
 package pipeep.pathfinding;
 
+import pipeep.arithmetic.Rounding;
 import pipeep.geometry.Node;
 import pipeep.geometry.Line;
 import pipeep.geometry.Polygon;
+import pipeep.geometry.Triangle;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.LinkedHashMap;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Representing a game board, this class is composed of a set of
@@ -20,7 +29,7 @@ import java.util.Arrays;
  * blocks, or any other place you wish for the robot to avoid. Knowing
  * everything about the game's design, this class can do such things as tell if
  * a Node is within the line-of-sight or another Node, or even utilize
- * Dijkstra's algorithm to find the shortest possible path from one Node to
+ * the A* algorithm to find the shortest possible path from one Node to
  * another. Note that this board is not entirely realistic. It assumes each Node
  * is simply an infinitely tiny point in space, and that robots are Nodes. For
  * realistic purposes, utiltize the <code>getExpanded()</code> function first.
@@ -29,19 +38,60 @@ import java.util.Arrays;
  * Largely acts like a wrapper around a HashSet of the polygons forming the
  * board. (using inheritance by composition rather than inheritance) Notably,
  * this class is mutable, but the polygons, nodes, and lines composing it are
- * not. Additionally, mutating this class causes <strong>all</strong> caches to
- * be marked as "dirty", requring them to be re-built on next use, potentially
- * causing a rather severe performance hit.<p/>
+ * not. Adding or removing a polygon updates the caches incrementally, only
+ * re-testing the visibility of pairs of nodes that the polygon could affect.
+ * Clearing the board, or replacing a large part of it at once, causes
+ * <strong>all</strong> caches to be marked as "dirty" instead, requring them
+ * to be re-built on next use, potentially causing a rather severe performance
+ * hit.<p/>
  * 
  * This class makes great use of caching and lazy evaluation to ensure the best
- * possible performance of the underlying features and algorithms used.
+ * possible performance of the underlying features and algorithms used. As a
+ * result, it is not thread-safe, not even for queries. To query a board from
+ * several threads at once, <code>freeze()</code> it into an immutable
+ * <code>FrozenBoard</code> snapshot first.
+ * 
+ * @see  FrozenBoard
  */
 public class Board implements Collection<Polygon> {
+	/**
+	 * The number of expanded variants of a board that are kept around by
+	 * <code>getExpanded</code>, the least recently used one being dropped to
+	 * make room for a new one.
+	 */
+	public static final int MAXIMUM_EXPANDED_BOARDS = 8;
+	
 	// lazily evaluated
 	private Set<Line> lines = null;
+	private EdgeGrid edgeIndex = null;
 	private Set<Node> nodes = null;
-	private Map<Node, Map<Node, Boolean>> navigationMesh = null;
-	private Map<Node, Map<Node, Boolean>> unownedNavigationMesh = null;
+	private Map<Node, Integer> nodeIds = null;
+	private List<Node> nodeTable = null;
+	private List<List<Polygon>> nodeOwners = null;
+	private List<Integer> freeNodeIds = null;
+	private VisibilityMatrix navigationMesh = null;
+	private boolean navigationMeshComplete = false;
+	private NavigationMeshCache unownedNavigationMesh =
+		new NavigationMeshCache();
+	private ReducedGraph reducedGraph = null;
+	// may be built by several threads of a snapshot at once, which is harmless
+	private volatile FreeSpaceMesh freeSpaceMesh = null;
+	private final Map<Double, Board> expandedBoards =
+		new LinkedHashMap<Double, Board>(16, .75f, true) { // access-ordered
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Double, Board> e) {
+				return size() > MAXIMUM_EXPANDED_BOARDS;
+			}
+		};
+	
+	private PathSearch searchEngine = new AStarSearch();
+	private boolean reduced = false;
+	private BoardMetrics metrics = null;
+	private PathCache pathCache = null;
+	private volatile FrozenBoard lastSnapshot = null;
+	private FrozenBoard currentSnapshot = null; // while it matches this board
+	private final List<BoardListener> listeners =
+		new ArrayList<BoardListener>(0);
 	
 	private Set<Polygon> polygons; // the underlying structure of this class
 	
@@ -82,6 +132,19 @@ public class Board implements Collection<Polygon> {
 		return lines;
 	}
 	
+	/**
+	 * A spatial index over all the lines composing the polygons on this board,
+	 * built lazily from <code>getLines()</code>.
+	 */
+	private EdgeGrid getEdgeIndex() {
+		if(edgeIndex == null) {
+			BoardMetrics.Timing timing = startCacheBuild("edge index");
+			edgeIndex = new EdgeGrid(getLines());
+			endCacheBuild(timing);
+		}
+		return edgeIndex;
+	}
+	
 	/**
 	 * Returns a set of all the nodes composing all the polygons on this board.
 	 * <strong>Do not</strong> modify this returned object, as that could have
@@ -89,27 +152,193 @@ public class Board implements Collection<Polygon> {
 	 */
 	public Set<Node> getNodes() {
 		if(nodes == null) {
+			BoardMetrics.Timing timing = startCacheBuild("nodes");
 			// the size must be at least 3 times the number of polgons (every
 			// polygon must at least be a triangle)
-			nodes = new HashSet<Node>(polygons.size() * 3);
+			nodeIds = new HashMap<Node, Integer>(polygons.size() * 3);
+			nodeTable = new ArrayList<Node>(polygons.size() * 3);
+			nodeOwners = new ArrayList<List<Polygon>>(polygons.size() * 3);
+			freeNodeIds = new ArrayList<Integer>();
+			nodes = nodeIds.keySet();
 			for(Polygon p : getPolygons()) {
-				nodes.addAll(Arrays.asList(p.getNodes()));
+				addNodes(p);
 			}
+			endCacheBuild(timing);
 		}
 		return nodes;
 	}
 	
+	/**
+	 * Registers the nodes of a polygon in the set of nodes, giving ids to the
+	 * ones that are new to the board.
+	 * 
+	 * @return  The ids given to the new nodes.
+	 */
+	private List<Integer> addNodes(Polygon p) {
+		List<Integer> added = new ArrayList<Integer>(0);
+		for(Node n : p.getNodes()) {
+			Integer id = nodeIds.get(n);
+			if(id == null) {
+				if(freeNodeIds.isEmpty()) {
+					id = nodeTable.size();
+					nodeTable.add(n);
+					nodeOwners.add(new ArrayList<Polygon>(1));
+				} else {
+					id = freeNodeIds.remove(freeNodeIds.size() - 1);
+					nodeTable.set(id, n);
+					nodeOwners.set(id, new ArrayList<Polygon>(1));
+				}
+				nodeIds.put(n, id);
+				added.add(id);
+			}
+			nodeOwners.get(id).add(p);
+		}
+		return added;
+	}
+	
+	/**
+	 * Unregisters the nodes of a polygon from the set of nodes, freeing the
+	 * ids of the ones no other polygon uses.
+	 */
+	private void removeNodes(Polygon p) {
+		for(Node n : p.getNodes()) {
+			Integer id = nodeIds.get(n);
+			if(id == null) { // listed twice by the polygon
+				continue;
+			}
+			List<Polygon> owners = nodeOwners.get(id);
+			owners.remove(p);
+			if(owners.isEmpty()) {
+				nodeIds.remove(n);
+				nodeTable.set(id, null);
+				nodeOwners.set(id, null);
+				freeNodeIds.add(id);
+			}
+		}
+	}
+	
+	/**
+	 * Gives the integer id assigned to an owned node when the set of nodes
+	 * was built, or when it was added to the board. Ids are in the range
+	 * <code>[0, getNodeCount())</code>, and remain valid until the node is
+	 * removed from the board, or the board is marked as dirty. The ids of
+	 * removed nodes are reused for new ones.
+	 * 
+	 * @return  The id of the node, or <code>-1</code> if it is not owned by
+	 *          this board.
+	 */
+	int getNodeId(Node n) {
+		getNodes();
+		Integer id = nodeIds.get(n);
+		return id == null ? -1 : id.intValue();
+	}
+	
+	/**
+	 * The reverse of <code>getNodeId</code>.
+	 * 
+	 * @return  The node with the given id, or <code>null</code> if the id is
+	 *          not currently in use.
+	 */
+	Node getNode(int id) {
+		getNodes();
+		return nodeTable.get(id);
+	}
+	
+	/**
+	 * Gives the polygons that the given node is a vertex of.
+	 * 
+	 * @return  The polygons using the node, empty if it is not owned.
+	 */
+	List<Polygon> getOwners(Node n) {
+		int id = getNodeId(n);
+		if(id < 0) {
+			return Collections.emptyList();
+		}
+		return nodeOwners.get(id);
+	}
+	
+	/**
+	 * @return  The number of node ids in use, one more than the highest id.
+	 */
+	int getNodeCount() {
+		getNodes();
+		return nodeTable.size();
+	}
+	
 	/**
 	 * Returns an copy of this board, in which every polygon has been expanded
 	 * by the given outset, in the way given by
-	 * <code>Polygon.getExpanded(double outset)</code>.
+	 * <code>Polygon.getExpanded(double outset)</code>, using the common
+	 * <code>ForkJoinPool</code>.
 	 * 
+	 * @see  #getExpanded(double, ExecutorService)
 	 * @see  Polygon#getExpanded
 	 */
 	public Board getExpanded(double outset) {
-		Board b = new Board();
-		for(Polygon p: getPolygons()) {
-			b.add(p.getExpanded(outset));
+		try {
+			return getExpanded(outset, ForkJoinPool.commonPool());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Returns a copy of this board, in which every polygon has been expanded
+	 * by the given outset, expanding the polygons in parallel.<p/>
+	 * 
+	 * The last few variants asked for are cached, along with everything they
+	 * have cached themselves, such as their lines, triangulations, and
+	 * visibility graph, so searching the board expanded by the radius of the
+	 * same robot again and again stays fast. As the variant given is shared
+	 * between calls, it may neither be modified nor configured, for example
+	 * with its own search engine or path cache. Modifying this board drops
+	 * all of its variants.
+	 * 
+	 * @param  outset    The distance to push every edge outwards by.
+	 * @param  executor  The executor to expand the polygons on.
+	 * @throws InterruptedException  If interrupted while expanding.
+	 * @see    #MAXIMUM_EXPANDED_BOARDS
+	 */
+	public Board getExpanded(double outset, ExecutorService executor)
+	                         throws InterruptedException {
+		synchronized(expandedBoards) {
+			Board cached = expandedBoards.get(outset);
+			if(cached != null) {
+				return cached;
+			}
+		}
+		// lines are lazily evaluated, so build them before sharing polygons
+		final List<Polygon> sources = new ArrayList<Polygon>(getPolygons());
+		for(Polygon p : sources) {
+			p.getLines();
+		}
+		final double distance = outset;
+		final int chunk = 64;
+		List<Callable<Polygon[]>> tasks = new ArrayList<Callable<Polygon[]>>();
+		for(int i = 0; i < sources.size(); i += chunk) {
+			final int from = i, to = Math.min(i + chunk, sources.size());
+			tasks.add(new Callable<Polygon[]>() {
+				public Polygon[] call() {
+					Polygon[] expanded = new Polygon[to - from];
+					for(int k = from; k < to; ++k) {
+						Polygon p = sources.get(k).getExpanded(distance);
+						p.getTriangles(); // built here, in parallel
+						expanded[k - from] = p;
+					}
+					return expanded;
+				}
+			});
+		}
+		List<Polygon> expanded = new ArrayList<Polygon>(sources.size());
+		for(Future<Polygon[]> f : executor.invokeAll(tasks)) {
+			expanded.addAll(Arrays.asList(getResult(f)));
+		}
+		Board b = new ExpandedBoard(
+			expanded.toArray(new Polygon[expanded.size()])
+		);
+		synchronized(expandedBoards) {
+			expandedBoards.put(outset, b);
 		}
 		return b;
 	}
@@ -118,46 +347,90 @@ public class Board implements Collection<Polygon> {
 	// Visibility stuff
 	
 	/**
-	 * The <code>unownedNavigationMesh</code> map is for navigation information
-	 * computed about <code>Node</code>s that are not on our board, but rather,
-	 * that we have been called about. This Map may be replaced with one that
-	 * uses something like <code>SoftReference</code>s for memory-aware caching.
-	 * (a non-memory aware version could potentially lead to memory leaks in
-	 * very large-scale operations)
+	 * The <code>unownedNavigationMesh</code> cache is for navigation
+	 * information computed about <code>Node</code>s that are not on our board,
+	 * but rather, that we have been called about. It is bounded, and by
+	 * default memory-aware, so that querying about many different nodes does
+	 * not lead to memory leaks in very large-scale operations. Its statistics
+	 * can be used to size it.
+	 * 
+	 * @see  #setUnownedNavigationMesh
 	 */
-	private Map<Node, Map<Node, Boolean>> getUnownedNavigationMesh() {
-		if(unownedNavigationMesh == null) {
-			// TODO: Replace with a smarter cache Map
-			unownedNavigationMesh = new HashMap<Node, Map<Node, Boolean>>();
-		}
+	public NavigationMeshCache getUnownedNavigationMesh() {
 		return unownedNavigationMesh;
 	}
 	
+	/**
+	 * Replaces the cache used for navigation information about nodes that are
+	 * not on this board, for example to change its bounds or weighing policy.
+	 * Anything in the previous cache is forgotten.
+	 * 
+	 * @param  cache  The new cache. May not be <code>null</code>.
+	 */
+	public void setUnownedNavigationMesh(NavigationMeshCache cache) {
+		if(cache == null) {
+			throw new NullPointerException("cache");
+		}
+		unownedNavigationMesh = cache;
+		currentSnapshot = null;
+	}
+	
 	/**
 	 * A cache of pre-computed information on what nodes are visible from other
-	 * nodes. This map only includes information amount nodes on our board,
-	 * making it the "owned" navigation mesh.
+	 * nodes. This matrix only includes information amount nodes on our board,
+	 * making it the "owned" navigation mesh. It is addressed by node id.
+	 * 
+	 * @see  #getNodeId
 	 */
-	private Map<Node, Map<Node, Boolean>> getNavigationMesh() {
+	VisibilityMatrix getNavigationMesh() {
 		if(navigationMesh == null) {
-			navigationMesh = new HashMap<Node, Map<Node, Boolean>>(
-				getNodes().size()
+			navigationMesh = new VisibilityMatrix(getNodeCount());
+		} else if(navigationMesh.size() < getNodeCount()) {
+			// grow geometrically, boards tend to be built one add at a time
+			navigationMesh = new VisibilityMatrix(
+				navigationMesh, getNodeCount() + getNodeCount() / 2
 			);
-			for(Node n: getNodes()) {
-				navigationMesh.put(
-					n, new HashMap<Node, Boolean>(getNodes().size() - 1)
-				);
-			}
 		}
 		return navigationMesh;
 	}
 	
+	/**
+	 * The convex vertices and tangent edges of the visibility graph, used by
+	 * searches when the board is in reduced-graph mode. It is addressed by
+	 * node id.
+	 * 
+	 * @see  #setReducedGraph
+	 */
+	ReducedGraph getReducedGraph() {
+		if(reducedGraph == null) {
+			BoardMetrics.Timing timing = startCacheBuild("reduced graph");
+			reducedGraph = new ReducedGraph(this);
+			endCacheBuild(timing);
+		}
+		return reducedGraph;
+	}
+	
+	/**
+	 * The constrained triangulation of the free space between the polygons,
+	 * used by <code>FreeSpaceSearch</code>. It is not based on the visibility
+	 * graph at all, so building it never tests the visibility of anything.
+	 * 
+	 * @see  FreeSpaceSearch
+	 */
+	FreeSpaceMesh getFreeSpaceMesh() {
+		if(freeSpaceMesh == null) {
+			BoardMetrics.Timing timing = startCacheBuild("free space mesh");
+			freeSpaceMesh = new FreeSpaceMesh(this);
+			endCacheBuild(timing);
+		}
+		return freeSpaceMesh;
+	}
+	
 	/**
 	 * Gets the already known information about what node is directly visible
-	 * from another node, <code>n</code>. It tries to get the mesh data in the
-	 * following fashion:
+	 * from another node, <code>n</code>, which is not owned by this board. It
+	 * tries to get the mesh data in the following fashion:
 	 * <ol>
-	 *     <li>Looks at the "owned" navigation mesh</li>
 	 *     <li>Looks at the "unowned" navigation mesh</li>
 	 *     <li>Makes a new mesh, adding it to the "unowned" navigation mesh</li>
 	 * </ol>
@@ -171,15 +444,25 @@ public class Board implements Collection<Polygon> {
 	 * potentially be "forgetful".
 	 */
 	private Map<Node, Boolean> getNavigationMesh(Node n) {
-		Map<Node, Boolean> r = getNavigationMesh().get(n);
+		Map<Node, Boolean> r = getUnownedNavigationMesh().get(n);
 		if(r == null) {
-			r = getUnownedNavigationMesh().get(n);
-		} if(r == null) {
-			r = getUnownedNavigationMesh().put(n, new HashMap<Node, Boolean>());
+			r = createNavigationMeshRow();
+			getUnownedNavigationMesh().put(n, r);
+			if(metrics != null) {
+				metrics.recordUnownedRow();
+			}
 		}
 		return r;
 	}
 	
+	/**
+	 * Creates an empty row for the "unowned" navigation mesh. Rows are only
+	 * ever used from one thread at a time by default.
+	 */
+	Map<Node, Boolean> createNavigationMeshRow() {
+		return new HashMap<Node, Boolean>();
+	}
+	
 	/**
 	 * Returns a set of all nodes visible from the point of view in the given
 	 * map.
@@ -216,7 +499,21 @@ public class Board implements Collection<Polygon> {
 	 * composing the board.
 	 */
 	private boolean isOwned(Node n) {
-		return getNodes().contains(n);
+		return getNodeId(n) >= 0;
+	}
+	
+	/**
+	 * Tests if the node lies within the area of one of the polygons on this
+	 * board, or on its boundary, not counting the polygons it is a vertex of.
+	 */
+	boolean isInsidePolygon(Node n) {
+		List<Polygon> owners = getOwners(n);
+		for(Polygon p : getPolygons()) {
+			if(p.containsNodeInArea(n) && !owners.contains(p)) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -234,46 +531,597 @@ public class Board implements Collection<Polygon> {
 			return true;
 		}
 		
+		// owned pairs are looked up in (and cached to) the owned mesh only
+		int aId = getNodeId(a);
+		int bId = getNodeId(b);
+		if(aId >= 0 && bId >= 0) {
+			return isVisible(aId, bId);
+		}
+		
 		// some helper variables
-		Map<Node, Boolean> aNavigationMesh = getNavigationMesh(a);
-		Map<Node, Boolean> bNavigationMesh = getNavigationMesh(b);
+		Map<Node, Boolean> aNavigationMesh = aId < 0 ? getNavigationMesh(a)
+		                                             : null;
+		Map<Node, Boolean> bNavigationMesh = bId < 0 ? getNavigationMesh(b)
+		                                             : null;
 		
 		// attempt to perform caching lookups
-		if(aNavigationMesh.containsKey(b)) {
-			return aNavigationMesh.get(b).booleanValue();
-		} if(bNavigationMesh.containsKey(a)) {
-			return bNavigationMesh.get(a).booleanValue();
+		Boolean cached = null;
+		if(aNavigationMesh != null && aNavigationMesh.containsKey(b)) {
+			cached = aNavigationMesh.get(b);
+		} else if(bNavigationMesh != null && bNavigationMesh.containsKey(a)) {
+			cached = bNavigationMesh.get(a);
+		}
+		if(metrics != null) {
+			if(cached != null) {
+				metrics.recordMeshHit();
+			} else {
+				metrics.recordMeshMiss();
+			}
+		}
+		if(cached != null) {
+			return cached.booleanValue();
 		}
 		
 		// perform test
 		boolean result = visibilityTest(a, b);
 		
 		// Cache result, storing unowned data only in the unowned cache
-		if(!isOwned(a) || isOwned(b)) {
+		if(aNavigationMesh != null) {
 			aNavigationMesh.put(b, result);
-		} if(!isOwned(b) || isOwned(a)) {
+			getUnownedNavigationMesh().update(a);
+		} if(bNavigationMesh != null) {
 			bNavigationMesh.put(a, result);
+			getUnownedNavigationMesh().update(b);
 		}
 		return result;
 	}
 	
+	/**
+	 * The same as <code>isVisible</code>, for two nodes on this board, given
+	 * by their ids. This only reads from the owned navigation mesh, without
+	 * having to look the nodes up first, unless it has to be computed.
+	 * 
+	 * @see  #getNodeId
+	 */
+	boolean isVisible(int aId, int bId) {
+		int state = getNavigationMesh().get(aId, bId);
+		if(state != VisibilityMatrix.UNKNOWN) {
+			if(metrics != null) {
+				metrics.recordMeshHit();
+			}
+			return state == VisibilityMatrix.VISIBLE;
+		}
+		if(metrics != null) {
+			metrics.recordMeshMiss();
+		}
+		Node a = getNode(aId), b = getNode(bId);
+		boolean result = a.equals(b, false) || visibilityTest(a, b);
+		getNavigationMesh().setVisible(aId, bId, result);
+		return result;
+	}
+	
+	/**
+	 * Directly tests if node <code>b</code> is visible from node
+	 * <code>a</code>, without any caching. Only the lines near the segment
+	 * between the two are tested, through a spatial index. The result is the
+	 * same both ways, as the caches assume.
+	 */
 	protected boolean visibilityTest(Node a, Node b) {
-		Line directLine = new Line(a, b);
-		for(Polygon p : this) {
-			if(p.doesIntersectLine(directLine)) {
+		BoardMetrics m = metrics;
+		if(m == null) {
+			return testVisibility(a, b);
+		}
+		long start = System.nanoTime();
+		boolean visible = testVisibility(a, b);
+		m.recordVisibilityTest(System.nanoTime() - start);
+		return visible;
+	}
+	
+	private boolean testVisibility(Node a, Node b) {
+		if(!isInCanonicalOrder(a, b)) {
+			Node swap = a; a = b; b = swap;
+		}
+		if(getEdgeIndex().doesIntersectSegment(a.getX(), a.getY(),
+		                                       b.getX(), b.getY())) {
+			return false;
+		}
+		// a line crossing none of the edges can still pass through the area
+		// of a polygon, but only if it starts or ends at a node of it: as a
+		// diagonal between two of its nodes, or from one of them into it,
+		// towards a point inside it or a node of a polygon overlapping it
+		List<Polygon> aOwners = getOwners(a);
+		List<Polygon> bOwners = getOwners(b);
+		Line line = new Line(a, b);
+		if(aOwners.isEmpty() && bOwners.isEmpty()) {
+			// or if both of its ends lie within a polygon, as they then both
+			// do, so such endpoints never see each other
+			Node midpoint = line.getMidpoint();
+			for(Polygon p : getPolygons()) {
+				if(p.containsNodeInArea(midpoint)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		for(int i = 0; i < aOwners.size(); ++i) {
+			Polygon p = aOwners.get(i);
+			if(bOwners.contains(p) ? p.doesIntersectLine(line)
+			                       : isThroughArea(p, line)) {
+				return false;
+			}
+		}
+		for(int i = 0; i < bOwners.size(); ++i) {
+			Polygon p = bOwners.get(i);
+			if(!aOwners.contains(p) && isThroughArea(p, line)) {
 				return false;
 			}
 		}
 		return true;
 	}
 	
+	/**
+	 * Tests if a line from one of the nodes of a polygon, crossing none of
+	 * its edges, runs through its area. Such a line lies either wholly inside
+	 * the polygon or wholly outside of it, so its midpoint tells which.
+	 */
+	private static boolean isThroughArea(Polygon p, Line line) {
+		if(!p.containsNodeInArea(line.getMidpoint())) {
+			return false;
+		}
+		for(Line l : p.getLines()) {
+			if(l.equals(line, false)) {
+				return false; // along its boundary
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests if the line between two nodes should be built from
+	 * <code>a</code> to <code>b</code>, rather than the other way around.
+	 * Whether a line grazing a vertex counts as intersecting an edge depends
+	 * on its direction, so lines are always built in the same direction
+	 * whichever order the nodes are given in, keeping visibility symmetric.
+	 */
+	static boolean isInCanonicalOrder(Node a, Node b) {
+		return a.getX() < b.getX() ||
+		       a.getX() == b.getX() && a.getY() <= b.getY();
+	}
+	
+	/**
+	 * Eagerly computes the visibility between every pair of nodes owned by
+	 * this board, using the common <code>ForkJoinPool</code>.
+	 * 
+	 * @see  #precomputeVisibilityGraph(ExecutorService)
+	 */
+	public void precomputeVisibilityGraph() throws InterruptedException {
+		precomputeVisibilityGraph(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Eagerly computes the visibility between every pair of nodes owned by
+	 * this board, filling the owned navigation mesh in one go rather than one
+	 * pair at a time as queries come in. Each pair is only tested once, and
+	 * the tests are spread across the given executor, one task per node, each
+	 * writing straight into the owned navigation mesh.<p/>
+	 * 
+	 * Once this returns, <code>isVisible</code> and <code>getVisible</code>
+	 * never have to compute anything for owned nodes, and only ever read from
+	 * the cache, until the board is mutated again. The board must not be
+	 * mutated or queried by other threads while this is running.
+	 * 
+	 * @param  executor  The executor to run the visibility tests on.
+	 * @throws InterruptedException  If interrupted while waiting for the
+	 *                               tests to finish. Whatever was computed so
+	 *                               far remains cached.
+	 */
+	public void precomputeVisibilityGraph(ExecutorService executor)
+	                                      throws InterruptedException {
+		precomputeVisibilityGraph(executor, false);
+	}
+	
+	/**
+	 * Like <code>precomputeVisibilityGraph(ExecutorService)</code>, but
+	 * optionally computing each row that is mostly unknown with a rotational
+	 * sweep (Lee's algorithm), rather than testing every pair on its own. A
+	 * swept row takes <code>O(n log n + e)</code> time, for <code>n</code>
+	 * nodes and <code>e</code> edges, plus a full visibility test for every
+	 * pair the sweep cannot tell for sure, such as nodes in a line or of the
+	 * same polygon. The sweep is only used when no two edges of the board
+	 * cross, and either way, the results are the same.<p/>
+	 * 
+	 * The pairwise tests are already sped up by the edge index, so the sweep
+	 * only pays off on boards with many nodes and few edges near each line of
+	 * sight; on typical boards it is slower, which is why it is not the
+	 * default.
+	 * 
+	 * @param  executor  The executor to run the visibility tests on.
+	 * @param  sweep     If <code>true</code>, use the rotational sweep where
+	 *                   possible.
+	 * @throws InterruptedException  If interrupted while waiting for the
+	 *                               tests to finish. Whatever was computed so
+	 *                               far remains cached.
+	 */
+	public void precomputeVisibilityGraph(ExecutorService executor,
+	                                      boolean sweep)
+	                                      throws InterruptedException {
+		final int count = getNodeCount();
+		BoardMetrics.Timing timing = startCacheBuild("visibility graph");
+		final VisibilityMatrix mesh = getNavigationMesh();
+		EdgeGrid edges = getEdgeIndex();
+		if(reduced) {
+			getReducedGraph();
+		}
+		prepareForConcurrentUse();
+		final VisibilitySweep sweeper =
+			sweep && VisibilitySweep.canSweep(this, edges)
+			? new VisibilitySweep(this) : null;
+		
+		// once complete, the graph is kept complete as polygons are added, so
+		// there is nothing left to test
+		List<Callable<Void>> rows = new ArrayList<Callable<Void>>(count);
+		for(int i = 0; !navigationMeshComplete && i < count; ++i) {
+			final int row = i;
+			rows.add(new Callable<Void>() {
+				public Void call() {
+					Node a = nodeTable.get(row);
+					if(a == null) {
+						return null;
+					}
+					if(sweeper != null && isMostlyUnknown(mesh, row, count) &&
+					   sweeper.computeRow(row, mesh)) {
+						return null;
+					}
+					// only test against later nodes, the rest is symmetric
+					for(int k = row + 1; k < count; ++k) {
+						Node b = nodeTable.get(k);
+						if(b != null &&
+						   mesh.get(row, k) == VisibilityMatrix.UNKNOWN) {
+							mesh.setVisible(row, k, visibilityTest(a, b));
+						}
+					}
+					return null;
+				}
+			});
+		}
+		for(Future<Void> f : executor.invokeAll(rows)) {
+			getResult(f);
+		}
+		navigationMeshComplete = true;
+		endCacheBuild(timing);
+	}
+	
+	/**
+	 * Tests if most of the pairs between a node and the nodes after it are
+	 * still unknown, making it worth sweeping the whole row.
+	 */
+	private boolean isMostlyUnknown(VisibilityMatrix mesh, int row,
+	                                int count) {
+		int unknown = 0;
+		for(int k = row + 1; k < count; ++k) {
+			if(mesh.get(row, k) == VisibilityMatrix.UNKNOWN) {
+				++unknown;
+			}
+		}
+		return unknown * 2 > count - row;
+	}
+	
+	/**
+	 * Unwraps the result of a finished visibility task, rethrowing anything
+	 * it may have thrown.
+	 */
+	private static <T> T getResult(Future<T> f) throws InterruptedException {
+		try {
+			return f.get();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} if(e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Forces every polygon on the board to build its lazily evaluated data.
+	 * Polygons are not thread-safe while doing so, but are perfectly safe to
+	 * read from concurrently once everything is built.
+	 */
+	private void prepareForConcurrentUse() {
+		for(Polygon p : getPolygons()) {
+			p.getLines();
+			p.getCenter();
+			p.isCCW();
+			p.getMinX();
+			p.getConvexHull();
+			p.getTriangleLines();
+			for(Triangle t : p.getTriangles()) {
+				t.getLines();
+				t.getMinX();
+				t.getConvexHull();
+			}
+		}
+	}
+	
+	// Snapshots
+	
+	/**
+	 * Gives an immutable snapshot of this board, with every cache fully
+	 * built, using the common <code>ForkJoinPool</code>.
+	 * 
+	 * @see  #freeze(ExecutorService)
+	 */
+	public FrozenBoard freeze() throws InterruptedException {
+		return freeze(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Gives an immutable snapshot of this board, with its visibility graph
+	 * fully precomputed, so that any number of threads can then query it
+	 * without locking. The visibility graph of this board is precomputed
+	 * first, and then copied over, and as it is kept up to date as the board
+	 * changes, freezing it again after a few changes is cheap.<p/>
+	 * 
+	 * This board is left untouched, and may be modified right away to build
+	 * the next version, while other threads keep using the snapshot. The
+	 * snapshot is also made available to every thread through
+	 * <code>getLastSnapshot()</code>.
+	 * 
+	 * @param  executor  The executor to run the visibility tests on.
+	 * @throws InterruptedException  If interrupted while precomputing the
+	 *                               visibility graph.
+	 */
+	public FrozenBoard freeze(ExecutorService executor)
+	                          throws InterruptedException {
+		precomputeVisibilityGraph(executor);
+		FrozenBoard snapshot = new FrozenBoard(this, executor);
+		lastSnapshot = snapshot;
+		currentSnapshot = snapshot;
+		return snapshot;
+	}
+	
+	/**
+	 * Gives the snapshot last returned by <code>freeze()</code>, or
+	 * <code>null</code> if this board was never frozen. This may safely be
+	 * called from any thread, even while the board is being modified, and
+	 * the snapshot is safe to use from the calling thread.
+	 */
+	public FrozenBoard getLastSnapshot() {
+		return lastSnapshot;
+	}
+	
+	/**
+	 * Makes this board a copy of another one, along with whatever its caches
+	 * hold about the nodes on it. The set of polygons is made unmodifiable.
+	 * Used to build snapshots, before anything else is done with this board.
+	 */
+	void copyFrom(Board source) {
+		polygons = Collections.unmodifiableSet(
+			new HashSet<Polygon>(source.polygons)
+		);
+		searchEngine = source.searchEngine;
+		reduced = source.reduced;
+		metrics = source.metrics;
+		NavigationMeshCache cache = source.getUnownedNavigationMesh();
+		unownedNavigationMesh = new NavigationMeshCache(
+			cache.getMaximumWeight(), cache.hasSoftRows()
+		);
+		if(source.nodes == null) {
+			return;
+		}
+		nodeIds = new HashMap<Node, Integer>(source.nodeIds);
+		nodeTable = new ArrayList<Node>(source.nodeTable);
+		nodeOwners = new ArrayList<List<Polygon>>(source.nodeOwners.size());
+		for(List<Polygon> owners : source.nodeOwners) {
+			nodeOwners.add(owners == null ? null
+			                              : new ArrayList<Polygon>(owners));
+		}
+		freeNodeIds = new ArrayList<Integer>(source.freeNodeIds);
+		nodes = nodeIds.keySet();
+		reducedGraph = source.reducedGraph; // never modified once built
+		freeSpaceMesh = source.freeSpaceMesh; // nor is this
+		if(source.navigationMesh != null) {
+			// a read-only matrix is never modified, so it can be shared
+			navigationMesh = source.navigationMesh.isReadOnly()
+			                 ? source.navigationMesh
+			                 : new VisibilityMatrix(source.navigationMesh,
+			                                        getNodeCount());
+			navigationMeshComplete = source.navigationMeshComplete;
+		}
+	}
+	
+	/**
+	 * Sets up the caches of this new board from the node table and the
+	 * visibility graph of a board it is a copy of, such as one saved to a
+	 * file, so that they do not have to be built again. Node ids are those
+	 * of the table, in which removed nodes are left as <code>null</code>.
+	 * 
+	 * @param  table     The node table, every node of every polygon being in
+	 *                   it exactly once.
+	 * @param  mesh      The owned navigation mesh, for the ids of the table.
+	 * @param  complete  <code>true</code> if the visibility of every pair of
+	 *                   nodes is known.
+	 */
+	void restoreCaches(Node[] table, VisibilityMatrix mesh, boolean complete) {
+		nodeIds = new HashMap<Node, Integer>(table.length * 2);
+		nodeTable = new ArrayList<Node>(Arrays.asList(table));
+		nodeOwners = new ArrayList<List<Polygon>>(table.length);
+		freeNodeIds = new ArrayList<Integer>();
+		for(int id = 0; id < table.length; ++id) {
+			if(table[id] == null) {
+				nodeOwners.add(null);
+				freeNodeIds.add(id);
+			} else {
+				nodeIds.put(table[id], id);
+				nodeOwners.add(new ArrayList<Polygon>(1));
+			}
+		}
+		for(Polygon p : getPolygons()) {
+			for(Node n : p.getNodes()) {
+				nodeOwners.get(nodeIds.get(n)).add(p);
+			}
+		}
+		nodes = nodeIds.keySet();
+		navigationMesh = mesh;
+		navigationMeshComplete = complete;
+	}
+	
+	// Metrics
+	
+	/**
+	 * Gives the metrics this board records into, or <code>null</code> if it
+	 * does not record any, which is the default.
+	 */
+	public BoardMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Starts (or stops) recording metrics about the work done by this board:
+	 * how many visibility tests it runs, how often its caches answer, how
+	 * long its caches take to build, and how long searches take. Recording
+	 * also emits Java Flight Recorder events. Snapshots taken with
+	 * <code>freeze()</code> afterwards record into the same metrics.
+	 * 
+	 * @param  metrics  The metrics to record into, which may be shared with
+	 *                  other boards, or <code>null</code> to stop recording.
+	 */
+	public void setMetrics(BoardMetrics metrics) {
+		this.metrics = metrics;
+		currentSnapshot = null;
+	}
+	
+	/**
+	 * Starts timing the build of a cache, if metrics are being recorded.
+	 * 
+	 * @return  The timing to end, or <code>null</code>.
+	 */
+	private BoardMetrics.Timing startCacheBuild(String cache) {
+		return metrics == null ? null : metrics.startCacheBuild(cache);
+	}
+	
+	private void endCacheBuild(BoardMetrics.Timing timing) {
+		if(timing != null && metrics != null) {
+			metrics.endCacheBuild(timing, nodeTable == null ? 0
+			                                                : nodeTable.size());
+		}
+	}
+	
+	// Listeners
+	
+	/**
+	 * Registers a listener to be told about every change to this board, on
+	 * the thread making the change. The board keeps a reference to the
+	 * listener until it is removed.
+	 */
+	public void addBoardListener(BoardListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeBoardListener(BoardListener listener) {
+		listeners.remove(listener);
+	}
+	
+	// Path cache
+	
+	/**
+	 * Gives the cache answering repeated <code>getShortestPath</code>
+	 * queries, or <code>null</code> if there is none, which is the default.
+	 */
+	public PathCache getPathCache() {
+		return pathCache;
+	}
+	
+	/**
+	 * Starts (or stops) caching the results of <code>getShortestPath</code>,
+	 * with or without <code>QueryOptions</code>. The cache is cleared now,
+	 * and whenever this board changes, or its search engine is replaced.
+	 * Batches of queries run on a snapshot of the board, and do not use it.
+	 * 
+	 * @param  cache  The cache, which may not be used by any other board, or
+	 *                <code>null</code> to stop caching.
+	 */
+	public void setPathCache(PathCache cache) {
+		if(pathCache != null) {
+			removeBoardListener(pathCache);
+		}
+		pathCache = cache;
+		if(cache != null) {
+			cache.clear();
+			addBoardListener(cache);
+		}
+	}
+	
 	// Pathfinding stuff
 	
+	/**
+	 * Gives the search engine used to answer <code>getShortestPath</code>
+	 * queries. By default, this is an <code>AStarSearch</code>.
+	 */
+	public PathSearch getSearchEngine() {
+		return searchEngine;
+	}
+	
+	/**
+	 * Replaces the search engine used to answer <code>getShortestPath</code>
+	 * queries. A <code>FreeSpaceSearch</code> never builds the visibility
+	 * graph, and is much cheaper on large boards that are only queried a few
+	 * times, at the cost of paths that may be slightly longer than optimal.
+	 * 
+	 * @param  searchEngine  The new search engine. May not be
+	 *                       <code>null</code>.
+	 */
+	public void setSearchEngine(PathSearch searchEngine) {
+		if(searchEngine == null) {
+			throw new NullPointerException("searchEngine");
+		}
+		this.searchEngine = searchEngine;
+		currentSnapshot = null;
+		if(pathCache != null) {
+			pathCache.clear(); // found by the previous engine
+		}
+	}
+	
+	/**
+	 * Tells if shortest path searches run over the reduced visibility graph.
+	 * 
+	 * @see  #setReducedGraph
+	 */
+	public boolean isReducedGraph() {
+		return reduced;
+	}
+	
+	/**
+	 * Switches shortest path searches to the reduced visibility graph, or
+	 * back. As shortest paths only ever bend around convex vertices, and only
+	 * along edges that are tangent to the polygons at both ends, the reduced
+	 * graph leaves out reflex vertices and every other edge, and the paths
+	 * found are just as short. This takes a lot of visibility tests out of
+	 * every search on boards with concave polygons. Polygons touching or
+	 * overlapping others are not reduced at all, as paths may then run along
+	 * their shared edges and bend anywhere on them.<p/>
+	 * 
+	 * Paths may still start or end at any node. Paths starting or ending
+	 * inside a polygon do not have to wrap around it, so those are searched
+	 * over the full graph. When several paths are equally short, the one
+	 * found may differ from that of the full graph.
+	 * Search engines are free to ignore this setting, though
+	 * <code>AStarSearch</code> does not.
+	 * 
+	 * @param  reduced  <code>true</code> to search the reduced graph.
+	 */
+	public void setReducedGraph(boolean reduced) {
+		this.reduced = reduced;
+		currentSnapshot = null;
+	}
+	
 	/**
 	 * Returns a set of <code>Node</code>s to pass through in order to travel
 	 * optimally from point <code>a</code> to <code>b</code>, not including
-	 * <code>a</code> but including <code>b</code>. It uses Dijkstra's algorithm
-	 * to compute this, and therefore guarentees a mathematically optimal path.
+	 * <code>a</code> but including <code>b</code>. By default, it uses the A*
+	 * algorithm to compute this, and therefore guarentees a mathematically
+	 * optimal path.
 	 * <p/>
 	 * 
 	 * @param   a  The starting node to travel from.
@@ -282,142 +1130,415 @@ public class Board implements Collection<Polygon> {
 	 *          order to travel the mathematically optimal path from <code>a
 	 *          </code> to <code>b</code>. <code>null</code> if there is no
 	 *          possible path from <code>a</code> to <code>b</code>.
+	 * @see     #setSearchEngine
 	 */
 	public List<Node> getShortestPath(Node a, Node b) {
-		
-		// Handle special/common cases
-		if(isVisible(a, b)) { // direct is shortest
-			List<Node> path = new LinkedList<Node>();
-			path.add(b);
-			return path;
+		if(pathCache == null) {
+			return search(a, b);
+		}
+		// cached along with the bound the search engine reports
+		return getShortestPath(new PathQuery(a, b), null).getPath();
+	}
+	
+	/**
+	 * Runs the search engine, recording metrics if asked to.
+	 */
+	private List<Node> search(Node a, Node b) {
+		BoardMetrics m = metrics;
+		if(m == null) {
+			return searchEngine.getShortestPath(this, a, b);
+		}
+		BoardMetrics.Timing timing = m.startSearch(a, b, searchEngine);
+		List<Node> path = searchEngine.getShortestPath(this, a, b);
+		m.endSearch(timing, path);
+		return path;
+	}
+	
+	/**
+	 * Finds a path as <code>getShortestPath(Node, Node)</code> does, unless
+	 * one of the limits of the given options is reached first. Search
+	 * engines implementing <code>LimitedPathSearch</code>, as the built-in
+	 * A* searches do, check the options throughout the search. Others are
+	 * only checked against them before they start, and then run to
+	 * completion.
+	 * 
+	 * @param   a        The starting node to travel from.
+	 * @param   b        The ending node to travel to.
+	 * @param   options  The limits on the search, or <code>null</code> for
+	 *                   none.
+	 * @return  The result, telling whether a path was found, there is none,
+	 *          or the search gave up, and why.
+	 * @see     QueryOptions
+	 */
+	public PathResult getShortestPath(Node a, Node b, QueryOptions options) {
+		return getShortestPath(new PathQuery(a, b), options);
+	}
+	
+	private PathResult getShortestPath(PathQuery query, QueryOptions options) {
+		Node a = query.getStart(), b = query.getEnd();
+		PathResult.Status stop = options == null ? null : options.check();
+		if(stop != null) {
+			return new PathResult(query, stop); // too late to start
+		}
+		PathCache cache = pathCache;
+		long generation = 0;
+		if(cache != null) {
+			PathResult cached = cache.get(this, query);
+			if(cached != null) {
+				return cached;
+			}
+			generation = cache.getGeneration();
+		}
+		PathSearch engine = searchEngine;
+		BoardMetrics m = metrics;
+		BoardMetrics.Timing timing = m == null ? null
+		                                       : m.startSearch(a, b, engine);
+		PathResult result;
+		if(engine instanceof LimitedPathSearch) {
+			result = ((LimitedPathSearch)engine).getShortestPath(this, query,
+			                                                     options);
+		} else {
+			result = new PathResult(query, engine.getShortestPath(this, a, b));
+		}
+		if(m != null) {
+			m.endSearch(timing, result.getPath());
 		}
+		PathResult.Status status = result.getStatus();
+		if(cache != null && (status == PathResult.Status.FOUND ||
+		                     status == PathResult.Status.UNREACHABLE)) {
+			cache.put(query, result.getPath(), result.getBound(), generation);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the shortest paths from the given source to every node on the
+	 * board at once, rather than to a single one. This is much faster than
+	 * calling <code>getShortestPath</code> once per target when there are many
+	 * targets to pick from. Targets that are not on the board can be asked
+	 * about too, through the returned tree.
+	 * 
+	 * @param   source  The node to travel from.
+	 * @return  The tree of shortest paths from the source. It remains valid
+	 *          until this board is modified.
+	 */
+	public ShortestPathTree getShortestPathTree(Node source) {
+		return new ShortestPathTree(this, source);
+	}
+	
+	/**
+	 * Answers a batch of shortest path queries in parallel, using the common
+	 * <code>ForkJoinPool</code>.
+	 * 
+	 * @see  #getShortestPaths(Collection, ExecutorService)
+	 */
+	public List<PathResult> getShortestPaths(Collection<PathQuery> queries)
+	                                         throws InterruptedException {
+		return getShortestPaths(queries, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Answers a batch of shortest path queries, spread across the given
+	 * executor. The queries are run on a snapshot of this board, as given by
+	 * <code>freeze()</code>, so the visibility graph between the nodes of the
+	 * board is computed only once for the whole batch, and the snapshot is
+	 * reused by the next batches until this board changes. The visibility
+	 * rows of the endpoints of the queries are then computed in parallel,
+	 * once per distinct endpoint, however many queries share it, before the
+	 * searches themselves are run.<p/>
+	 * 
+	 * A query throwing an exception does not affect the others, it is simply
+	 * reported in its result.
+	 * 
+	 * @param   queries   The queries to answer.
+	 * @param   executor  The executor to run the searches on.
+	 * @return  One result per query, in the same order as the queries.
+	 * @throws  InterruptedException  If interrupted while waiting for the
+	 *                                searches to finish.
+	 */
+	public List<PathResult> getShortestPaths(Collection<PathQuery> queries,
+	                                         ExecutorService executor)
+	                                         throws InterruptedException {
+		return getShortestPaths(queries, executor, null);
+	}
+	
+	/**
+	 * Answers a batch of shortest path queries as
+	 * <code>getShortestPaths(Collection, ExecutorService)</code> does, every
+	 * one of them within the limits of the given options. Queries that have
+	 * not started by the deadline, or by the time the options are cancelled,
+	 * give up straight away.
+	 * 
+	 * @param   options  The limits on every search, or <code>null</code> for
+	 *                   none.
+	 * @see     #getShortestPath(Node, Node, QueryOptions)
+	 */
+	public List<PathResult> getShortestPaths(Collection<PathQuery> queries,
+	                                         ExecutorService executor,
+	                                         final QueryOptions options)
+	                                         throws InterruptedException {
+		final Board snapshot = currentSnapshot != null ? currentSnapshot
+		                                               : freeze(executor);
 		
-		Map<Node, ShortestPathInfo> shortestTo = new HashMap();
-		shortestTo.put(b, null);
-		for(Node i : getNodes()) {
-			shortestTo.put(i, null);
+		// every distinct endpoint that is not on the board needs its own row
+		Set<Node> endpoints = new HashSet<Node>();
+		for(PathQuery q : queries) {
+			endpoints.add(q.getStart());
+			endpoints.add(q.getEnd());
+		}
+		List<Callable<Void>> rows = new ArrayList<Callable<Void>>();
+		for(final Node n : endpoints) {
+			if(snapshot.isOwned(n)) {
+				continue;
+			}
+			rows.add(new Callable<Void>() {
+				public Void call() {
+					snapshot.getVisible(n);
+					return null;
+				}
+			});
+		}
+		for(Future<Void> f : executor.invokeAll(rows)) {
+			getResult(f);
 		}
 		
-		Node startingFrom = a;
-		double startingFromCost = 0.;
-		while(true) {
-			// find possible paths
-			Set<Node> improvable = new HashSet<Node>();
-			for(Node k : shortestTo.keySet()) {
-				if(shortestTo.get(k) == null ||
-				   !shortestTo.get(k).isMinimum()) {
-					improvable.add(k);
+		List<Callable<PathResult>> searches =
+			new ArrayList<Callable<PathResult>>(queries.size());
+		for(final PathQuery q : queries) {
+			searches.add(new Callable<PathResult>() {
+				public PathResult call() {
+					try {
+						return snapshot.getShortestPath(q, options);
+					} catch(RuntimeException e) {
+						return new PathResult(q, e);
+					}
 				}
+			});
+		}
+		List<PathResult> results = new ArrayList<PathResult>(queries.size());
+		for(Future<PathResult> f : executor.invokeAll(searches)) {
+			results.add(getResult(f));
+		}
+		return results;
+	}
+	
+	// Implementation of the Collection interface, along with a few extra
+	// utility functions lining up with the Collection interface
+	
+	/**
+	 * Forgets every expanded variant and snapshot of this board, which no
+	 * longer match it.
+	 */
+	private void dropVariants() {
+		synchronized(expandedBoards) {
+			expandedBoards.clear();
+		}
+		currentSnapshot = null;
+	}
+	
+	/**
+	 * Marks all caches as "dirty", deleting them, and requring them to be
+	 * rebuilt before being used again. This is called when the board is
+	 * cleared, or when too much of it changes at once for incremental updates
+	 * to pay off.
+	 */
+	protected void markDirty() {
+		for(BoardListener l : listeners) {
+			l.boardChanged(this);
+		}
+		lines = null;
+		edgeIndex = null;
+		nodes = null;
+		nodeIds = null;
+		nodeTable = null;
+		nodeOwners = null;
+		freeNodeIds = null;
+		navigationMesh = null;
+		navigationMeshComplete = false;
+		reducedGraph = null;
+		freeSpaceMesh = null;
+		dropVariants();
+		unownedNavigationMesh.clear();
+	}
+	
+	/**
+	 * Tests if the visibility between two nodes may depend on the given
+	 * polygon: if the segment between them comes near its bounds, or if
+	 * either of them is one of its nodes, as those may belong to another
+	 * polygon as well, and the owners of a node matter to its visibility.
+	 */
+	private static boolean mayDependOn(Polygon p, Node a, Node b) {
+		// the nodes of the polygon are within its bounds too
+		return !(
+			Rounding.isLessThan(Math.max(a.getX(), b.getX()), p.getMinX()) ||
+			Rounding.isGreaterThan(Math.min(a.getX(), b.getX()), p.getMaxX()) ||
+			Rounding.isLessThan(Math.max(a.getY(), b.getY()), p.getMinY()) ||
+			Rounding.isGreaterThan(Math.min(a.getY(), b.getY()), p.getMaxY())
+		);
+	}
+	
+	/**
+	 * Re-tests the cached pairs of nodes whose visibility may depend on the
+	 * given polygon, once it was added or removed. Only the pairs whose
+	 * segment may pass through the bounds of the polygon are looked at, as
+	 * found through a <code>NodeGrid</code>, along with every pair with an
+	 * end at one of the nodes of the polygon still on the board.
+	 */
+	private void updatePairs(Polygon p) {
+		VisibilityMatrix mesh = getNavigationMesh();
+		NodeGrid grid = new NodeGrid(nodeTable);
+		int count = getNodeCount();
+		Set<Integer> ends = new HashSet<Integer>();
+		for(Node n : p.getNodes()) {
+			int id = getNodeId(n);
+			if(id >= 0) {
+				ends.add(id);
 			}
-			improvable.addAll(getVisible(startingFrom, b));
-			
-			if(improvable.size() == 0) { // nothing else we can do
-				return null; // no possible path
-			}
-			
-			// see if there is a shorter path for any of these via startingFrom
-			double lowestCost = Double.POSITIVE_INFINITY;
-			Node lowestCostNode = null;
-			for(Node i : improvable) {
-				double cost = startingFromCost + startingFrom.getDistance(i);
-				if(cost < lowestCost) {
-					lowestCost = cost;
-					lowestCostNode = i;
-				} if(shortestTo.get(i) == null) {
-					shortestTo.put(i, new ShortestPathInfo(startingFrom, cost,
-					                                       false));
-				} else if(cost < shortestTo.get(i).getCost()) {
-					// reuse and recycle that object if at all possible :-P
-					//       __
-					//      /  \
-					//     / /\ \
-					//    /\/ \  /     Bad ASCII-Art recycling symbol
-					//   /  \  \/\
-					//   / /    \ \
-					//  / /__/|__\ \
-					// |____(  _____|
-					//       \|
-					ShortestPathInfo info = shortestTo.get(i);
-					info.setGoesThrough(startingFrom);
-					info.setCost(cost);
+		}
+		for(int i : ends) {
+			Node a = nodeTable.get(i);
+			for(int k = 0; k < count; ++k) {
+				Node b = nodeTable.get(k);
+				if(b != null && k != i &&
+				   mesh.get(i, k) != VisibilityMatrix.UNKNOWN) {
+					mesh.setVisible(i, k, visibilityTest(a, b));
 				}
 			}
-			shortestTo.get(lowestCostNode).setIsMinimum(true);
-			
-			if(lowestCostNode.equals(b)) { // we're done! wrap it up.
-				LinkedList<Node> path = new LinkedList<Node>();
-				Node n = b;
-				while(n != a) {
-					path.addFirst(n);
-					n = shortestTo.get(n).getGoesThrough();
+		}
+		for(int i = 0; i < count; ++i) {
+			Node a = nodeTable.get(i);
+			if(a == null || ends.contains(i)) {
+				continue;
+			}
+			for(int k : grid.getNodesThrough(i, p.getMinX(), p.getMinY(),
+			                                 p.getMaxX(), p.getMaxY())) {
+				Node b = nodeTable.get(k);
+				if(k >= i || ends.contains(k) ||
+				   mesh.get(i, k) == VisibilityMatrix.UNKNOWN ||
+				   !mayDependOn(p, a, b)) {
+					continue; // each pair is only looked at once
 				}
-				return path;
+				mesh.setVisible(i, k, visibilityTest(a, b));
 			}
-			startingFrom = lowestCostNode;
-			startingFromCost = lowestCost;
 		}
 	}
 	
-	private static class ShortestPathInfo {
-		private Node goesThrough;
-		private double cost;
-		private boolean isMinimum;
-		
-		public ShortestPathInfo(Node goesThrough, double cost,
-		                        boolean isMinimum) {
-			this.goesThrough = goesThrough;
-			this.cost = cost;
-			this.isMinimum = isMinimum;
+	/**
+	 * Updates the caches for a polygon that was just added to the board. New
+	 * nodes and lines are registered, and cached pairs the polygon may now
+	 * occlude are re-tested. The visibility of the new nodes is
+	 * computed right away if the whole graph was precomputed, otherwise it is
+	 * left to be computed lazily, as usual.
+	 */
+	private void addToCaches(Polygon p) {
+		if(lines != null) {
+			lines.addAll(Arrays.asList(p.getLines()));
 		}
-		
-		public Node getGoesThrough() {
-			return goesThrough;
+		edgeIndex = null; // cheap to rebuild, compared to the rest
+		reducedGraph = null;
+		freeSpaceMesh = null;
+		dropVariants();
+		if(nodes == null) {
+			return;
 		}
-		
-		public double getCost() {
-			return cost;
+		List<Integer> added = addNodes(p);
+		for(int id : added) {
+			getUnownedNavigationMesh().remove(nodeTable.get(id));
 		}
 		
-		public boolean isMinimum() {
-			return isMinimum;
+		if(navigationMesh != null) {
+			VisibilityMatrix mesh = getNavigationMesh();
+			for(int id : added) { // forget about whatever had this id before
+				mesh.clear(id);
+			}
+			updatePairs(p);
+			int count = getNodeCount();
+			if(navigationMeshComplete) {
+				for(int id : added) {
+					Node a = nodeTable.get(id);
+					for(int k = 0; k < count; ++k) {
+						Node b = nodeTable.get(k);
+						if(b != null && k != id &&
+						   mesh.get(id, k) == VisibilityMatrix.UNKNOWN) {
+							mesh.setVisible(id, k, visibilityTest(a, b));
+						}
+					}
+				}
+			}
 		}
 		
-		public boolean getIsMinimum() {
-			return isMinimum();
+		for(Map.Entry<Node, Map<Node, Boolean>> row :
+		    getUnownedNavigationMesh().getRows().entrySet()) {
+			for(Map.Entry<Node, Boolean> e : row.getValue().entrySet()) {
+				if(mayDependOn(p, row.getKey(), e.getKey())) {
+					e.setValue(visibilityTest(row.getKey(), e.getKey()));
+				}
+			}
 		}
-		
-		public void setGoesThrough(Node goesThrough) {
-			this.goesThrough = goesThrough;
+	}
+	
+	/**
+	 * Updates the caches for a polygon that was just removed from the board.
+	 * Its nodes and lines are unregistered, and the cached pairs it may have
+	 * been occluding are re-tested.
+	 */
+	private void removeFromCaches(Polygon p) {
+		if(lines != null) {
+			// lines are compared by identity, so this only removes the very
+			// edges of this polygon, even those equal to edges of another one
+			for(Line l : p.getLines()) {
+				lines.remove(l);
+			}
 		}
+		edgeIndex = null;
+		reducedGraph = null;
+		freeSpaceMesh = null;
+		dropVariants();
+		if(nodes == null) {
+			return;
+		}
+		removeNodes(p);
 		
-		public void setCost(double cost) {
-			this.cost = cost;
+		if(navigationMesh != null) {
+			updatePairs(p);
 		}
 		
-		public void setIsMinimum(boolean isMinimum) {
-			this.isMinimum = isMinimum;
+		for(Map.Entry<Node, Map<Node, Boolean>> row :
+		    getUnownedNavigationMesh().getRows().entrySet()) {
+			Iterator<Map.Entry<Node, Boolean>> i =
+				row.getValue().entrySet().iterator();
+			boolean changed = false;
+			while(i.hasNext()) {
+				Map.Entry<Node, Boolean> e = i.next();
+				if(mayDependOn(p, row.getKey(), e.getKey())) {
+					i.remove(); // forget it, it will be re-tested if needed
+					changed = true;
+				}
+			}
+			if(changed) {
+				getUnownedNavigationMesh().update(row.getKey());
+			}
 		}
 	}
 	
-	// Implementation of the Collection interface, along with a few extra
-	// utility functions lining up with the Collection interface
-	
 	/**
-	 * Marks all caches as "dirty", deleting them, and requring them to be
-	 * rebuilt before being used again. This is called every time the polygon
-	 * data composing the board is mutated.
+	 * Tests if a bulk change of the given size is better handled by simply
+	 * marking everything as dirty.
 	 */
-	protected void markDirty() {
-		lines = null;
-		nodes = null;
-		navigationMesh = null;
-		unownedNavigationMesh = null;
+	private boolean isBulkChange(int size) {
+		return size > 1 && size * 2 > polygons.size();
 	}
 	
 	@Override
 	public boolean add(Polygon p) {
-		markDirty();
-		return polygons.add(p);
+		if(!polygons.add(p)) {
+			return false;
+		}
+		addToCaches(p);
+		for(BoardListener l : listeners) {
+			l.polygonAdded(this, p);
+		}
+		return true;
 	}
 	
 	public boolean addAll(Polygon ... p) {
@@ -426,8 +1547,15 @@ public class Board implements Collection<Polygon> {
 	
 	@Override
 	public boolean addAll(Collection<? extends Polygon> p) {
-		markDirty();
-		return polygons.addAll(p);
+		if(isBulkChange(p.size())) {
+			markDirty();
+			return polygons.addAll(p);
+		}
+		boolean changed = false;
+		for(Polygon i : p) {
+			changed |= add(i);
+		}
+		return changed;
 	}
 	
 	@Override
@@ -474,17 +1602,38 @@ public class Board implements Collection<Polygon> {
 	
 	@Override
 	public boolean remove(Object o) {
-		return polygons.remove(o);
+		if(!polygons.remove(o)) {
+			return false;
+		}
+		removeFromCaches((Polygon)o);
+		for(BoardListener l : listeners) {
+			l.polygonRemoved(this, (Polygon)o);
+		}
+		return true;
 	}
 	
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		return polygons.removeAll(c);
+		if(isBulkChange(c.size())) {
+			markDirty();
+			return polygons.removeAll(c);
+		}
+		boolean changed = false;
+		for(Object o : c) {
+			changed |= remove(o);
+		}
+		return changed;
 	}
 	
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		return polygons.retainAll(c);
+		List<Polygon> removed = new ArrayList<Polygon>();
+		for(Polygon p : polygons) {
+			if(!c.contains(p)) {
+				removed.add(p);
+			}
+		}
+		return removeAll(removed);
 	}
 	
 	@Override
@@ -513,6 +1662,6 @@ public class Board implements Collection<Polygon> {
 	}
 	
 	public String toString() {
-		return Arrays.toString(polygons.toArray(new String[polygons.size()]));
+		return polygons.toString();
 	}
 }
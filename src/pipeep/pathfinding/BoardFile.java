@@ -0,0 +1,217 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.Triangle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads and writes boards in a compact binary format, along with their
+ * precomputed visibility graph, so that large boards can be loaded without
+ * testing the visibility between their nodes again. The file is mapped into
+ * memory when read, and the visibility graph is answered straight from the
+ * mapped bytes, so loading it takes no time and no heap, no matter its size,
+ * and several processes loading the same file share its pages.<p/>
+ * 
+ * A file holds, in order, and all in big-endian order:
+ * <ul>
+ * <li>The magic number <code>"PFBD"</code> and the version of the format,
+ *     as two <code>int</code>s.</li>
+ * <li>The node table: the number of node ids, then the coordinates of every
+ *     node, in id order, as two <code>double</code>s. Unused ids are
+ *     written as two <code>NaN</code>s.</li>
+ * <li>The polygons: the number of polygons, then for every polygon, the
+ *     number of vertexes and their node ids, in order, which also gives the
+ *     edges, then the number of triangles and the node ids of their
+ *     corners.</li>
+ * <li>Padding up to a multiple of 8 bytes, then the number of words of the
+ *     visibility matrix, and the words themselves, as <code>long</code>s.
+ *     </li>
+ * </ul>
+ * 
+ * The search engine and the other settings of a board are not saved, a board
+ * read back uses the defaults.
+ */
+public final class BoardFile {
+	public static final int MAGIC = 0x50464244; // "PFBD"
+	public static final int VERSION = 1;
+	
+	private BoardFile() {}
+	
+	/**
+	 * Writes a board to a file, precomputing its visibility graph first,
+	 * using the common <code>ForkJoinPool</code>.
+	 * 
+	 * @see  #write(Board, File, ExecutorService)
+	 */
+	public static void write(Board board, File file)
+	                         throws IOException, InterruptedException {
+		write(board, file, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Writes a board to a file, precomputing its visibility graph first. The
+	 * visibility graph stays cached by the board, as it would after
+	 * <code>precomputeVisibilityGraph</code>.
+	 * 
+	 * @param  executor  The executor to run the visibility tests on.
+	 * @throws IOException  If the file cannot be written.
+	 * @throws InterruptedException  If interrupted while precomputing the
+	 *                               visibility graph.
+	 */
+	public static void write(Board board, File file, ExecutorService executor)
+	                         throws IOException, InterruptedException {
+		board.precomputeVisibilityGraph(executor);
+		int count = board.getNodeCount();
+		VisibilityMatrix mesh = board.getNavigationMesh();
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(file), 1 << 16
+		));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			
+			out.writeInt(count);
+			for(int id = 0; id < count; ++id) {
+				Node n = board.getNode(id);
+				out.writeDouble(n == null ? Double.NaN : n.getX());
+				out.writeDouble(n == null ? Double.NaN : n.getY());
+			}
+			
+			out.writeInt(board.getPolygons().size());
+			for(Polygon p : board.getPolygons()) {
+				Node[] nodes = p.getNodes();
+				out.writeInt(nodes.length);
+				for(Node n : nodes) {
+					out.writeInt(board.getNodeId(n));
+				}
+				Triangle[] triangles = p.getTriangles();
+				out.writeInt(triangles.length);
+				for(Triangle t : triangles) {
+					out.writeInt(board.getNodeId(t.getNodeA()));
+					out.writeInt(board.getNodeId(t.getNodeB()));
+					out.writeInt(board.getNodeId(t.getNodeC()));
+				}
+			}
+			
+			// align the matrix, so that it can be read as longs in place
+			while((out.size() + 4) % 8 != 0) {
+				out.writeByte(0);
+			}
+			int words = VisibilityMatrix.getWordCount(count);
+			out.writeInt(words);
+			for(int i = 0; i < words; ++i) {
+				out.writeLong(mesh.getWord(i));
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads a board from a file, using the common <code>ForkJoinPool</code>
+	 * for whatever caches are still to be built.
+	 * 
+	 * @see  #read(File, ExecutorService)
+	 */
+	public static FrozenBoard read(File file)
+	                               throws IOException, InterruptedException {
+		return read(file, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Reads a board written by <code>write</code>. The file is mapped into
+	 * memory, and the visibility graph of the board is read from it as
+	 * needed, rather than copied, so the file must not be modified while the
+	 * board is in use. The board is frozen, as it could not keep a read-only
+	 * visibility graph up to date; to modify it, copy its polygons to a new
+	 * board.
+	 * 
+	 * @param  executor  The executor to build the remaining caches on.
+	 * @throws IOException  If the file cannot be read, or is not a board file
+	 *                      of this version.
+	 * @throws InterruptedException  If interrupted while building the
+	 *                               remaining caches.
+	 */
+	public static FrozenBoard read(File file, ExecutorService executor)
+	                               throws IOException, InterruptedException {
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// the mapping stays valid once the channel is closed
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+			                     channel.size());
+		} finally {
+			raf.close();
+		}
+		
+		try {
+			if(buffer.getInt() != MAGIC) {
+				throw new IOException("not a board file: " + file);
+			}
+			int version = buffer.getInt();
+			if(version != VERSION) {
+				throw new IOException("unsupported board file version " +
+				                      version + ": " + file);
+			}
+			
+			int count = buffer.getInt();
+			Node[] table = new Node[count];
+			for(int id = 0; id < count; ++id) {
+				double x = buffer.getDouble(), y = buffer.getDouble();
+				if(!Double.isNaN(x)) {
+					table[id] = new Node(x, y);
+				}
+			}
+			
+			Polygon[] polygons = new Polygon[buffer.getInt()];
+			for(int i = 0; i < polygons.length; ++i) {
+				Node[] nodes = new Node[buffer.getInt()];
+				for(int k = 0; k < nodes.length; ++k) {
+					nodes[k] = getNode(table, buffer.getInt());
+				}
+				Triangle[] triangles = new Triangle[buffer.getInt()];
+				for(int k = 0; k < triangles.length; ++k) {
+					Node a = getNode(table, buffer.getInt());
+					Node b = getNode(table, buffer.getInt());
+					Node c = getNode(table, buffer.getInt());
+					triangles[k] = new Triangle(a, b, c);
+				}
+				polygons[i] = new Polygon(nodes, triangles);
+			}
+			
+			buffer.position((buffer.position() + 4 + 7) / 8 * 8 - 4);
+			int words = buffer.getInt();
+			if(words != VisibilityMatrix.getWordCount(count)) {
+				throw new IOException("corrupt board file: " + file);
+			}
+			VisibilityMatrix mesh =
+				new VisibilityMatrix(buffer.slice().asLongBuffer(), count);
+			
+			Board board = new Board(polygons);
+			board.restoreCaches(table, mesh, true);
+			return new FrozenBoard(board, executor);
+		} catch(RuntimeException ex) { // buffer underflows, bad ids
+			throw new IOException("corrupt board file: " + file, ex);
+		}
+	}
+	
+	private static Node getNode(Node[] table, int id) throws IOException {
+		if(table[id] == null) {
+			throw new IOException("corrupt board file: unused node id " + id);
+		}
+		return table[id];
+	}
+}
@@ -0,0 +1,31 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Polygon;
+
+/**
+ * Told about the changes made to a <code>Board</code>, once the caches of the
+ * board are up to date with them, so that the board may be queried from the
+ * listener. This lets objects that keep their own state about a board, such
+ * as an <code>IncrementalPlanner</code>, repair just what a change affects.
+ * 
+ * @see  Board#addBoardListener
+ */
+public interface BoardListener {
+	/**
+	 * Called when a single polygon is added to the board.
+	 */
+	public void polygonAdded(Board board, Polygon p);
+	
+	/**
+	 * Called when a single polygon is removed from the board.
+	 */
+	public void polygonRemoved(Board board, Polygon p);
+	
+	/**
+	 * Called when the board is about to change too much at once to report
+	 * every polygon, such as when it is cleared, or many polygons are added
+	 * or removed together. The board must not be queried from here, as the
+	 * change has not been made yet.
+	 */
+	public void boardChanged(Board board);
+}
@@ -0,0 +1,375 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads polygons onto a board from a line-oriented text format, streaming
+ * them in rather than building every polygon in memory first. Every line
+ * holds either
+ * <ul>
+ * <li>a well-known text <code>POLYGON</code> or <code>MULTIPOLYGON</code>,
+ *     such as <code>POLYGON ((0 0, 4 0, 4 3, 0 0))</code>, of which only
+ *     polygons without holes are supported, or</li>
+ * <li>a ring as comma-separated coordinates, such as
+ *     <code>0,0,4,0,4,3</code>.</li>
+ * </ul>
+ * Rings may be closed or not, and blank lines and lines starting with
+ * <code>#</code> are skipped.<p/>
+ * 
+ * Loading is pipelined: the calling thread reads the lines in batches, the
+ * batches are parsed on an executor, which also builds the lines, bounds and
+ * triangulation of every polygon, and the calling thread adds the finished
+ * batches to the board, in order, while the next ones are being parsed. At
+ * most a fixed number of batches are in flight at once, so memory use is
+ * bounded by the board itself, no matter how large the input is.
+ * 
+ * @see  BoardFile
+ */
+public class BoardLoader {
+	/**
+	 * Told about the progress of a load, on the loading thread, after every
+	 * batch is added to the board.
+	 */
+	public static interface ProgressListener {
+		/**
+		 * @param  lines     The number of lines read and added so far.
+		 * @param  polygons  The number of polygons added so far.
+		 */
+		void progress(long lines, int polygons);
+	}
+	
+	private final ExecutorService executor;
+	private final int window;
+	private int batchSize = 256;
+	private ProgressListener listener = null;
+	
+	/**
+	 * Creates a loader parsing on the common <code>ForkJoinPool</code>, or on
+	 * the loading thread itself if there is only one processor, where handing
+	 * batches over to another thread only costs time.
+	 */
+	public BoardLoader() {
+		this(Runtime.getRuntime().availableProcessors() < 2
+		     ? null : ForkJoinPool.commonPool(),
+		     2 * ForkJoinPool.commonPool().getParallelism());
+	}
+	
+	/**
+	 * @param  executor  The executor to parse the batches on, or
+	 *                   <code>null</code> to parse them on the loading
+	 *                   thread.
+	 * @param  window    The largest number of batches read but not yet added
+	 *                   to the board, at least one.
+	 */
+	public BoardLoader(ExecutorService executor, int window) {
+		if(window < 1) {
+			throw new IllegalArgumentException("window < 1");
+		}
+		this.executor = executor;
+		this.window = window;
+	}
+	
+	/**
+	 * Sets the number of lines parsed as one task.
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1) {
+			throw new IllegalArgumentException("batchSize < 1");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @param  listener  The listener to tell about the progress of loads, or
+	 *                   <code>null</code> for none.
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Loads polygons from a channel, decoded as UTF-8.
+	 * 
+	 * @see  #load(Reader, Board)
+	 */
+	public int load(ReadableByteChannel in, Board board)
+	                throws IOException, InterruptedException {
+		return load(Channels.newReader(in, "UTF-8"), board);
+	}
+	
+	/**
+	 * Reads polygons until the end of the input, and adds them to the board.
+	 * The caches of the board are dropped once, as adding many polygons at
+	 * once does, and its nodes are then indexed polygon by polygon as they
+	 * come in, so they are ready when this returns. The input is not closed.
+	 * <p/>
+	 * 
+	 * If the input is malformed, the polygons of the batches before the bad
+	 * line are left on the board.
+	 * 
+	 * @return  The number of polygons added, not counting the ones that were
+	 *          already on the board.
+	 * @throws IOException  If the input cannot be read or is malformed, in
+	 *                      which case the message gives the line number.
+	 * @throws InterruptedException  If interrupted while waiting for a batch
+	 *                               to be parsed.
+	 */
+	public int load(Reader in, Board board)
+	                throws IOException, InterruptedException {
+		BufferedReader reader = new BufferedReader(in, 1 << 16);
+		ArrayDeque<Future<Batch>> pending = new ArrayDeque<Future<Batch>>();
+		board.markDirty();
+		board.getNodes();
+		int added = 0;
+		try {
+			List<String> lines = new ArrayList<String>(batchSize);
+			long lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				lines.add(line);
+				++lineNumber;
+				if(lines.size() < batchSize) {
+					continue;
+				}
+				if(pending.size() >= window) {
+					added += addBatch(board, pending.poll(), added);
+				}
+				pending.add(submit(
+					new ParseTask(lines, lineNumber - lines.size() + 1)
+				));
+				lines = new ArrayList<String>(batchSize);
+			}
+			if(!lines.isEmpty()) {
+				pending.add(submit(
+					new ParseTask(lines, lineNumber - lines.size() + 1)
+				));
+			}
+			while(!pending.isEmpty()) {
+				added += addBatch(board, pending.poll(), added);
+			}
+		} finally {
+			for(Future<Batch> f : pending) {
+				f.cancel(true);
+			}
+		}
+		return added;
+	}
+	
+	private Future<Batch> submit(ParseTask task) {
+		if(executor != null) {
+			return executor.submit(task);
+		}
+		FutureTask<Batch> f = new FutureTask<Batch>(task);
+		f.run();
+		return f;
+	}
+	
+	/**
+	 * Waits for a batch to be parsed, and adds its polygons to the board.
+	 * 
+	 * @param  total  The number of polygons added before this batch.
+	 * @return  The number of polygons added from this batch.
+	 */
+	private int addBatch(Board board, Future<Batch> f, int total)
+	                     throws IOException, InterruptedException {
+		Batch batch;
+		try {
+			batch = f.get();
+		} catch(ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IOException(cause);
+		}
+		if(batch.error != null) {
+			throw batch.error;
+		}
+		int added = 0;
+		for(Polygon p : batch.polygons) {
+			if(board.add(p)) {
+				++added;
+			}
+		}
+		if(listener != null) {
+			listener.progress(batch.lastLine, total + added);
+		}
+		return added;
+	}
+	
+	/**
+	 * Parses a single line of input.
+	 * 
+	 * @return  The polygons on the line, none if it is blank or a comment.
+	 * @throws IllegalArgumentException  If the line is malformed.
+	 */
+	static List<Polygon> parseLine(String line) {
+		line = line.trim();
+		List<Polygon> polygons = new ArrayList<Polygon>(1);
+		if(line.isEmpty() || line.startsWith("#")) {
+			return polygons;
+		}
+		String upper = line.toUpperCase(Locale.ROOT);
+		if(upper.startsWith("MULTIPOLYGON")) {
+			parseWkt(line, "MULTIPOLYGON".length(), 3, polygons);
+		} else if(upper.startsWith("POLYGON")) {
+			parseWkt(line, "POLYGON".length(), 2, polygons);
+		} else {
+			polygons.add(new Polygon(parseCoordinates(line.split(","), 2)));
+		}
+		return polygons;
+	}
+	
+	/**
+	 * Parses the rings of a well-known text geometry, from the given offset.
+	 * 
+	 * @param  ringDepth  The nesting of the parentheses around the
+	 *                    coordinates of a ring.
+	 */
+	private static void parseWkt(String line, int offset, int ringDepth,
+	                             List<Polygon> polygons) {
+		String rest = line.substring(offset).trim();
+		if(rest.equalsIgnoreCase("EMPTY")) {
+			return;
+		}
+		int depth = 0, rings = 0, start = -1;
+		for(int i = offset; i < line.length(); ++i) {
+			char c = line.charAt(i);
+			if(c == '(') {
+				++depth;
+				if(depth == ringDepth - 1) {
+					rings = 0; // a new polygon
+				} else if(depth == ringDepth) {
+					start = i + 1;
+				} else if(depth > ringDepth) {
+					throw new IllegalArgumentException("nested too deep");
+				}
+			} else if(c == ')') {
+				if(depth == ringDepth) {
+					if(++rings > 1) {
+						throw new IllegalArgumentException(
+							"polygons with holes are not supported"
+						);
+					}
+					polygons.add(new Polygon(parseCoordinates(
+						line.substring(start, i).split(","), 1
+					)));
+				}
+				if(--depth < 0) {
+					throw new IllegalArgumentException("unbalanced ')'");
+				}
+			}
+		}
+		if(depth != 0) {
+			throw new IllegalArgumentException("unbalanced '('");
+		}
+	}
+	
+	/**
+	 * Parses coordinates, given either as one <code>"x y"</code> pair per
+	 * field, or as one coordinate per field.
+	 */
+	private static Node[] parseCoordinates(String[] fields,
+	                                       int fieldsPerNode) {
+		if(fields.length / fieldsPerNode < 3 ||
+		   fields.length % fieldsPerNode != 0) {
+			throw new IllegalArgumentException("not a ring");
+		}
+		Node[] nodes = new Node[fields.length / fieldsPerNode];
+		for(int i = 0; i < nodes.length; ++i) {
+			String x, y;
+			if(fieldsPerNode == 2) {
+				x = fields[2 * i];
+				y = fields[2 * i + 1];
+			} else {
+				String[] pair = fields[i].trim().split("\\s+");
+				if(pair.length != 2) {
+					throw new IllegalArgumentException("not a pair: " +
+					                                   fields[i].trim());
+				}
+				x = pair[0];
+				y = pair[1];
+			}
+			nodes[i] = new Node(Double.parseDouble(x.trim()),
+			                    Double.parseDouble(y.trim()));
+		}
+		if(nodes.length == 3 && nodes[0].equals(nodes[2])) {
+			throw new IllegalArgumentException("not a ring");
+		}
+		return nodes;
+	}
+	
+	/**
+	 * The polygons parsed from a batch of lines. Malformed input is handed
+	 * back as an error, rather than thrown, as some executors wrap checked
+	 * exceptions.
+	 */
+	private static class Batch {
+		final List<Polygon> polygons;
+		final long lastLine;
+		final IOException error;
+		
+		Batch(List<Polygon> polygons, long lastLine, IOException error) {
+			this.polygons = polygons;
+			this.lastLine = lastLine;
+			this.error = error;
+		}
+	}
+	
+	/**
+	 * Parses a batch of lines, and builds the caches of every polygon that
+	 * the board would otherwise build on the loading thread.
+	 */
+	private static class ParseTask implements Callable<Batch> {
+		private final List<String> lines;
+		private final long firstLine;
+		
+		ParseTask(List<String> lines, long firstLine) {
+			this.lines = lines;
+			this.firstLine = firstLine;
+		}
+		
+		public Batch call() {
+			List<Polygon> polygons = new ArrayList<Polygon>(lines.size());
+			for(int i = 0; i < lines.size(); ++i) {
+				try {
+					for(Polygon p : parseLine(lines.get(i))) {
+						p.getLines();
+						p.getMinX(); // the bounds
+						p.getTriangles();
+						polygons.add(p);
+					}
+				} catch(IllegalArgumentException ex) {
+					// NumberFormatException included
+					return new Batch(null, firstLine + i, new IOException(
+						"line " + (firstLine + i) + ": " + ex.getMessage(), ex
+					));
+				}
+			}
+			return new Batch(polygons, firstLine + lines.size() - 1, null);
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms about the work done by a
+ * <code>Board</code>, as enabled by <code>Board.setMetrics</code>. Boards
+ * without metrics skip all of this, at the cost of a single
+ * <code>null</code> check at every place something would be recorded.<p/>
+ * 
+ * Along with the counters, every path query and every cache build is
+ * reported to Java Flight Recorder, as <code>pipeep.PathQuery</code> and
+ * <code>pipeep.CacheBuild</code> events, which JFR only records if a
+ * recording enables them. No events are created while metrics are
+ * disabled.<p/>
+ * 
+ * All of this is thread-safe, and a single instance may be shared by several
+ * boards, including the snapshots of a board, which report into the metrics
+ * of the board they were taken from. Use <code>getSnapshot</code> to read
+ * them.
+ * 
+ * @see  Board#setMetrics
+ */
+public class BoardMetrics {
+	/**
+	 * The phases that latencies are measured for.
+	 */
+	public static enum Phase {
+		/** Building a cache, such as the nodes or the visibility graph. */
+		CACHE_BUILD,
+		/** Testing the visibility between two nodes, without the caches. */
+		VISIBILITY,
+		/** Answering a whole <code>getShortestPath</code> query. */
+		SEARCH
+	}
+	
+	private final LongAdder visibilityTests = new LongAdder();
+	private final LongAdder meshHits = new LongAdder();
+	private final LongAdder meshMisses = new LongAdder();
+	private final LongAdder unownedRows = new LongAdder();
+	private final Recorder expansions = new Recorder();
+	private final Recorder[] latencies = new Recorder[Phase.values().length];
+	
+	public BoardMetrics() {
+		for(int i = 0; i < latencies.length; ++i) {
+			latencies[i] = new Recorder();
+		}
+	}
+	
+	// Recording, as done by boards and search engines
+	
+	void recordVisibilityTest(long nanos) {
+		visibilityTests.increment();
+		latencies[Phase.VISIBILITY.ordinal()].record(nanos);
+	}
+	
+	void recordMeshHit() {
+		meshHits.increment();
+	}
+	
+	void recordMeshMiss() {
+		meshMisses.increment();
+	}
+	
+	void recordUnownedRow() {
+		unownedRows.increment();
+	}
+	
+	/**
+	 * Records the number of nodes (or whatever else the search engine works
+	 * on) expanded by a single search.
+	 */
+	void recordExpansions(int expanded) {
+		expansions.record(expanded);
+	}
+	
+	/**
+	 * Starts timing the build of one of the caches of a board.
+	 * 
+	 * @param  cache  The name of the cache.
+	 */
+	Timing startCacheBuild(String cache) {
+		CacheBuildEvent event = new CacheBuildEvent();
+		event.cache = cache;
+		event.begin();
+		return new Timing(event);
+	}
+	
+	void endCacheBuild(Timing timing, int nodes) {
+		long nanos = System.nanoTime() - timing.start;
+		latencies[Phase.CACHE_BUILD.ordinal()].record(nanos);
+		CacheBuildEvent event = (CacheBuildEvent)timing.event;
+		event.nodes = nodes;
+		event.commit();
+	}
+	
+	Timing startSearch(Node a, Node b, PathSearch engine) {
+		PathQueryEvent event = new PathQueryEvent();
+		event.startX = a.getX();
+		event.startY = a.getY();
+		event.endX = b.getX();
+		event.endY = b.getY();
+		event.engine = engine.getClass().getName();
+		event.begin();
+		return new Timing(event);
+	}
+	
+	void endSearch(Timing timing, List<Node> path) {
+		long nanos = System.nanoTime() - timing.start;
+		latencies[Phase.SEARCH.ordinal()].record(nanos);
+		PathQueryEvent event = (PathQueryEvent)timing.event;
+		event.found = path != null;
+		event.pathNodes = path == null ? 0 : path.size();
+		event.commit();
+	}
+	
+	/**
+	 * Gives a consistent enough copy of every counter and histogram. Values
+	 * recorded while the snapshot is taken may or may not be included.
+	 */
+	public Snapshot getSnapshot() {
+		Histogram[] phases = new Histogram[latencies.length];
+		for(int i = 0; i < phases.length; ++i) {
+			phases[i] = latencies[i].getHistogram();
+		}
+		return new Snapshot(visibilityTests.sum(), meshHits.sum(),
+		                    meshMisses.sum(), unownedRows.sum(),
+		                    expansions.getHistogram(), phases);
+	}
+	
+	/**
+	 * Sets every counter and histogram back to zero.
+	 */
+	public void reset() {
+		visibilityTests.reset();
+		meshHits.reset();
+		meshMisses.reset();
+		unownedRows.reset();
+		expansions.reset();
+		for(Recorder r : latencies) {
+			r.reset();
+		}
+	}
+	
+	/**
+	 * The start of something being timed, along with its event.
+	 */
+	static final class Timing {
+		final long start = System.nanoTime();
+		final jdk.jfr.Event event;
+		
+		Timing(jdk.jfr.Event event) {
+			this.event = event;
+		}
+	}
+	
+	/**
+	 * A histogram being recorded into, with one bucket per power of two.
+	 */
+	private static final class Recorder {
+		private final AtomicLongArray buckets =
+			new AtomicLongArray(Histogram.BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		
+		void record(long value) {
+			buckets.incrementAndGet(Histogram.getBucket(value));
+			count.increment();
+			sum.add(value);
+		}
+		
+		Histogram getHistogram() {
+			long[] copy = new long[buckets.length()];
+			for(int i = 0; i < copy.length; ++i) {
+				copy[i] = buckets.get(i);
+			}
+			return new Histogram(count.sum(), sum.sum(), copy);
+		}
+		
+		void reset() {
+			for(int i = 0; i < buckets.length(); ++i) {
+				buckets.set(i, 0);
+			}
+			count.reset();
+			sum.reset();
+		}
+	}
+	
+	/**
+	 * An immutable histogram of non-negative values, such as latencies in
+	 * nanoseconds. Bucket <code>0</code> counts the zeroes, and bucket
+	 * <code>i</code> the values from <code>2^(i-1)</code> to
+	 * <code>2^i - 1</code>, so percentiles are only known within a factor of
+	 * two.
+	 */
+	public static final class Histogram {
+		static final int BUCKETS = 64;
+		
+		private final long count;
+		private final long sum;
+		private final long[] buckets;
+		
+		Histogram(long count, long sum, long[] buckets) {
+			this.count = count;
+			this.sum = sum;
+			this.buckets = buckets;
+		}
+		
+		static int getBucket(long value) {
+			return Math.min(64 - Long.numberOfLeadingZeros(Math.max(value, 0)),
+			                BUCKETS - 1);
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public long getSum() {
+			return sum;
+		}
+		
+		public double getMean() {
+			return count == 0 ? 0. : (double)sum / count;
+		}
+		
+		/**
+		 * @return  A copy of the count of every bucket.
+		 */
+		public long[] getBuckets() {
+			return buckets.clone();
+		}
+		
+		/**
+		 * Gives an upper bound of the given percentile, that is, of the value
+		 * that the given fraction of the values are at most.
+		 * 
+		 * @param  fraction  The percentile, from <code>0</code> to
+		 *                   <code>1</code>.
+		 */
+		public long getPercentile(double fraction) {
+			long seen = 0, rank = (long)Math.ceil(fraction * count);
+			for(int i = 0; i < buckets.length; ++i) {
+				seen += buckets[i];
+				if(seen >= rank && seen > 0) {
+					return i == 0 ? 0 : (1L << i) - 1;
+				}
+			}
+			return 0;
+		}
+		
+		@Override
+		public String toString() {
+			return "count=" + count + " mean=" + getMean() + " p50<=" +
+			       getPercentile(.5) + " p99<=" + getPercentile(.99);
+		}
+	}
+	
+	/**
+	 * An immutable copy of all the metrics, as given by
+	 * <code>getSnapshot</code>.
+	 */
+	public static final class Snapshot {
+		private final long visibilityTests, meshHits, meshMisses, unownedRows;
+		private final Histogram expansions;
+		private final Histogram[] latencies;
+		
+		Snapshot(long visibilityTests, long meshHits, long meshMisses,
+		         long unownedRows, Histogram expansions,
+		         Histogram[] latencies) {
+			this.visibilityTests = visibilityTests;
+			this.meshHits = meshHits;
+			this.meshMisses = meshMisses;
+			this.unownedRows = unownedRows;
+			this.expansions = expansions;
+			this.latencies = latencies;
+		}
+		
+		/**
+		 * @return  The number of visibility tests actually computed, rather
+		 *          than read from a navigation mesh.
+		 */
+		public long getVisibilityTests() {
+			return visibilityTests;
+		}
+		
+		/**
+		 * @return  The number of visibility lookups answered by a navigation
+		 *          mesh, owned or not.
+		 */
+		public long getMeshHits() {
+			return meshHits;
+		}
+		
+		/**
+		 * @return  The number of visibility lookups that had to be computed.
+		 */
+		public long getMeshMisses() {
+			return meshMisses;
+		}
+		
+		/**
+		 * @return  The number of rows added to the "unowned" navigation mesh,
+		 *          one per node not on the board that was asked about.
+		 */
+		public long getUnownedRows() {
+			return unownedRows;
+		}
+		
+		/**
+		 * @return  The number of <code>getShortestPath</code> queries.
+		 */
+		public long getSearches() {
+			return getLatency(Phase.SEARCH).getCount();
+		}
+		
+		/**
+		 * @return  The number of nodes expanded per search, for the search
+		 *          engines that report it.
+		 */
+		public Histogram getExpansions() {
+			return expansions;
+		}
+		
+		/**
+		 * @return  The latencies of the given phase, in nanoseconds.
+		 */
+		public Histogram getLatency(Phase phase) {
+			return latencies[phase.ordinal()];
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			s.append("visibilityTests=").append(visibilityTests);
+			s.append(" meshHits=").append(meshHits);
+			s.append(" meshMisses=").append(meshMisses);
+			s.append(" unownedRows=").append(unownedRows);
+			s.append(" expansions={").append(expansions).append('}');
+			for(Phase p : Phase.values()) {
+				s.append(' ').append(p).append("={");
+				s.append(getLatency(p)).append('}');
+			}
+			return s.toString();
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package pipeep.pathfinding;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder event of a cache of a board being built, or
+ * rebuilt after being marked as dirty, emitted by boards with metrics
+ * enabled.
+ * 
+ * @see  BoardMetrics
+ */
+@Name("pipeep.CacheBuild")
+@Label("Cache Build")
+@Category("Pathfinding")
+@Description("A cache of a board being built")
+final class CacheBuildEvent extends jdk.jfr.Event {
+	@Label("Cache")
+	String cache;
+	
+	@Label("Nodes")
+	int nodes;
+}
@@ -0,0 +1,231 @@
+package pipeep.pathfinding;
+
+import pipeep.arithmetic.Rounding;
+import pipeep.geometry.Line;
+import pipeep.geometry.Node;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A static spatial index over a set of edges, used to speed up line of sight
+ * tests. The bounding box of the edges is split into a uniform grid of
+ * roughly as many cells as there are edges, and every edge is listed in each
+ * cell its bounding box overlaps. A segment query walks only the cells the
+ * segment passes through (using a 2d DDA traversal), so it only has to test
+ * the edges that are actually near the segment, rather than every edge on
+ * the board.<p/>
+ * 
+ * The edges are stored packed, as indexes into plain arrays of vertex
+ * coordinates, so a query reads through a few contiguous arrays and
+ * allocates nothing, rather than chasing <code>Line</code> and
+ * <code>Node</code> objects around the heap.<p/>
+ * 
+ * Once built, the index is immutable, and can be queried from any number of
+ * threads at once.
+ */
+class EdgeGrid {
+	// vertex coordinates, and edge e going from vertex edgeVertexes[2 * e]
+	// to vertex edgeVertexes[2 * e + 1]
+	private final double[] xs, ys;
+	private final int[] edgeVertexes;
+	private final int edgeCount;
+	
+	private final double minX, minY;
+	private final double cellSize;
+	private final int columns, rows;
+	
+	// the edges in cell c are listed in cellEdges, from index cellStart[c]
+	// up to (but excluding) cellStart[c + 1]
+	private final int[] cellStart;
+	private int[] cellEdges;
+	
+	public EdgeGrid(Collection<Line> lines) {
+		edgeCount = lines.size();
+		edgeVertexes = new int[edgeCount * 2];
+		Map<Node, Integer> vertexes = new HashMap<Node, Integer>(edgeCount);
+		for(Line l : lines) {
+			vertexes.put(l.getNodeA(), null);
+			vertexes.put(l.getNodeB(), null);
+		}
+		xs = new double[vertexes.size()];
+		ys = new double[vertexes.size()];
+		int v = 0;
+		for(Map.Entry<Node, Integer> e : vertexes.entrySet()) {
+			xs[v] = e.getKey().getX();
+			ys[v] = e.getKey().getY();
+			e.setValue(v++);
+		}
+		int i = 0;
+		for(Line l : lines) {
+			edgeVertexes[i++] = vertexes.get(l.getNodeA());
+			edgeVertexes[i++] = vertexes.get(l.getNodeB());
+		}
+		
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(v = 0; v < xs.length; ++v) {
+			x0 = Math.min(x0, xs[v]);
+			y0 = Math.min(y0, ys[v]);
+			x1 = Math.max(x1, xs[v]);
+			y1 = Math.max(y1, ys[v]);
+		}
+		if(edgeCount == 0) {
+			x0 = y0 = 0.; x1 = y1 = 1.;
+		}
+		// pad the bounds, so that nothing sits right on the outer border
+		double pad = Math.max(Math.max(x1 - x0, y1 - y0) * 1e-9,
+		                      Rounding.EQUALITY_DIFFERENCE);
+		minX = x0 - pad;
+		minY = y0 - pad;
+		double width = x1 - x0 + 2 * pad;
+		double height = y1 - y0 + 2 * pad;
+		
+		// aim for about one cell per edge, with square cells
+		double cells = Math.max(edgeCount, 1);
+		double size = Math.sqrt(width * height / cells);
+		if(!(size > 0.)) {
+			size = Math.max(width, height) / cells;
+		}
+		// but no more than 4096 of them across, widening the cells instead,
+		// so that the grid still covers every edge
+		size = Math.max(size, Math.max(width, height) / 4096.);
+		cellSize = size;
+		columns = Math.max(1, Math.min((int)Math.ceil(width / size), 4096));
+		rows = Math.max(1, Math.min((int)Math.ceil(height / size), 4096));
+		
+		// count the edges of every cell, then fill them in
+		cellStart = new int[columns * rows + 1];
+		for(int pass = 0; pass < 2; ++pass) {
+			int[] fill = pass == 0 ? null : new int[columns * rows];
+			for(int e = 0; e < edgeCount; ++e) {
+				int a = edgeVertexes[2 * e], b = edgeVertexes[2 * e + 1];
+				double epsilon = Rounding.EQUALITY_DIFFERENCE;
+				int cx0 = getColumn(Math.min(xs[a], xs[b]) - epsilon);
+				int cx1 = getColumn(Math.max(xs[a], xs[b]) + epsilon);
+				int cy0 = getRow(Math.min(ys[a], ys[b]) - epsilon);
+				int cy1 = getRow(Math.max(ys[a], ys[b]) + epsilon);
+				for(int cy = cy0; cy <= cy1; ++cy) {
+					for(int cx = cx0; cx <= cx1; ++cx) {
+						int c = cy * columns + cx;
+						if(pass == 0) {
+							++cellStart[c + 1];
+						} else {
+							cellEdges[cellStart[c] + fill[c]++] = e;
+						}
+					}
+				}
+			}
+			if(pass == 0) {
+				for(int c = 0; c < columns * rows; ++c) {
+					cellStart[c + 1] += cellStart[c];
+				}
+				cellEdges = new int[cellStart[columns * rows]];
+			}
+		}
+	}
+	
+	/**
+	 * @return  The number of edges in this index.
+	 */
+	public int size() {
+		return edgeCount;
+	}
+	
+	private int getColumn(double x) {
+		int c = (int)Math.floor((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+	
+	private int getRow(double y) {
+		int r = (int)Math.floor((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+	
+	/**
+	 * Tests if the given segment intersects any of the indexed edges, in the
+	 * same way as <code>edge.doesIntersect(line, false)</code> would, that is,
+	 * not counting shared vertexes.
+	 */
+	public boolean doesIntersectLine(Line line) {
+		return doesIntersectSegment(line.getNodeA().getX(),
+		                            line.getNodeA().getY(),
+		                            line.getNodeB().getX(),
+		                            line.getNodeB().getY());
+	}
+	
+	/**
+	 * The same test as <code>doesIntersectLine</code>, for the segment from
+	 * <code>(ax, ay)</code> to <code>(bx, by)</code>. This allocates nothing.
+	 */
+	public boolean doesIntersectSegment(double ax, double ay,
+	                                    double bx, double by) {
+		double dx = bx - ax, dy = by - ay;
+		
+		// clip the segment to the grid (slab method), t in [t0, t1]
+		double maxX = minX + columns * cellSize;
+		double maxY = minY + rows * cellSize;
+		double t0 = 0., t1 = 1.;
+		if(dx != 0.) {
+			double r0 = (minX - ax) / dx, r1 = (maxX - ax) / dx;
+			t0 = Math.max(t0, Math.min(r0, r1));
+			t1 = Math.min(t1, Math.max(r0, r1));
+		} else if(ax < minX || ax > maxX) {
+			return false;
+		}
+		if(dy != 0.) {
+			double r0 = (minY - ay) / dy, r1 = (maxY - ay) / dy;
+			t0 = Math.max(t0, Math.min(r0, r1));
+			t1 = Math.min(t1, Math.max(r0, r1));
+		} else if(ay < minY || ay > maxY) {
+			return false;
+		}
+		if(t0 > t1) {
+			return false; // entirely outside of the grid
+		}
+		
+		// walk the cells, starting from the clipped start of the segment
+		int cx = getColumn(ax + t0 * dx), cy = getRow(ay + t0 * dy);
+		int endX = getColumn(ax + t1 * dx), endY = getRow(ay + t1 * dy);
+		int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1;
+		double deltaX = dx == 0. ? Double.POSITIVE_INFINITY
+		                         : cellSize / Math.abs(dx);
+		double deltaY = dy == 0. ? Double.POSITIVE_INFINITY
+		                         : cellSize / Math.abs(dy);
+		double nextX = dx == 0. ? Double.POSITIVE_INFINITY :
+			((cx + (dx > 0 ? 1 : 0)) * cellSize + minX - ax) / dx;
+		double nextY = dy == 0. ? Double.POSITIVE_INFINITY :
+			((cy + (dy > 0 ? 1 : 0)) * cellSize + minY - ay) / dy;
+		
+		int steps = Math.abs(endX - cx) + Math.abs(endY - cy);
+		for(int i = 0; i <= steps; ++i) {
+			if(doesCellIntersectSegment(cy * columns + cx, ax, ay, bx, by)) {
+				return true;
+			}
+			// never walk past the last cell on either axis, even if rounding
+			// errors claim otherwise
+			if(cy == endY || cx != endX && nextX < nextY) {
+				cx += stepX;
+				nextX += deltaX;
+			} else {
+				cy += stepY;
+				nextY += deltaY;
+			}
+		}
+		return false;
+	}
+	
+	private boolean doesCellIntersectSegment(int cell, double ax, double ay,
+	                                         double bx, double by) {
+		for(int i = cellStart[cell]; i < cellStart[cell + 1]; ++i) {
+			int e = cellEdges[i];
+			int c = edgeVertexes[2 * e], d = edgeVertexes[2 * e + 1];
+			if(Line.doesIntersect(xs[c], ys[c], xs[d], ys[d],
+			                      ax, ay, bx, by, false)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,86 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Polygon;
+
+import java.util.Collection;
+
+/**
+ * An expanded variant of a <code>Board</code>, as given by
+ * <code>Board.getExpanded(double outset)</code>. It is kept in a cache by the
+ * board it was expanded from, and handed out again every time the same outset
+ * is asked for, along with everything it has cached so far, so it may not be
+ * modified, nor may the way it is searched be changed: every method that
+ * would do either throws an <code>UnsupportedOperationException</code>. To
+ * search it with other settings, build a new <code>Board</code> from its
+ * polygons. Modifying the original board drops it from the cache, and the
+ * next call gives a new variant.<p/>
+ * 
+ * Just like a <code>Board</code>, it is not thread-safe; freeze it to query it
+ * from several threads at once.
+ */
+final class ExpandedBoard extends Board {
+	
+	ExpandedBoard(Polygon ... polygons) {
+		super(polygons);
+	}
+	
+	@Override
+	protected void markDirty() {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public boolean add(Polygon p) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends Polygon> p) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void setUnownedNavigationMesh(NavigationMeshCache cache) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void setMetrics(BoardMetrics metrics) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void setPathCache(PathCache cache) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void setSearchEngine(PathSearch searchEngine) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+	
+	@Override
+	public void setReducedGraph(boolean reduced) {
+		throw new UnsupportedOperationException("expanded board");
+	}
+}
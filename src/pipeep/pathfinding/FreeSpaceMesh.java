@@ -0,0 +1,927 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Line;
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A constrained Delaunay triangulation of the free space of a board, as used
+ * by <code>FreeSpaceSearch</code>. Every edge of every polygon is an edge of
+ * the triangulation, so each triangle is either entirely free, or entirely
+ * within a polygon. The triangulation covers the bounding box of the board,
+ * padded on every side by the size of the board.<p/>
+ * 
+ * The nodes of the board are inserted one at a time, in spatial order, each
+ * splitting the triangle (or edge) it falls in, with Lawson flips restoring
+ * the Delaunay property around it. Polygon edges are then forced in with
+ * Sloan's algorithm, flipping away the edges they cross. Where the edges of
+ * overlapping polygons cross, they are first split at the crossing, so that
+ * no two constraints ever cross each other.<p/>
+ * 
+ * The mesh is stored as half-edges over plain arrays: half-edge
+ * <code>3 * t + i</code> goes from corner <code>i</code> of triangle
+ * <code>t</code> to the next corner, counter-clockwise, and is paired with
+ * the half-edge going the other way in the neighbouring triangle, if any.
+ * This is not the "navigation mesh" of visibility information that a
+ * <code>Board</code> caches, it is a different kind of mesh altogether.<p/>
+ * 
+ * Once built, the mesh is never modified, so it may be used from any number
+ * of threads at once.
+ */
+class FreeSpaceMesh {
+	static final int NONE = -1;
+	
+	// vertexes, the first four being the corners of the bounding box
+	private final double[] xs, ys;
+	private final Node[] nodes;
+	private final int[] vertexTriangle; // a triangle using every vertex
+	
+	// triangles, as half-edges
+	private final int[] corners;
+	private final int[] twins;
+	private final boolean[] constrained;
+	private final boolean[] free;
+	private int triangleCount = 0;
+	private int lastTriangle = 0;
+	
+	// a coarse grid of starting points for point location
+	private double minX, minY, cellSize;
+	private int columns, rows;
+	private int[] cellTriangles;
+	
+	public FreeSpaceMesh(Board board) {
+		// gather the vertexes and the constrained segments between them
+		Map<Node, Integer> ids = new HashMap<Node, Integer>();
+		List<Node> vertexes = new ArrayList<Node>();
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(Node n : board.getNodes()) {
+			x0 = Math.min(x0, n.getX());
+			y0 = Math.min(y0, n.getY());
+			x1 = Math.max(x1, n.getX());
+			y1 = Math.max(y1, n.getY());
+		}
+		if(x0 > x1) {
+			x0 = y0 = 0.;
+			x1 = y1 = 1.;
+		}
+		double pad = Math.max(Math.max(x1 - x0, y1 - y0), 1.);
+		x0 -= pad; y0 -= pad; x1 += pad; y1 += pad;
+		addVertex(new Node(x0, y0), ids, vertexes);
+		addVertex(new Node(x1, y0), ids, vertexes);
+		addVertex(new Node(x1, y1), ids, vertexes);
+		addVertex(new Node(x0, y1), ids, vertexes);
+		for(Node n : board.getNodes()) {
+			addVertex(n, ids, vertexes);
+		}
+		List<int[]> segments = new ArrayList<int[]>();
+		Set<Long> seen = new HashSet<Long>();
+		for(Polygon p : board.getPolygons()) {
+			for(Line l : p.getLines()) {
+				int a = ids.get(l.getNodeA()), b = ids.get(l.getNodeB());
+				long key = (long)Math.min(a, b) << 32 | Math.max(a, b);
+				if(a != b && seen.add(key)) {
+					segments.add(new int[] {a, b});
+				}
+			}
+		}
+		segments = splitCrossings(segments, ids, vertexes);
+		
+		int count = vertexes.size();
+		xs = new double[count];
+		ys = new double[count];
+		nodes = vertexes.toArray(new Node[count]);
+		for(int v = 0; v < count; ++v) {
+			xs[v] = nodes[v].getX();
+			ys[v] = nodes[v].getY();
+		}
+		vertexTriangle = new int[count];
+		int capacity = 2 * count;
+		corners = new int[3 * capacity];
+		twins = new int[3 * capacity];
+		constrained = new boolean[3 * capacity];
+		free = new boolean[capacity];
+		
+		// start from the bounding box, split in two
+		int t0 = addTriangle(0, 1, 2);
+		int t1 = addTriangle(0, 2, 3);
+		link(3 * t0 + 2, 3 * t1);
+		for(int v : getSpatialOrder()) {
+			insertVertex(v);
+		}
+		for(int[] s : segments) {
+			insertConstraint(s[0], s[1]);
+		}
+		markFree(board);
+		buildLocationGrid();
+	}
+	
+	private static void addVertex(Node n, Map<Node, Integer> ids,
+	                              List<Node> vertexes) {
+		if(!ids.containsKey(n)) {
+			ids.put(n, vertexes.size());
+			vertexes.add(n);
+		}
+	}
+	
+	// Accessors, used by searches
+	
+	int getTriangleCount() {
+		return triangleCount;
+	}
+	
+	int getCorner(int halfEdge) {
+		return corners[halfEdge];
+	}
+	
+	/**
+	 * @return  The half-edge going the other way along the same edge, or
+	 *          <code>NONE</code> on the border of the mesh.
+	 */
+	int getTwin(int halfEdge) {
+		return twins[halfEdge];
+	}
+	
+	boolean isConstrained(int halfEdge) {
+		return constrained[halfEdge];
+	}
+	
+	/**
+	 * Tests if a triangle is outside of every polygon of the board.
+	 */
+	boolean isFree(int triangle) {
+		return free[triangle];
+	}
+	
+	double getX(int vertex) {
+		return xs[vertex];
+	}
+	
+	double getY(int vertex) {
+		return ys[vertex];
+	}
+	
+	/**
+	 * @return  The node at the given vertex, which is the node of the board
+	 *          itself for vertexes of polygons.
+	 */
+	Node getNode(int vertex) {
+		return nodes[vertex];
+	}
+	
+	static int next(int halfEdge) {
+		return halfEdge % 3 == 2 ? halfEdge - 2 : halfEdge + 1;
+	}
+	
+	static int prev(int halfEdge) {
+		return halfEdge % 3 == 0 ? halfEdge + 2 : halfEdge - 1;
+	}
+	
+	/**
+	 * Gives the free triangles that the given point lies in, or on the
+	 * border of. A point on an edge or a vertex touches several triangles.
+	 * 
+	 * @return  The triangles, empty if the point is outside of the mesh, or
+	 *          within a polygon.
+	 */
+	int[] getFreeTriangles(double x, double y) {
+		int start = cellTriangles[getCell(x, y)];
+		int t = locate(x, y, start == NONE ? 0 : start);
+		if(t == NONE) {
+			return new int[0];
+		}
+		int[] touching = {t};
+		for(int h = 3 * t; h < 3 * t + 3; ++h) {
+			int v = corners[h];
+			if(xs[v] == x && ys[v] == y) {
+				touching = getTrianglesAround(v);
+				break;
+			}
+			if(getOrientation(v, corners[next(h)], x, y) == 0. &&
+			   twins[h] != NONE) {
+				touching = new int[] {t, twins[h] / 3};
+			}
+		}
+		int kept = 0;
+		for(int i = 0; i < touching.length; ++i) {
+			if(free[touching[i]]) {
+				touching[kept++] = touching[i];
+			}
+		}
+		return Arrays.copyOf(touching, kept);
+	}
+	
+	// Geometric predicates
+	
+	/**
+	 * Twice the signed area of the triangle from <code>a</code> to
+	 * <code>b</code> to the point, positive if it is counter-clockwise. It is
+	 * always measured from the same end of the edge, so that the two
+	 * triangles sharing an edge agree exactly on which side a point is, and
+	 * a point on the edge is never outside of both.
+	 */
+	private double getOrientation(int a, int b, double x, double y) {
+		if(a > b) {
+			return -getOrientation(b, a, x, y);
+		}
+		return (xs[b] - xs[a]) * (y - ys[a]) - (ys[b] - ys[a]) * (x - xs[a]);
+	}
+	
+	private double getOrientation(int a, int b, int c) {
+		return getOrientation(a, b, xs[c], ys[c]);
+	}
+	
+	/**
+	 * Tests if <code>d</code> lies strictly within the circumcircle of the
+	 * counter-clockwise triangle <code>abc</code>.
+	 */
+	private boolean isInCircle(int a, int b, int c, int d) {
+		double adx = xs[a] - xs[d], ady = ys[a] - ys[d];
+		double bdx = xs[b] - xs[d], bdy = ys[b] - ys[d];
+		double cdx = xs[c] - xs[d], cdy = ys[c] - ys[d];
+		double det = (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy) +
+		             (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy) +
+		             (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+		return det > 0.;
+	}
+	
+	/**
+	 * Tests if the segments <code>ab</code> and <code>cd</code> cross at a
+	 * single point, other than at their ends.
+	 */
+	private boolean doSegmentsCross(int a, int b, int c, int d) {
+		if(a == c || a == d || b == c || b == d) {
+			return false;
+		}
+		double c1 = getOrientation(a, b, c), c2 = getOrientation(a, b, d);
+		double c3 = getOrientation(c, d, a), c4 = getOrientation(c, d, b);
+		return (c1 > 0. && c2 < 0. || c1 < 0. && c2 > 0.) &&
+		       (c3 > 0. && c4 < 0. || c3 < 0. && c4 > 0.);
+	}
+	
+	// Building the triangulation
+	
+	/**
+	 * Splits the given segments wherever two of them cross, adding a vertex
+	 * at every crossing. Candidate pairs are found through a uniform grid.
+	 */
+	private static List<int[]> splitCrossings(List<int[]> segments,
+	                                          Map<Node, Integer> ids,
+	                                          List<Node> vertexes) {
+		int m = segments.size();
+		if(m < 2) {
+			return segments;
+		}
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(int[] s : segments) {
+			for(int v : s) {
+				x0 = Math.min(x0, vertexes.get(v).getX());
+				y0 = Math.min(y0, vertexes.get(v).getY());
+				x1 = Math.max(x1, vertexes.get(v).getX());
+				y1 = Math.max(y1, vertexes.get(v).getY());
+			}
+		}
+		int side = Math.max(1, Math.min((int)Math.sqrt(m), 1024));
+		double size = Math.max(Math.max(x1 - x0, y1 - y0) / side, 1e-9);
+		List<List<Integer>> cells = new ArrayList<List<Integer>>(side * side);
+		for(int c = 0; c < side * side; ++c) {
+			cells.add(null);
+		}
+		for(int i = 0; i < m; ++i) {
+			Node a = vertexes.get(segments.get(i)[0]);
+			Node b = vertexes.get(segments.get(i)[1]);
+			int cx0 = getCell(Math.min(a.getX(), b.getX()), x0, size, side);
+			int cx1 = getCell(Math.max(a.getX(), b.getX()), x0, size, side);
+			int cy0 = getCell(Math.min(a.getY(), b.getY()), y0, size, side);
+			int cy1 = getCell(Math.max(a.getY(), b.getY()), y0, size, side);
+			for(int cy = cy0; cy <= cy1; ++cy) {
+				for(int cx = cx0; cx <= cx1; ++cx) {
+					if(cells.get(cy * side + cx) == null) {
+						cells.set(cy * side + cx, new ArrayList<Integer>(4));
+					}
+					cells.get(cy * side + cx).add(i);
+				}
+			}
+		}
+		
+		// the crossings along every segment, as (t, vertex) pairs
+		Map<Integer, List<double[]>> splits =
+			new HashMap<Integer, List<double[]>>();
+		Set<Long> tested = new HashSet<Long>();
+		for(List<Integer> cell : cells) {
+			for(int i = 0; cell != null && i < cell.size(); ++i) {
+				for(int k = i + 1; k < cell.size(); ++k) {
+					int s = cell.get(i), u = cell.get(k);
+					long key = (long)Math.min(s, u) << 32 | Math.max(s, u);
+					if(tested.add(key)) {
+						addCrossing(segments, s, u, splits, ids, vertexes);
+					}
+				}
+			}
+		}
+		if(splits.isEmpty()) {
+			return segments;
+		}
+		List<int[]> result = new ArrayList<int[]>(m + splits.size() * 2);
+		for(int i = 0; i < m; ++i) {
+			int[] s = segments.get(i);
+			List<double[]> along = splits.get(i);
+			if(along == null) {
+				result.add(s);
+				continue;
+			}
+			double[][] sorted = along.toArray(new double[along.size()][]);
+			Arrays.sort(sorted, new Comparator<double[]>() {
+				public int compare(double[] a, double[] b) {
+					return Double.compare(a[0], b[0]);
+				}
+			});
+			int from = s[0];
+			for(double[] split : sorted) {
+				int v = (int)split[1];
+				if(v != from) {
+					result.add(new int[] {from, v});
+					from = v;
+				}
+			}
+			if(from != s[1]) {
+				result.add(new int[] {from, s[1]});
+			}
+		}
+		return result;
+	}
+	
+	private static int getCell(double v, double min, double size, int side) {
+		int c = (int)((v - min) / size);
+		return c < 0 ? 0 : c >= side ? side - 1 : c;
+	}
+	
+	/**
+	 * Records the crossing of two segments, if they properly cross.
+	 */
+	private static void addCrossing(List<int[]> segments, int s, int u,
+	                                Map<Integer, List<double[]>> splits,
+	                                Map<Node, Integer> ids,
+	                                List<Node> vertexes) {
+		int[] p = segments.get(s), q = segments.get(u);
+		if(p[0] == q[0] || p[0] == q[1] || p[1] == q[0] || p[1] == q[1]) {
+			return;
+		}
+		Node a = vertexes.get(p[0]), b = vertexes.get(p[1]);
+		Node c = vertexes.get(q[0]), d = vertexes.get(q[1]);
+		double ax = a.getX(), ay = a.getY(), bx = b.getX(), by = b.getY();
+		double cx = c.getX(), cy = c.getY(), dx = d.getX(), dy = d.getY();
+		if(Line.isCCW(ax, ay, bx, by, cx, cy) ==
+		   Line.isCCW(ax, ay, bx, by, dx, dy) ||
+		   Line.isCCW(cx, cy, dx, dy, ax, ay) ==
+		   Line.isCCW(cx, cy, dx, dy, bx, by)) {
+			return;
+		}
+		double denominator = (bx - ax) * (dy - cy) - (by - ay) * (dx - cx);
+		if(denominator == 0.) {
+			return; // colinear, overlaps are split by the vertexes on them
+		}
+		double t = ((cx - ax) * (dy - cy) - (cy - ay) * (dx - cx)) /
+		           denominator;
+		double r = ((cx - ax) * (by - ay) - (cy - ay) * (bx - ax)) /
+		           denominator;
+		if(!(t > 0. && t < 1. && r > 0. && r < 1.)) {
+			return; // touching at a vertex, not crossing
+		}
+		Node crossing = new Node(ax + t * (bx - ax), ay + t * (by - ay));
+		addVertex(crossing, ids, vertexes);
+		double v = ids.get(crossing);
+		addSplit(splits, s, t, v);
+		addSplit(splits, u, r, v);
+	}
+	
+	private static void addSplit(Map<Integer, List<double[]>> splits,
+	                             int segment, double t, double vertex) {
+		List<double[]> along = splits.get(segment);
+		if(along == null) {
+			along = new ArrayList<double[]>(1);
+			splits.put(segment, along);
+		}
+		along.add(new double[] {t, vertex});
+	}
+	
+	/**
+	 * Orders the vertexes (but for the corners of the bounding box) row by
+	 * row on a coarse grid, alternating directions, so that every vertex is
+	 * close to the previous one, and locating it only takes a few steps.
+	 */
+	private int[] getSpatialOrder() {
+		int count = xs.length - 4;
+		int side = Math.max(1, (int)Math.sqrt(count / 4.));
+		double width = xs[1] - xs[0], height = ys[2] - ys[0];
+		long[] keys = new long[count];
+		for(int i = 0; i < count; ++i) {
+			int v = i + 4;
+			int column = Math.min((int)((xs[v] - xs[0]) / width * side),
+			                      side - 1);
+			int row = Math.min((int)((ys[v] - ys[0]) / height * side),
+			                   side - 1);
+			int cell = row * side + (row % 2 == 0 ? column
+			                                      : side - 1 - column);
+			keys[i] = (long)cell << 32 | v;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[count];
+		for(int i = 0; i < count; ++i) {
+			order[i] = (int)keys[i];
+		}
+		return order;
+	}
+	
+	private int addTriangle(int a, int b, int c) {
+		int t = triangleCount++;
+		setCorners(t, a, b, c);
+		twins[3 * t] = twins[3 * t + 1] = twins[3 * t + 2] = NONE;
+		return t;
+	}
+	
+	private void setCorners(int t, int a, int b, int c) {
+		corners[3 * t] = a;
+		corners[3 * t + 1] = b;
+		corners[3 * t + 2] = c;
+		vertexTriangle[a] = vertexTriangle[b] = vertexTriangle[c] = t;
+		constrained[3 * t] = false;
+		constrained[3 * t + 1] = false;
+		constrained[3 * t + 2] = false;
+	}
+	
+	/**
+	 * Pairs up two half-edges, the second of which may be <code>NONE</code>.
+	 */
+	private void link(int e, int f) {
+		twins[e] = f;
+		if(f != NONE) {
+			twins[f] = e;
+		}
+	}
+	
+	/**
+	 * Finds the triangle containing the given point, by walking from the
+	 * given triangle towards the point.
+	 * 
+	 * @return  The triangle, or <code>NONE</code> if the point is outside
+	 *          of the mesh.
+	 */
+	private int locate(double x, double y, int t) {
+		int limit = 3 * triangleCount + 16;
+		for(int step = 0; step < limit; ++step) {
+			int exit = NONE;
+			for(int k = 0; k < 3 && exit == NONE; ++k) {
+				// vary the first edge tested, so that the walk cannot cycle
+				int h = 3 * t + (k + step) % 3;
+				if(getOrientation(corners[h], corners[next(h)], x, y) < 0.) {
+					exit = h;
+				}
+			}
+			if(exit == NONE) {
+				return t;
+			}
+			if(twins[exit] == NONE) {
+				return NONE;
+			}
+			t = twins[exit] / 3;
+		}
+		// rounding errors sent the walk in circles, fall back to a scan
+		for(t = 0; t < triangleCount; ++t) {
+			boolean inside = true;
+			for(int h = 3 * t; h < 3 * t + 3; ++h) {
+				inside &= getOrientation(corners[h], corners[next(h)],
+				                         x, y) >= 0.;
+			}
+			if(inside) {
+				return t;
+			}
+		}
+		return NONE;
+	}
+	
+	private void insertVertex(int v) {
+		int t = locate(xs[v], ys[v], lastTriangle);
+		if(t == NONE) {
+			return;
+		}
+		for(int h = 3 * t; h < 3 * t + 3; ++h) {
+			if(getOrientation(corners[h], corners[next(h)], v) == 0.) {
+				splitEdge(h, v);
+				return;
+			}
+		}
+		splitTriangle(t, v);
+	}
+	
+	/**
+	 * Splits a triangle in three around a new vertex within it.
+	 */
+	private void splitTriangle(int t, int v) {
+		int a = corners[3 * t], b = corners[3 * t + 1], c = corners[3 * t + 2];
+		int ab = twins[3 * t], bc = twins[3 * t + 1], ca = twins[3 * t + 2];
+		int t1 = addTriangle(b, c, v), t2 = addTriangle(c, a, v);
+		setCorners(t, a, b, v);
+		link(3 * t, ab);
+		link(3 * t1, bc);
+		link(3 * t2, ca);
+		link(3 * t + 1, 3 * t1 + 2);
+		link(3 * t1 + 1, 3 * t2 + 2);
+		link(3 * t2 + 1, 3 * t + 2);
+		lastTriangle = t;
+		legalize(3 * t, 3 * t1, 3 * t2, NONE);
+	}
+	
+	/**
+	 * Splits the edge <code>e</code>, and the triangles on both sides of it,
+	 * around a new vertex lying on it.
+	 */
+	private void splitEdge(int e, int v) {
+		int t = e / 3, f = twins[e];
+		int a = corners[e], b = corners[next(e)], c = corners[prev(e)];
+		int bc = twins[next(e)], ca = twins[prev(e)];
+		setCorners(t, a, v, c);
+		int t1 = addTriangle(v, b, c);
+		link(3 * t + 2, ca);
+		link(3 * t1 + 1, bc);
+		link(3 * t + 1, 3 * t1 + 2);
+		if(f == NONE) {
+			link(3 * t, NONE);
+			link(3 * t1, NONE);
+			lastTriangle = t;
+			legalize(3 * t + 2, 3 * t1 + 1, NONE, NONE);
+			return;
+		}
+		int u = f / 3;
+		int d = corners[prev(f)];
+		int ad = twins[next(f)], db = twins[prev(f)];
+		setCorners(u, b, v, d);
+		int u1 = addTriangle(v, a, d);
+		link(3 * u + 2, db);
+		link(3 * u1 + 1, ad);
+		link(3 * u + 1, 3 * u1 + 2);
+		link(3 * t, 3 * u1);
+		link(3 * t1, 3 * u);
+		lastTriangle = t;
+		legalize(3 * t + 2, 3 * t1 + 1, 3 * u + 2, 3 * u1 + 1);
+	}
+	
+	/**
+	 * Restores the Delaunay property around a new vertex, given the edges
+	 * facing it, by flipping edges until every one of them is legal.
+	 */
+	private void legalize(int e0, int e1, int e2, int e3) {
+		ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+		for(int e : new int[] {e0, e1, e2, e3}) {
+			if(e != NONE) {
+				stack.push(e);
+			}
+		}
+		while(!stack.isEmpty()) {
+			int e = stack.pop();
+			int f = twins[e];
+			if(f == NONE || constrained[e]) {
+				continue;
+			}
+			int s = corners[prev(f)];
+			if(isInCircle(corners[e], corners[next(e)], corners[prev(e)], s)) {
+				int t = e / 3, u = f / 3;
+				flip(e);
+				stack.push(3 * t + 1);
+				stack.push(3 * u);
+			}
+		}
+	}
+	
+	/**
+	 * Flips the edge <code>e</code>, from <code>p -&gt; q</code> with the
+	 * opposite corners <code>r</code> and <code>s</code>, to the other
+	 * diagonal of their quadrilateral. The two triangles become
+	 * <code>(r, p, s)</code> and <code>(s, q, r)</code>, in that order of
+	 * half-edges.
+	 */
+	private void flip(int e) {
+		int f = twins[e];
+		int t = e / 3, u = f / 3;
+		int p = corners[e], q = corners[next(e)], r = corners[prev(e)];
+		int s = corners[prev(f)];
+		int rp = twins[prev(e)], qr = twins[next(e)];
+		int ps = twins[next(f)], sq = twins[prev(f)];
+		boolean rpConstrained = constrained[prev(e)];
+		boolean qrConstrained = constrained[next(e)];
+		boolean psConstrained = constrained[next(f)];
+		boolean sqConstrained = constrained[prev(f)];
+		setCorners(t, r, p, s);
+		setCorners(u, s, q, r);
+		link(3 * t, rp);
+		link(3 * t + 1, ps);
+		link(3 * t + 2, 3 * u + 2);
+		link(3 * u, sq);
+		link(3 * u + 1, qr);
+		constrained[3 * t] = rpConstrained;
+		constrained[3 * t + 1] = psConstrained;
+		constrained[3 * u] = sqConstrained;
+		constrained[3 * u + 1] = qrConstrained;
+		lastTriangle = t;
+	}
+	
+	/**
+	 * Gives the triangles using a vertex.
+	 */
+	private int[] getTrianglesAround(int v) {
+		int[] outgoing = getOutgoing(v);
+		int[] triangles = new int[outgoing.length];
+		for(int i = 0; i < outgoing.length; ++i) {
+			triangles[i] = outgoing[i] / 3;
+		}
+		return triangles;
+	}
+	
+	/**
+	 * Gives the half-edges leaving a vertex, one per triangle using it.
+	 */
+	private int[] getOutgoing(int v) {
+		int t = vertexTriangle[v];
+		int first = 3 * t;
+		while(corners[first] != v) {
+			++first;
+		}
+		int[] outgoing = new int[8];
+		int n = 0;
+		// turn counter-clockwise, until back at the start or on the border
+		int e = first;
+		do {
+			if(n == outgoing.length) {
+				outgoing = Arrays.copyOf(outgoing, n * 2);
+			}
+			outgoing[n++] = e;
+			int twin = twins[prev(e)];
+			e = twin == NONE ? NONE : twin;
+		} while(e != NONE && e != first);
+		if(e == NONE) {
+			// then clockwise from the start, for the rest
+			int twin = twins[first];
+			e = twin == NONE ? NONE : next(twin);
+			while(e != NONE) {
+				if(n == outgoing.length) {
+					outgoing = Arrays.copyOf(outgoing, n * 2);
+				}
+				outgoing[n++] = e;
+				twin = twins[e];
+				e = twin == NONE ? NONE : next(twin);
+			}
+		}
+		return Arrays.copyOf(outgoing, n);
+	}
+	
+	/**
+	 * Finds the half-edge going from <code>a</code> to <code>b</code>.
+	 * 
+	 * @return  The half-edge, or <code>NONE</code> if there is no such edge.
+	 */
+	private int findEdge(int a, int b) {
+		for(int e : getOutgoing(a)) {
+			if(corners[next(e)] == b) {
+				return e;
+			}
+		}
+		return NONE;
+	}
+	
+	private void setConstrained(int e) {
+		constrained[e] = true;
+		if(twins[e] != NONE) {
+			constrained[twins[e]] = true;
+		}
+	}
+	
+	/**
+	 * Forces the segment from <code>a</code> to <code>b</code> into the
+	 * triangulation, splitting it at any vertex lying on it. If it crosses
+	 * another constraint, which rounding errors may cause, it is left out.
+	 */
+	private void insertConstraint(int a, int b) {
+		while(a != b) {
+			int e = findEdge(a, b);
+			if(e != NONE) {
+				setConstrained(e);
+				return;
+			}
+			
+			// find the triangle around a that the segment leaves through
+			int crossing = NONE, onSegment = NONE;
+			for(int h : getOutgoing(a)) {
+				int p = corners[next(h)], q = corners[prev(h)];
+				double sideP = getOrientation(a, b, p);
+				if(sideP == 0. && isAhead(a, b, p)) {
+					onSegment = p;
+					break;
+				}
+				if(sideP < 0. && getOrientation(a, b, q) > 0.) {
+					crossing = next(h); // from p, on the right, to q
+					break;
+				}
+			}
+			if(onSegment != NONE) {
+				setConstrained(findEdge(a, onSegment));
+				a = onSegment;
+				continue;
+			}
+			if(crossing == NONE) {
+				return;
+			}
+			
+			// walk along the segment, listing the edges it crosses
+			ArrayDeque<int[]> crossed = new ArrayDeque<int[]>();
+			int end = b;
+			for(int h = crossing;;) {
+				if(constrained[h] || twins[h] == NONE) {
+					return;
+				}
+				crossed.add(new int[] {corners[h], corners[next(h)]});
+				int f = twins[h];
+				int s = corners[prev(f)];
+				if(s == b) {
+					break;
+				}
+				double side = getOrientation(a, b, s);
+				if(side == 0.) {
+					end = s; // the segment goes through s
+					break;
+				}
+				h = side > 0. ? next(f) : prev(f);
+			}
+			if(!removeCrossings(a, end, crossed)) {
+				return;
+			}
+			e = findEdge(a, end);
+			if(e == NONE) {
+				return;
+			}
+			setConstrained(e);
+			a = end;
+		}
+	}
+	
+	/**
+	 * Tests if <code>p</code>, on the line through <code>a</code> and
+	 * <code>b</code>, is on the side of <code>a</code> that <code>b</code> is.
+	 */
+	private boolean isAhead(int a, int b, int p) {
+		return (xs[p] - xs[a]) * (xs[b] - xs[a]) +
+		       (ys[p] - ys[a]) * (ys[b] - ys[a]) > 0.;
+	}
+	
+	/**
+	 * Flips away every edge crossing the segment from <code>a</code> to
+	 * <code>b</code> (Sloan's algorithm), and then restores the Delaunay
+	 * property for the new edges.
+	 * 
+	 * @return  <code>false</code> if it had to give up.
+	 */
+	private boolean removeCrossings(int a, int b, ArrayDeque<int[]> crossed) {
+		List<int[]> created = new ArrayList<int[]>();
+		long limit = 64L * (crossed.size() + 4) * (crossed.size() + 4);
+		for(long i = 0; !crossed.isEmpty(); ++i) {
+			if(i > limit) {
+				return false;
+			}
+			int[] edge = crossed.poll();
+			int e = findEdge(edge[0], edge[1]);
+			if(e == NONE) {
+				return false;
+			}
+			int f = twins[e];
+			int r = corners[prev(e)], s = corners[prev(f)];
+			double sideP = getOrientation(r, s, edge[0]);
+			double sideQ = getOrientation(r, s, edge[1]);
+			if(!(sideP > 0. && sideQ < 0. || sideP < 0. && sideQ > 0.)) {
+				crossed.add(edge); // not convex yet, come back to it later
+				continue;
+			}
+			flip(e);
+			if(doSegmentsCross(r, s, a, b)) {
+				crossed.add(new int[] {r, s});
+			} else {
+				created.add(new int[] {r, s});
+			}
+		}
+		
+		boolean swapped = true;
+		for(int round = 0; swapped && round < created.size() + 4; ++round) {
+			swapped = false;
+			for(int[] edge : created) {
+				if(edge[0] == a && edge[1] == b ||
+				   edge[0] == b && edge[1] == a) {
+					continue;
+				}
+				int e = findEdge(edge[0], edge[1]);
+				if(e == NONE || constrained[e] || twins[e] == NONE) {
+					continue;
+				}
+				int r = corners[prev(e)], s = corners[prev(twins[e])];
+				if(isInCircle(corners[e], corners[next(e)], r, s) &&
+				   doSegmentsCross(edge[0], edge[1], r, s)) {
+					flip(e);
+					edge[0] = r;
+					edge[1] = s;
+					swapped = true;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Marks the triangles lying outside of every polygon as free, testing
+	 * the centroid of every triangle against the polygons near it.
+	 */
+	private void markFree(Board board) {
+		setUpGrid();
+		List<List<Polygon>> cells = new ArrayList<List<Polygon>>();
+		for(int c = 0; c < columns * rows; ++c) {
+			cells.add(null);
+		}
+		for(Polygon p : board.getPolygons()) {
+			int cx1 = getColumn(p.getMaxX());
+			int cy1 = getRow(p.getMaxY());
+			for(int cy = getRow(p.getMinY()); cy <= cy1; ++cy) {
+				for(int cx = getColumn(p.getMinX()); cx <= cx1; ++cx) {
+					int c = cy * columns + cx;
+					if(cells.get(c) == null) {
+						cells.set(c, new ArrayList<Polygon>(2));
+					}
+					cells.get(c).add(p);
+				}
+			}
+		}
+		for(int t = 0; t < triangleCount; ++t) {
+			Node centroid = getCentroid(t);
+			List<Polygon> near = cells.get(getCell(centroid.getX(),
+			                                       centroid.getY()));
+			free[t] = true;
+			for(int i = 0; near != null && i < near.size(); ++i) {
+				if(near.get(i).containsNodeInArea(centroid)) {
+					free[t] = false;
+					break;
+				}
+			}
+		}
+	}
+	
+	private Node getCentroid(int t) {
+		int a = corners[3 * t], b = corners[3 * t + 1], c = corners[3 * t + 2];
+		return new Node((xs[a] + xs[b] + xs[c]) / 3.,
+		                (ys[a] + ys[b] + ys[c]) / 3.);
+	}
+	
+	/**
+	 * Sets up a grid over the mesh, of about one cell per two triangles.
+	 */
+	private void setUpGrid() {
+		minX = xs[0];
+		minY = ys[0];
+		double width = xs[1] - xs[0], height = ys[2] - ys[0];
+		cellSize = Math.sqrt(width * height / Math.max(triangleCount / 2, 1));
+		columns = Math.max(1, Math.min((int)Math.ceil(width / cellSize),
+		                               2048));
+		rows = Math.max(1, Math.min((int)Math.ceil(height / cellSize), 2048));
+	}
+	
+	/**
+	 * Remembers a triangle in every cell of the grid, to start walks from.
+	 */
+	private void buildLocationGrid() {
+		cellTriangles = new int[columns * rows];
+		Arrays.fill(cellTriangles, NONE);
+		for(int t = 0; t < triangleCount; ++t) {
+			Node centroid = getCentroid(t);
+			cellTriangles[getCell(centroid.getX(), centroid.getY())] = t;
+		}
+	}
+	
+	private int getColumn(double x) {
+		int c = (int)Math.floor((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+	
+	private int getRow(double y) {
+		int r = (int)Math.floor((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+	
+	private int getCell(double x, double y) {
+		return getRow(y) * columns + getColumn(x);
+	}
+}
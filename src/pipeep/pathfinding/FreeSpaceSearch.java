@@ -0,0 +1,262 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A search engine working on a triangulation of the free space of a board,
+ * rather than on its visibility graph. The free space between the polygons is
+ * split into triangles, with every edge of every polygon as one of their
+ * edges, and the search runs over those triangles instead of over the nodes:
+ * an A* search finds a corridor of adjacent free triangles from the start to
+ * the goal, and the string-pulling "funnel" algorithm then gives the
+ * shortest path within that corridor.<p/>
+ * 
+ * Building the triangulation takes <code>O(n log n)</code> time or so, and
+ * never tests the visibility between two nodes, so large boards that are
+ * only queried a few times, or that keep changing, are much cheaper to
+ * search this way than by building their visibility graph. On the other
+ * hand, the corridor is found using an estimate of the distance through
+ * every triangle, so the path is the shortest one within that corridor, but
+ * is not guaranteed to be the shortest one overall, as it is with
+ * <code>AStarSearch</code>. It is usually within a few percent of it.<p/>
+ * 
+ * Endpoints that lie within a polygon, or outside of the triangulated area,
+ * are handed over to <code>AStarSearch</code>, as are queries whose path
+ * would slip through a point where two polygons touch, which the board does
+ * not let any path through. This keeps no per-query state, so it may be
+ * shared by any number of boards and threads.
+ * 
+ * @see  Board#setSearchEngine
+ */
+public class FreeSpaceSearch implements PathSearch {
+	private final AStarSearch fallback = new AStarSearch();
+	
+	@Override
+	public List<Node> getShortestPath(Board board, Node a, Node b) {
+		
+		if(board.isVisible(a, b)) { // direct is shortest
+			List<Node> path = new LinkedList<Node>();
+			path.add(b);
+			return path;
+		}
+		
+		FreeSpaceMesh mesh = board.getFreeSpaceMesh();
+		int[] starts = mesh.getFreeTriangles(a.getX(), a.getY());
+		int[] goals = mesh.getFreeTriangles(b.getX(), b.getY());
+		if(starts.length == 0 || goals.length == 0) {
+			return fallback.getShortestPath(board, a, b);
+		}
+		SearchTriangle end = findCorridor(board, mesh, starts, goals, a, b);
+		if(end == null) {
+			return null; // no possible path
+		}
+		List<Node> path = getFunnelPath(mesh, end, a, b);
+		if(!isClear(board, a, path)) {
+			// the triangulation let it through where polygons touch
+			return fallback.getShortestPath(board, a, b);
+		}
+		return path;
+	}
+	
+	/**
+	 * Tests if every leg of a path is clear, as the board sees it. The
+	 * legs are tested directly, so as not to build the visibility graph.
+	 */
+	private static boolean isClear(Board board, Node a, List<Node> path) {
+		Node previous = a;
+		for(Node n : path) {
+			if(!board.visibilityTest(previous, n)) {
+				return false;
+			}
+			previous = n;
+		}
+		return true;
+	}
+	
+	/**
+	 * Runs an A* search over the free triangles, crossing from one to the
+	 * next through any edge that is not an edge of a polygon. A triangle is
+	 * entered at the point of that edge closest to where the previous
+	 * triangle was entered, and the distances between those points are used
+	 * as costs.
+	 * 
+	 * @return  The goal triangle reached, linked back to the start through
+	 *          its parents, or <code>null</code> if none can be reached.
+	 */
+	private static SearchTriangle findCorridor(Board board,
+	                                           FreeSpaceMesh mesh,
+	                                           int[] starts, int[] goals,
+	                                           Node a, Node b) {
+		SearchTriangle[] discovered =
+			new SearchTriangle[mesh.getTriangleCount()];
+		NodeHeap<SearchTriangle> frontier = new NodeHeap<SearchTriangle>();
+		for(int t : starts) {
+			SearchTriangle start = new SearchTriangle(t, a.getX(), a.getY());
+			start.cost = 0.;
+			discovered[t] = start;
+			frontier.add(start, a.getDistance(b));
+		}
+		boolean[] isGoal = new boolean[mesh.getTriangleCount()];
+		for(int t : goals) {
+			isGoal[t] = true;
+		}
+		
+		int expanded = 0;
+		while(!frontier.isEmpty()) {
+			SearchTriangle current = frontier.poll();
+			current.closed = true;
+			if(isGoal[current.triangle]) {
+				AStarSearch.recordExpansions(board, expanded);
+				return current;
+			}
+			++expanded;
+			
+			for(int h = 3 * current.triangle; h < 3 * current.triangle + 3;
+			    ++h) {
+				int twin = mesh.getTwin(h);
+				if(twin == FreeSpaceMesh.NONE || mesh.isConstrained(h) ||
+				   !mesh.isFree(twin / 3)) {
+					continue;
+				}
+				SearchTriangle next = discovered[twin / 3];
+				if(next != null && next.closed) {
+					continue;
+				}
+				int p = mesh.getCorner(h);
+				int q = mesh.getCorner(FreeSpaceMesh.next(h));
+				// enter at the point of the edge closest to where current was
+				double px = mesh.getX(p), py = mesh.getY(p);
+				double dx = mesh.getX(q) - px, dy = mesh.getY(q) - py;
+				double along = (current.x - px) * dx + (current.y - py) * dy;
+				along = Math.max(0., Math.min(1., along / (dx * dx + dy * dy)));
+				double x = px + along * dx, y = py + along * dy;
+				double cost = current.cost + Math.hypot(x - current.x,
+				                                        y - current.y);
+				if(next == null) {
+					next = new SearchTriangle(twin / 3, x, y);
+					discovered[twin / 3] = next;
+				} else if(cost >= next.cost) {
+					continue;
+				}
+				next.x = x;
+				next.y = y;
+				next.cost = cost;
+				next.parent = current;
+				next.portal = h;
+				frontier.add(next, cost + Math.hypot(b.getX() - x,
+				                                     b.getY() - y), -cost);
+			}
+		}
+		AStarSearch.recordExpansions(board, expanded);
+		return null;
+	}
+	
+	/**
+	 * Pulls the path taut through the corridor ending at the given triangle,
+	 * with the "simple stupid funnel algorithm": the funnel is narrowed
+	 * portal by portal, and every time one side would cross over the other,
+	 * the path bends around the corner at the end of that side.
+	 */
+	private static List<Node> getFunnelPath(FreeSpaceMesh mesh,
+	                                        SearchTriangle end, Node a,
+	                                        Node b) {
+		// the portals, from the start to the goal, as seen walking along
+		LinkedList<Node> lefts = new LinkedList<Node>();
+		LinkedList<Node> rights = new LinkedList<Node>();
+		lefts.add(b);
+		rights.add(b);
+		for(SearchTriangle t = end; t.parent != null; t = t.parent) {
+			lefts.addFirst(mesh.getNode(mesh.getCorner(
+				FreeSpaceMesh.next(t.portal))));
+			rights.addFirst(mesh.getNode(mesh.getCorner(t.portal)));
+		}
+		lefts.addFirst(a);
+		rights.addFirst(a);
+		Node[] left = lefts.toArray(new Node[lefts.size()]);
+		Node[] right = rights.toArray(new Node[rights.size()]);
+		
+		List<Node> path = new ArrayList<Node>();
+		Node apex = a, funnelLeft = a, funnelRight = a;
+		int leftIndex = 0, rightIndex = 0;
+		for(int i = 1; i < left.length; ++i) {
+			// narrow the right side of the funnel
+			if(getCross(apex, funnelRight, right[i]) >= 0.) {
+				if(apex.equals(funnelRight) ||
+				   getCross(apex, funnelLeft, right[i]) < 0.) {
+					funnelRight = right[i];
+					rightIndex = i;
+				} else { // crossed over the left side, bend around it
+					apex = funnelLeft;
+					addCorner(path, a, apex);
+					funnelRight = apex;
+					i = rightIndex = leftIndex;
+					continue;
+				}
+			}
+			// then the left side
+			if(getCross(apex, funnelLeft, left[i]) <= 0.) {
+				if(apex.equals(funnelLeft) ||
+				   getCross(apex, funnelRight, left[i]) > 0.) {
+					funnelLeft = left[i];
+					leftIndex = i;
+				} else {
+					apex = funnelRight;
+					addCorner(path, a, apex);
+					funnelLeft = apex;
+					i = leftIndex = rightIndex;
+					continue;
+				}
+			}
+		}
+		// end exactly at the goal
+		if(!path.isEmpty() && path.get(path.size() - 1).equals(b, false)) {
+			path.remove(path.size() - 1);
+		}
+		path.add(b);
+		return new LinkedList<Node>(path);
+	}
+	
+	/**
+	 * Adds a corner the path bends around, unless the path is already there,
+	 * as the funnel may restart from the same apex more than once.
+	 */
+	private static void addCorner(List<Node> path, Node a, Node corner) {
+		Node last = path.isEmpty() ? a : path.get(path.size() - 1);
+		if(!last.equals(corner, false)) {
+			path.add(corner);
+		}
+	}
+	
+	/**
+	 * The cross product of <code>b - a</code> and <code>c - a</code>, which
+	 * is positive if <code>c</code> is to the left of the line from
+	 * <code>a</code> to <code>b</code>.
+	 */
+	private static double getCross(Node a, Node b, Node c) {
+		return (b.getX() - a.getX()) * (c.getY() - a.getY()) -
+		       (b.getY() - a.getY()) * (c.getX() - a.getX());
+	}
+	
+	/**
+	 * The search information kept about every triangle discovered so far.
+	 */
+	private static class SearchTriangle extends NodeHeap.Entry {
+		final int triangle;
+		double x, y; // where the triangle is entered
+		double cost = Double.POSITIVE_INFINITY;
+		SearchTriangle parent = null;
+		int portal = FreeSpaceMesh.NONE; // the half-edge crossed to get here
+		boolean closed = false;
+		
+		public SearchTriangle(int triangle, double x, double y) {
+			super(null);
+			this.triangle = triangle;
+			this.x = x;
+			this.y = y;
+		}
+	}
+}
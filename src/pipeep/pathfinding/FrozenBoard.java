@@ -0,0 +1,105 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An immutable snapshot of a <code>Board</code>, as given by
+ * <code>Board.freeze()</code>. Every cache about the nodes on the board is
+ * fully built when the snapshot is made, so queries about them only ever read
+ * from the caches, and any number of threads may query a snapshot at once,
+ * without locking. Information about nodes that are not on the board is still
+ * computed lazily, and cached in a thread-safe way.<p/>
+ * 
+ * Every method that would modify the board throws an
+ * <code>UnsupportedOperationException</code>. To change the board, modify the
+ * original <code>Board</code> and freeze it again; threads still using the
+ * previous snapshot are not affected. Like any other object, a snapshot must
+ * be safely published to the threads using it, for instance through
+ * <code>Board.getLastSnapshot()</code>, a concurrent collection, or by
+ * handing it to an executor.<p/>
+ * 
+ * The search engine is inherited from the original board, and has to be
+ * thread-safe itself, which <code>AStarSearch</code> is.
+ */
+public final class FrozenBoard extends Board {
+	
+	FrozenBoard(Board source, ExecutorService executor)
+	            throws InterruptedException {
+		copyFrom(source);
+		precomputeVisibilityGraph(executor);
+	}
+	
+	/**
+	 * This board is already frozen, so this returns the board itself.
+	 */
+	@Override
+	public FrozenBoard freeze(ExecutorService executor) {
+		return this;
+	}
+	
+	@Override
+	Map<Node, Boolean> createNavigationMeshRow() {
+		return new ConcurrentHashMap<Node, Boolean>();
+	}
+	
+	@Override
+	public void setSearchEngine(PathSearch searchEngine) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public void setReducedGraph(boolean reduced) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public void setMetrics(BoardMetrics metrics) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public void setUnownedNavigationMesh(NavigationMeshCache cache) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	protected void markDirty() {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public boolean add(Polygon p) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends Polygon> p) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+	
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException("frozen board");
+	}
+}
@@ -0,0 +1,509 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Plans paths to a fixed goal on a board, from a start that keeps moving,
+ * while the polygons on the board come and go. It is an implementation of
+ * D* Lite over the visibility graph of the board: the search runs backwards,
+ * from the goal, and its state is kept between queries, so that moving the
+ * start, or adding or removing a polygon, only repairs the part of the
+ * search that is affected, rather than starting over.<p/>
+ * 
+ * Every node keeps its distance to the goal (<code>g</code>), along with a
+ * one-step lookahead of it (<code>rhs</code>) and the neighbour that
+ * lookahead goes through. A change to the board only touches the nodes whose
+ * best edge it blocks or whose new edges it opens, and the search then
+ * propagates the new distances only as far as they matter to the start. As
+ * the start moves, the keys of the nodes already queued are kept valid by
+ * adding the distance moved to every new key, so that they never have to be
+ * reordered. Paths are always the same length as the ones given by
+ * <code>AStarSearch</code>, over the full visibility graph, even when the
+ * board is in reduced-graph mode.<p/>
+ * 
+ * The planner listens to the board for changes, until <code>close</code> is
+ * called. Changes too large to be reported one polygon at a time, such as
+ * clearing the board, make the next query start over. A planner is not
+ * thread-safe, and must be used from the thread modifying the board.
+ * 
+ * @see  Board#getShortestPath
+ */
+public class IncrementalPlanner {
+	private final Board board;
+	private final Node goal;
+	private final BoardListener listener = new BoardListener() {
+		public void polygonAdded(Board board, Polygon p) {
+			onPolygonAdded(p);
+		}
+		
+		public void polygonRemoved(Board board, Polygon p) {
+			onPolygonRemoved(p);
+		}
+		
+		public void boardChanged(Board board) {
+			stale = true;
+		}
+	};
+	
+	private final NodeHeap<Vertex> queue = new NodeHeap<Vertex>();
+	private Vertex[] vertexes = new Vertex[0]; // by node id, created lazily
+	private Vertex goalVertex = null;
+	private Vertex startVertex = null;
+	private Node start = null;
+	private double keyModifier = 0.; // how far the start moved, overall
+	private boolean stale = true;
+	private int expanded = 0;
+	
+	/**
+	 * Creates a planner to the given goal, which starts listening to the
+	 * board right away. Nothing is searched until the first query.
+	 */
+	public IncrementalPlanner(Board board, Node goal) {
+		this.board = board;
+		this.goal = goal;
+		board.addBoardListener(listener);
+	}
+	
+	public Board getBoard() {
+		return board;
+	}
+	
+	public Node getGoal() {
+		return goal;
+	}
+	
+	/**
+	 * Stops listening to the board. The planner must not be used afterwards.
+	 */
+	public void close() {
+		board.removeBoardListener(listener);
+	}
+	
+	/**
+	 * Finds a path from the given start to the goal, repairing the search
+	 * left by the previous query. This follows the same contract as
+	 * <code>Board.getShortestPath</code>.
+	 * 
+	 * @param   start  The node to travel from, which is usually close to the
+	 *                 start of the previous query.
+	 * @return  A <code>List</code> of <code>Node</code>s to travel through,
+	 *          not including <code>start</code> but including the goal.
+	 *          <code>null</code> if there is no possible path.
+	 */
+	public List<Node> getShortestPath(Node start) {
+		if(board.isVisible(start, goal)) { // direct is shortest
+			List<Node> path = new LinkedList<Node>();
+			path.add(goal);
+			return path;
+		}
+		if(stale) {
+			initialize(start);
+		} else if(!start.equals(this.start)) {
+			moveStart(start);
+		}
+		expanded = 0;
+		computeShortestPath();
+		AStarSearch.recordExpansions(board, expanded);
+		return startVertex.rhs == Double.POSITIVE_INFINITY ? null
+		                                                   : getPath();
+	}
+	
+	/**
+	 * Forgets everything, and sets up a new backwards search from the goal.
+	 */
+	private void initialize(Node start) {
+		queue.clear();
+		vertexes = new Vertex[board.getNodeCount()];
+		keyModifier = 0.;
+		this.start = start;
+		goalVertex = getVertex(goal);
+		goalVertex.rhs = 0.;
+		startVertex = getVertex(start);
+		updateVertex(goalVertex);
+		stale = false;
+	}
+	
+	private void moveStart(Node start) {
+		keyModifier += this.start.getDistance(start);
+		if(startVertex.id < 0) {
+			// nothing else ever goes through a start that is not on the board
+			queue.remove(startVertex);
+		}
+		this.start = start;
+		startVertex = getVertex(start);
+		if(startVertex.id < 0) {
+			updateRhs(startVertex);
+			updateVertex(startVertex);
+		}
+	}
+	
+	/**
+	 * The main loop of D* Lite: expands inconsistent nodes, in order of their
+	 * keys, until the start is consistent and no queued node could lead to a
+	 * shorter path from it.
+	 */
+	private void computeShortestPath() {
+		while(!queue.isEmpty()) {
+			Vertex u = queue.peek();
+			double startCost = Math.min(startVertex.g, startVertex.rhs);
+			double startKey = startCost + keyModifier;
+			boolean below = u.getPriority() < startKey ||
+			                u.getPriority() == startKey &&
+			                u.getTieBreak() < startCost;
+			if(!below && startVertex.rhs <= startVertex.g) {
+				return;
+			}
+			++expanded;
+			double cost = Math.min(u.g, u.rhs);
+			double key = cost + start.getDistance(u.getNode()) + keyModifier;
+			if(u.getPriority() < key ||
+			   u.getPriority() == key && u.getTieBreak() < cost) {
+				queue.update(u, key, cost); // queued before the start moved
+			} else if(u.g > u.rhs) { // overconsistent, settle it
+				u.g = u.rhs;
+				queue.remove(u);
+				if(u != startVertex || u.id >= 0) {
+					lowerPredecessors(u);
+				}
+			} else { // underconsistent, raise it and whatever went through it
+				u.g = Double.POSITIVE_INFINITY;
+				for(Vertex v : getPredecessors(u)) {
+					updateRhs(v);
+					updateVertex(v);
+				}
+				updateRhs(u);
+				updateVertex(u);
+			}
+		}
+	}
+	
+	/**
+	 * Lets every node that sees <code>u</code> go through it, if that is
+	 * shorter than what it had.
+	 */
+	private void lowerPredecessors(Vertex u) {
+		int count = board.getNodeCount();
+		for(int id = 0; id <= count; ++id) {
+			Vertex v;
+			if(id < count) {
+				Node n = board.getNode(id);
+				if(n == null || id == u.id || id == goalVertex.id) {
+					continue;
+				}
+				v = id < vertexes.length ? vertexes[id] : null;
+				double cost = n.getDistance(u.getNode()) + u.g;
+				if(v != null && cost >= v.rhs ||
+				   !isVisible(id, n, u.id, u.getNode())) {
+					continue;
+				}
+				if(v == null) {
+					v = getVertex(id);
+				}
+			} else if(startVertex.id < 0) {
+				v = startVertex;
+				if(start.getDistance(u.getNode()) + u.g >= v.rhs ||
+				   !isVisible(v, u)) {
+					continue;
+				}
+			} else {
+				continue;
+			}
+			v.rhs = v.getNode().getDistance(u.getNode()) + u.g;
+			v.next = u;
+			updateVertex(v);
+		}
+	}
+	
+	/**
+	 * The nodes whose lookahead goes through the given one.
+	 */
+	private List<Vertex> getPredecessors(Vertex u) {
+		List<Vertex> predecessors = new ArrayList<Vertex>();
+		for(Vertex v : vertexes) {
+			if(v != null && v.next == u) {
+				predecessors.add(v);
+			}
+		}
+		if(startVertex.id < 0 && startVertex.next == u) {
+			predecessors.add(startVertex);
+		}
+		return predecessors;
+	}
+	
+	/**
+	 * Recomputes the lookahead of a node from scratch, as the shortest way to
+	 * the goal through any node it sees.
+	 */
+	private void updateRhs(Vertex u) {
+		if(u == goalVertex) {
+			return;
+		}
+		u.rhs = Double.POSITIVE_INFINITY;
+		u.next = null;
+		for(Vertex v : vertexes) {
+			if(v != null) {
+				considerNext(u, v);
+			}
+		}
+		if(goalVertex.id < 0) {
+			considerNext(u, goalVertex);
+		}
+	}
+	
+	private void considerNext(Vertex u, Vertex v) {
+		if(v == u || v == startVertex && v.id < 0 ||
+		   v.g == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		double cost = u.getNode().getDistance(v.getNode()) + v.g;
+		if(cost < u.rhs && isVisible(u, v)) {
+			u.rhs = cost;
+			u.next = v;
+		}
+	}
+	
+	/**
+	 * Queues a node with its current key if it is inconsistent, or takes it
+	 * off the queue if it is not.
+	 */
+	private void updateVertex(Vertex u) {
+		if(u.g != u.rhs) {
+			double cost = Math.min(u.g, u.rhs);
+			queue.add(u, cost + start.getDistance(u.getNode()) + keyModifier,
+			          cost);
+		} else {
+			queue.remove(u);
+		}
+	}
+	
+	/**
+	 * Walks from the start to the goal, always to the neighbour with the
+	 * shortest remaining distance.
+	 */
+	private List<Node> getPath() {
+		List<Node> path = new LinkedList<Node>();
+		Vertex current = startVertex;
+		for(int steps = 0; current != goalVertex; ++steps) {
+			Vertex best = current.next;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for(Vertex v : vertexes) {
+				if(v == null || v == current ||
+				   v.g == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				double cost = current.getNode().getDistance(v.getNode()) + v.g;
+				if(cost < bestCost && isVisible(current, v)) {
+					best = v;
+					bestCost = cost;
+				}
+			}
+			if(goalVertex.id < 0 &&
+			   current.getNode().getDistance(goal) < bestCost &&
+			   isVisible(current, goalVertex)) {
+				best = goalVertex;
+			}
+			if(best == null || steps > vertexes.length) {
+				return null; // should not happen, the start is consistent
+			}
+			path.add(best.getNode());
+			current = best;
+		}
+		return path;
+	}
+	
+	// Repairs
+	
+	private void onPolygonAdded(Polygon p) {
+		if(stale) {
+			return;
+		}
+		if(goalVertex.id < 0 && board.getNodeId(goal) >= 0 ||
+		   startVertex.id < 0 && board.getNodeId(start) >= 0) {
+			stale = true; // an endpoint became a corner, start over
+			return;
+		}
+		// lookaheads can only get longer, so only the nodes whose best edge
+		// is now blocked have to be looked at, along with the new nodes
+		for(Vertex u : getVertexes()) {
+			if(u.next != null && mayOcclude(p, u, u.next) &&
+			   !isVisible(u, u.next)) {
+				updateRhs(u);
+				updateVertex(u);
+			}
+		}
+		for(Node n : p.getNodes()) {
+			int id = board.getNodeId(n);
+			if(id >= vertexes.length || vertexes[id] == null) {
+				Vertex u = getVertex(id);
+				updateRhs(u);
+				updateVertex(u);
+			}
+		}
+	}
+	
+	private void onPolygonRemoved(Polygon p) {
+		if(stale) {
+			return;
+		}
+		if(goalVertex.id >= 0 && board.getNodeId(goal) < 0 ||
+		   startVertex.id >= 0 && board.getNodeId(start) < 0) {
+			stale = true; // an endpoint is no longer a corner, start over
+			return;
+		}
+		// drop the nodes that went away with the polygon
+		boolean removed = false;
+		for(int id = 0; id < vertexes.length; ++id) {
+			Vertex u = vertexes[id];
+			if(u != null && board.getNode(id) != u.getNode()) {
+				u.removed = true;
+				queue.remove(u);
+				vertexes[id] = null;
+				removed = true;
+			}
+		}
+		List<Vertex> all = getVertexes();
+		if(removed) {
+			for(Vertex u : all) {
+				if(u.next != null && u.next.removed) {
+					updateRhs(u);
+					updateVertex(u);
+				}
+			}
+		}
+		// lookaheads can only get shorter through the edges that the polygon
+		// was blocking, which all cross its bounding box
+		List<Vertex> reached = new ArrayList<Vertex>();
+		for(Vertex v : all) {
+			if(v.g != Double.POSITIVE_INFINITY &&
+			   (v != startVertex || v.id >= 0)) {
+				reached.add(v);
+			}
+		}
+		int count = board.getNodeCount();
+		for(int id = 0; id <= count; ++id) {
+			Vertex u;
+			if(id < count) {
+				Node n = board.getNode(id);
+				if(n == null || id == goalVertex.id) {
+					continue;
+				}
+				u = id < vertexes.length ? vertexes[id] : null;
+				if(u == null) { // only created if it gets anywhere
+					u = new Vertex(n, id);
+				}
+			} else if(startVertex.id < 0) {
+				u = startVertex;
+			} else {
+				continue;
+			}
+			boolean lowered = false;
+			for(Vertex v : reached) {
+				if(v == u || !mayOcclude(p, u, v)) {
+					continue;
+				}
+				double cost = u.getNode().getDistance(v.getNode()) + v.g;
+				if(cost < u.rhs && isVisible(u, v)) {
+					u.rhs = cost;
+					u.next = v;
+					lowered = true;
+				}
+			}
+			if(lowered) {
+				if(u.id >= 0) {
+					getVertex(u.id);
+					vertexes[u.id] = u;
+				}
+				updateVertex(u);
+			}
+		}
+	}
+	
+	/**
+	 * Tests if the segment between two nodes crosses the bounding box of a
+	 * polygon, which any segment it occludes must.
+	 */
+	private static boolean mayOcclude(Polygon p, Vertex a, Vertex b) {
+		Node u = a.getNode(), v = b.getNode();
+		return Math.max(u.getX(), v.getX()) >= p.getMinX() &&
+		       Math.min(u.getX(), v.getX()) <= p.getMaxX() &&
+		       Math.max(u.getY(), v.getY()) >= p.getMinY() &&
+		       Math.min(u.getY(), v.getY()) <= p.getMaxY();
+	}
+	
+	// Vertexes
+	
+	/**
+	 * Every node known to the search, including a start or goal that is not
+	 * on the board.
+	 */
+	private List<Vertex> getVertexes() {
+		List<Vertex> all = new ArrayList<Vertex>();
+		for(Vertex v : vertexes) {
+			if(v != null) {
+				all.add(v);
+			}
+		}
+		if(goalVertex.id < 0) {
+			all.add(goalVertex);
+		}
+		if(startVertex.id < 0) {
+			all.add(startVertex);
+		}
+		return all;
+	}
+	
+	/**
+	 * Gives the vertex of a node, creating it if it is not on the board.
+	 */
+	private Vertex getVertex(Node n) {
+		int id = board.getNodeId(n);
+		return id < 0 ? new Vertex(n, -1) : getVertex(id);
+	}
+	
+	/**
+	 * Gives the vertex of a node id, creating it if needed. A new vertex is
+	 * as far from the goal as it can be, which is right as long as none of
+	 * the nodes it sees has been reached yet.
+	 */
+	private Vertex getVertex(int id) {
+		if(id >= vertexes.length) {
+			Vertex[] grown = new Vertex[board.getNodeCount()];
+			System.arraycopy(vertexes, 0, grown, 0, vertexes.length);
+			vertexes = grown;
+		}
+		if(vertexes[id] == null) {
+			vertexes[id] = new Vertex(board.getNode(id), id);
+		}
+		return vertexes[id];
+	}
+	
+	private boolean isVisible(Vertex a, Vertex b) {
+		return isVisible(a.id, a.getNode(), b.id, b.getNode());
+	}
+	
+	private boolean isVisible(int aId, Node a, int bId, Node b) {
+		return aId >= 0 && bId >= 0 ? board.isVisible(aId, bId)
+		                            : board.isVisible(a, b);
+	}
+	
+	/**
+	 * The search information kept about every node.
+	 */
+	private static class Vertex extends NodeHeap.Entry {
+		final int id; // -1 for a start or goal that is not on the board
+		double g = Double.POSITIVE_INFINITY;
+		double rhs = Double.POSITIVE_INFINITY;
+		Vertex next = null; // the neighbour rhs goes through
+		boolean removed = false;
+		
+		public Vertex(Node node, int id) {
+			super(node);
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package pipeep.pathfinding;
+
+/**
+ * A search strategy that can give up part way through a query, as set out
+ * by a <code>QueryOptions</code>. Boards hand queries with options over to
+ * search engines implementing this. Other engines are only checked against
+ * the options before they start, and then run to completion.
+ * 
+ * @see  Board#getShortestPath
+ */
+public interface LimitedPathSearch extends PathSearch {
+	/**
+	 * Finds a path across the given board, following the same contract as
+	 * <code>getShortestPath(Board, Node, Node)</code>, unless one of the
+	 * limits is reached first.
+	 * 
+	 * @param   board    The board to search across.
+	 * @param   query    The endpoints of the path.
+	 * @param   options  The limits on the search, or <code>null</code> for
+	 *                   none.
+	 * @return  The result, with a status of <code>TIMED_OUT</code> or
+	 *          <code>CANCELLED</code> if the search gave up.
+	 */
+	public PathResult getShortestPath(Board board, PathQuery query,
+	                                  QueryOptions options);
+}
@@ -0,0 +1,263 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of navigation mesh rows, used by a
+ * <code>Board</code> to hold visibility information about nodes that are not
+ * on the board, but that it has been asked about.<p/>
+ * 
+ * Every row is given a weight, by default the number of pairs it holds plus
+ * one, and once the total weight goes over the maximum, the least recently
+ * used rows are evicted. Rows may optionally be held through
+ * <code>SoftReference</code>s, allowing the garbage collector to reclaim them
+ * under memory pressure. Subclasses may override <code>getWeight</code> to
+ * change how rows are weighed.<p/>
+ * 
+ * Hit, miss and eviction counts are kept to help with sizing the cache. This
+ * class is thread-safe.
+ */
+public class NavigationMeshCache {
+	/**
+	 * The maximum weight used by the default constructor.
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 1L << 20;
+	
+	private final long maximumWeight;
+	private final boolean softRows;
+	
+	private final LinkedHashMap<Node, Row> rows =
+		new LinkedHashMap<Node, Row>(16, .75f, true); // access-ordered
+	private final ReferenceQueue<Map<Node, Boolean>> collected =
+		new ReferenceQueue<Map<Node, Boolean>>();
+	private long weight = 0;
+	
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+	
+	/**
+	 * Creates a soft-referenced cache with a maximum weight of
+	 * <code>DEFAULT_MAXIMUM_WEIGHT</code>.
+	 */
+	public NavigationMeshCache() {
+		this(DEFAULT_MAXIMUM_WEIGHT, true);
+	}
+	
+	/**
+	 * @param  maximumWeight  The total weight of rows to keep before evicting
+	 *                        the least recently used ones. Use
+	 *                        <code>Long.MAX_VALUE</code> for no bound.
+	 * @param  softRows       If <code>true</code>, rows are only softly
+	 *                        referenced, and may be reclaimed by the garbage
+	 *                        collector at any time.
+	 */
+	public NavigationMeshCache(long maximumWeight, boolean softRows) {
+		if(maximumWeight <= 0) {
+			throw new IllegalArgumentException("maximumWeight must be > 0");
+		}
+		this.maximumWeight = maximumWeight;
+		this.softRows = softRows;
+	}
+	
+	/**
+	 * Gives the cached row for the given node, or <code>null</code> if there
+	 * is none.
+	 */
+	public synchronized Map<Node, Boolean> get(Node n) {
+		purgeCollected();
+		Row r = rows.get(n);
+		Map<Node, Boolean> row = r == null ? null : r.getRow();
+		if(row == null) {
+			++missCount;
+		} else {
+			++hitCount;
+		}
+		return row;
+	}
+	
+	/**
+	 * Adds (or replaces) the row for the given node, evicting other rows as
+	 * needed.
+	 */
+	public synchronized void put(Node n, Map<Node, Boolean> row) {
+		purgeCollected();
+		Row r = new Row(n, row);
+		r.weight = getWeight(n, row);
+		Row old = rows.put(n, r);
+		if(old != null) {
+			weight -= old.weight;
+			old.evicted = true;
+		}
+		weight += r.weight;
+		trim();
+	}
+	
+	/**
+	 * Re-weighs the row of the given node after it has been modified, evicting
+	 * other rows as needed.
+	 */
+	public synchronized void update(Node n) {
+		Row r = rows.get(n);
+		Map<Node, Boolean> row = r == null ? null : r.getRow();
+		if(row != null) {
+			int w = getWeight(n, row);
+			weight += w - r.weight;
+			r.weight = w;
+			trim();
+		}
+	}
+	
+	/**
+	 * Removes the row of the given node, if any. This does not count as an
+	 * eviction.
+	 */
+	public synchronized void remove(Node n) {
+		Row r = rows.remove(n);
+		if(r != null) {
+			weight -= r.weight;
+			r.evicted = true;
+		}
+	}
+	
+	/**
+	 * Gives a snapshot of all the rows currently in the cache, from least to
+	 * most recently used, without counting as a lookup. The rows themselves
+	 * are not copied.
+	 */
+	public synchronized Map<Node, Map<Node, Boolean>> getRows() {
+		purgeCollected();
+		Map<Node, Map<Node, Boolean>> snapshot =
+			new LinkedHashMap<Node, Map<Node, Boolean>>(rows.size() * 2);
+		for(Row r : rows.values()) {
+			Map<Node, Boolean> row = r.getRow();
+			if(row != null) {
+				snapshot.put(r.key, row);
+			}
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Removes every row from the cache. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		for(Row r : rows.values()) {
+			r.evicted = true;
+		}
+		rows.clear();
+		weight = 0;
+		purgeCollected();
+	}
+	
+	/**
+	 * Gives the weight of a row, the number of pairs it holds plus one by
+	 * default. The result must be positive.
+	 */
+	protected int getWeight(Node n, Map<Node, Boolean> row) {
+		return row.size() + 1;
+	}
+	
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+	
+	public boolean hasSoftRows() {
+		return softRows;
+	}
+	
+	/**
+	 * @return  The number of rows currently in the cache, including ones that
+	 *          may have just been reclaimed by the garbage collector.
+	 */
+	public synchronized int size() {
+		return rows.size();
+	}
+	
+	/**
+	 * @return  The total weight of all the rows currently in the cache.
+	 */
+	public synchronized long getWeight() {
+		purgeCollected();
+		return weight;
+	}
+	
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * @return  The number of rows removed because the cache went over its
+	 *          maximum weight, or because the garbage collector reclaimed
+	 *          them.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	/**
+	 * @return  The ratio of hits to lookups, or <code>NaN</code> if there have
+	 *          not been any lookups yet.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hitCount + missCount;
+		return lookups == 0 ? Double.NaN : (double)hitCount / lookups;
+	}
+	
+	private void trim() {
+		Iterator<Row> eldest = rows.values().iterator();
+		while(weight > maximumWeight && rows.size() > 1) {
+			Row r = eldest.next();
+			eldest.remove();
+			weight -= r.weight;
+			r.evicted = true;
+			++evictionCount;
+		}
+	}
+	
+	/**
+	 * Drops the rows that the garbage collector reclaimed since last time.
+	 */
+	private void purgeCollected() {
+		Row r;
+		while((r = (Row)collected.poll()) != null) {
+			if(!r.evicted) {
+				rows.remove(r.key);
+				weight -= r.weight;
+				r.evicted = true;
+				++evictionCount;
+			}
+		}
+	}
+	
+	/**
+	 * A cache entry. It holds its row either strongly, or only through the
+	 * soft reference it extends.
+	 */
+	private class Row extends SoftReference<Map<Node, Boolean>> {
+		private final Node key;
+		private final Map<Node, Boolean> strongRow;
+		private int weight;
+		private boolean evicted = false;
+		
+		public Row(Node key, Map<Node, Boolean> row) {
+			super(row, softRows ? collected : null);
+			this.key = key;
+			this.strongRow = softRows ? null : row;
+		}
+		
+		public Map<Node, Boolean> getRow() {
+			return strongRow != null ? strongRow : get();
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package pipeep.pathfinding;
+
+import pipeep.arithmetic.Rounding;
+import pipeep.geometry.Node;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A static spatial index over the nodes of a board, by id, used to find the
+ * nodes within a box, or the pairs of nodes whose segment may pass through
+ * it, such as the bounds of a polygon added to or removed from the board,
+ * without going through every node or pair. The bounding box of the nodes
+ * is split into a uniform grid of roughly as many cells as there are
+ * nodes.<p/>
+ * 
+ * Seen from a node outside the box, the box spans a wedge, and only the
+ * nodes inside that wedge may be on the other end of such a segment. The
+ * wedge is walked one row of cells at a time, so only the cells it covers
+ * are looked at.<p/>
+ * 
+ * Once built, the index is immutable, and can be queried from any number of
+ * threads at once.
+ */
+class NodeGrid {
+	private final double[] xs, ys; // by node id
+	private final int[] all; // every id in use
+	
+	private final double minX, minY;
+	private final double cellSize;
+	private final int columns, rows;
+	private final double reach; // longer than any segment between nodes
+	
+	// the ids in cell c are listed in cellNodes, from index cellStart[c] up
+	// to (but excluding) cellStart[c + 1]
+	private final int[] cellStart;
+	private final int[] cellNodes;
+	
+	/**
+	 * @param  table  The nodes by id, with <code>null</code> for unused ids.
+	 */
+	public NodeGrid(List<Node> table) {
+		xs = new double[table.size()];
+		ys = new double[table.size()];
+		int count = 0;
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(int id = 0; id < table.size(); ++id) {
+			Node n = table.get(id);
+			if(n != null) {
+				xs[id] = n.getX();
+				ys[id] = n.getY();
+				x0 = Math.min(x0, xs[id]);
+				y0 = Math.min(y0, ys[id]);
+				x1 = Math.max(x1, xs[id]);
+				y1 = Math.max(y1, ys[id]);
+				++count;
+			}
+		}
+		all = new int[count];
+		if(count == 0) {
+			x0 = y0 = 0.; x1 = y1 = 1.;
+		}
+		double pad = Math.max(Math.max(x1 - x0, y1 - y0) * 1e-9,
+		                      Rounding.EQUALITY_DIFFERENCE);
+		minX = x0 - pad;
+		minY = y0 - pad;
+		double width = x1 - x0 + 2 * pad;
+		double height = y1 - y0 + 2 * pad;
+		reach = 2. * Math.hypot(width, height);
+		
+		// aim for about one cell per node, with square cells, but no more
+		// than 4096 of them across
+		double size = Math.sqrt(width * height / Math.max(count, 1));
+		size = Math.max(size, Math.max(width, height) / 4096.);
+		cellSize = size;
+		columns = Math.max(1, Math.min((int)Math.ceil(width / size), 4096));
+		rows = Math.max(1, Math.min((int)Math.ceil(height / size), 4096));
+		
+		// count the nodes of every cell, then fill them in
+		cellStart = new int[columns * rows + 1];
+		int[] cells = new int[table.size()];
+		for(int id = 0, i = 0; id < table.size(); ++id) {
+			if(table.get(id) != null) {
+				all[i++] = id;
+				cells[id] = getRow(ys[id]) * columns + getColumn(xs[id]);
+				++cellStart[cells[id] + 1];
+			}
+		}
+		for(int c = 0; c < columns * rows; ++c) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellNodes = new int[count];
+		int[] fill = new int[columns * rows];
+		for(int id : all) {
+			int c = cells[id];
+			cellNodes[cellStart[c] + fill[c]++] = id;
+		}
+	}
+	
+	private int getColumn(double x) {
+		int c = (int)Math.floor((x - minX) / cellSize);
+		return c < 0 ? 0 : c >= columns ? columns - 1 : c;
+	}
+	
+	private int getRow(double y) {
+		int r = (int)Math.floor((y - minY) / cellSize);
+		return r < 0 ? 0 : r >= rows ? rows - 1 : r;
+	}
+	
+	/**
+	 * Lists the ids of the nodes that may lie within the given box: every
+	 * one that does, along with some that are merely close to it.
+	 * 
+	 * @return  The ids, in no particular order.
+	 */
+	public int[] getNodesWithin(double boxMinX, double boxMinY,
+	                            double boxMaxX, double boxMaxY) {
+		double pad = Rounding.EQUALITY_DIFFERENCE;
+		int from = getColumn(boxMinX - pad), to = getColumn(boxMaxX + pad);
+		int[] found = new int[16];
+		int size = 0;
+		for(int row = getRow(boxMinY - pad); row <= getRow(boxMaxY + pad);
+		    ++row) {
+			int start = cellStart[row * columns + from];
+			int end = cellStart[row * columns + to + 1];
+			if(size + end - start > found.length) {
+				found = Arrays.copyOf(found, Math.max(found.length * 2,
+				                                      size + end - start));
+			}
+			System.arraycopy(cellNodes, start, found, size, end - start);
+			size += end - start;
+		}
+		return Arrays.copyOf(found, size);
+	}
+	
+	/**
+	 * Lists the ids of the nodes that may be on the other end of a segment
+	 * from the given node passing through the given box. Every such node is
+	 * listed, along with some that are merely close to the wedge.
+	 * 
+	 * @param  id  The id of the node the segments start from.
+	 * @return  The ids, in no particular order.
+	 */
+	public int[] getNodesThrough(int id, double boxMinX, double boxMinY,
+	                             double boxMaxX, double boxMaxY) {
+		double ax = xs[id], ay = ys[id];
+		double pad = Rounding.EQUALITY_DIFFERENCE;
+		boxMinX -= pad; boxMinY -= pad;
+		boxMaxX += pad; boxMaxY += pad;
+		if(ax >= boxMinX && ax <= boxMaxX && ay >= boxMinY && ay <= boxMaxY) {
+			return all; // every direction passes through the box
+		}
+		
+		// the sides of the wedge run through the outermost corners of the
+		// box, as seen from the node, which spans less than half a turn
+		double[] cx = {boxMinX, boxMaxX, boxMaxX, boxMinX};
+		double[] cy = {boxMinY, boxMinY, boxMaxY, boxMaxY};
+		double rx = cx[0] - ax, ry = cy[0] - ay; // the right side
+		double lx = rx, ly = ry; // the left side
+		for(int i = 1; i < 4; ++i) {
+			double dx = cx[i] - ax, dy = cy[i] - ay;
+			if(rx * dy - ry * dx < 0.) {
+				rx = dx; ry = dy;
+			}
+			if(lx * dy - ly * dx > 0.) {
+				lx = dx; ly = dy;
+			}
+		}
+		double r = Math.hypot(rx, ry), l = Math.hypot(lx, ly);
+		rx /= r; ry /= r; lx /= l; ly /= l;
+		double mx = rx + lx, my = ry + ly, m = Math.hypot(mx, my);
+		mx /= m; my /= m;
+		
+		// the wedge, cut off far enough away to cover the whole grid
+		double[] wx = {ax, ax + reach * rx, ax + reach * mx, ax + reach * lx};
+		double[] wy = {ay, ay + reach * ry, ay + reach * my, ay + reach * ly};
+		double low = Math.min(Math.min(wy[0], wy[1]), Math.min(wy[2], wy[3]));
+		double high = Math.max(Math.max(wy[0], wy[1]),
+		                       Math.max(wy[2], wy[3]));
+		
+		int[] found = new int[16];
+		int size = 0;
+		for(int row = getRow(low); row <= getRow(high); ++row) {
+			double y0 = minY + row * cellSize, y1 = y0 + cellSize;
+			double left = Double.POSITIVE_INFINITY;
+			double right = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < 4; ++i) {
+				int k = (i + 1) % 4;
+				if(wy[i] >= y0 && wy[i] <= y1) {
+					left = Math.min(left, wx[i]);
+					right = Math.max(right, wx[i]);
+				}
+				for(int j = 0; j < 2; ++j) {
+					double y = j == 0 ? y0 : y1;
+					if(wy[i] < y != wy[k] < y) { // the side crosses y
+						double x = wx[i] + (y - wy[i]) / (wy[k] - wy[i]) *
+						                   (wx[k] - wx[i]);
+						left = Math.min(left, x);
+						right = Math.max(right, x);
+					}
+				}
+			}
+			if(left > right) {
+				continue; // the wedge misses the row
+			}
+			// a cell more on either side, against rounding errors
+			int from = Math.max(getColumn(left) - 1, 0);
+			int to = Math.min(getColumn(right) + 1, columns - 1);
+			int start = cellStart[row * columns + from];
+			int end = cellStart[row * columns + to + 1];
+			if(size + end - start > found.length) {
+				found = Arrays.copyOf(found, Math.max(found.length * 2,
+				                                      size + end - start));
+			}
+			System.arraycopy(cellNodes, start, found, size, end - start);
+			size += end - start;
+		}
+		return Arrays.copyOf(found, size);
+	}
+}
@@ -0,0 +1,207 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+/**
+ * An indexed binary min-heap of search entries. Every entry remembers its own
+ * position within the heap, which allows the priority of an entry already in
+ * the heap to be lowered (or raised) in <code>O(log n)</code> time, without
+ * having to search for it first.<p/>
+ * 
+ * Entries are ordered by their <code>priority</code>, and ties are broken by
+ * their <code>tieBreak</code> value, lowest first.
+ */
+class NodeHeap<E extends NodeHeap.Entry> {
+	private Entry[] heap;
+	private int size = 0;
+	
+	/**
+	 * A single element of the heap. Subclasses are free to attach any
+	 * additional search information they require.
+	 */
+	static class Entry {
+		private final Node node;
+		double priority;
+		double tieBreak;
+		int index = -1; // position in the heap, -1 when not queued
+		
+		public Entry(Node node) {
+			this.node = node;
+		}
+		
+		public Node getNode() {
+			return node;
+		}
+		
+		public double getPriority() {
+			return priority;
+		}
+		
+		public double getTieBreak() {
+			return tieBreak;
+		}
+		
+		/**
+		 * @return  <code>true</code> if this entry is currently queued in a
+		 *          heap.
+		 */
+		public boolean isQueued() {
+			return index >= 0;
+		}
+	}
+	
+	public NodeHeap() {
+		this(16);
+	}
+	
+	public NodeHeap(int initialCapacity) {
+		heap = new Entry[Math.max(initialCapacity, 2)];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Adds the entry with the given priority, or, if it is already queued,
+	 * moves it to reflect its new priority.
+	 */
+	public void add(E e, double priority) {
+		add(e, priority, 0.);
+	}
+	
+	public void add(E e, double priority, double tieBreak) {
+		if(e.isQueued()) {
+			update(e, priority, tieBreak);
+			return;
+		}
+		if(size == heap.length) {
+			Entry[] n = new Entry[heap.length * 2];
+			System.arraycopy(heap, 0, n, 0, size);
+			heap = n;
+		}
+		e.priority = priority;
+		e.tieBreak = tieBreak;
+		e.index = size;
+		heap[size++] = e;
+		siftUp(e.index);
+	}
+	
+	/**
+	 * Changes the priority of an entry that is already queued. This is the
+	 * "decrease-key" operation, but increasing the key is also supported.
+	 */
+	public void update(E e, double priority, double tieBreak) {
+		assert e.isQueued();
+		boolean decreased = priority < e.priority ||
+		                    priority == e.priority && tieBreak < e.tieBreak;
+		e.priority = priority;
+		e.tieBreak = tieBreak;
+		if(decreased) {
+			siftUp(e.index);
+		} else {
+			siftDown(e.index);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		return size == 0 ? null : (E)heap[0];
+	}
+	
+	/**
+	 * Gives the entry at the given position of the heap, which is in no
+	 * particular order, for looking at every queued entry.
+	 * 
+	 * @param  index  The position, from <code>0</code> to <code>size() - 1
+	 *                </code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if(index >= size) {
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		}
+		return (E)heap[index];
+	}
+	
+	/**
+	 * Removes and returns the entry with the lowest priority, or
+	 * <code>null</code> if the heap is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		if(size == 0) { return null; }
+		Entry top = heap[0];
+		removeAt(0);
+		return (E)top;
+	}
+	
+	/**
+	 * Removes the given entry from the heap, if it is queued.
+	 */
+	public boolean remove(E e) {
+		if(!e.isQueued()) { return false; }
+		removeAt(e.index);
+		return true;
+	}
+	
+	public void clear() {
+		for(int i = 0; i < size; ++i) {
+			heap[i].index = -1;
+			heap[i] = null;
+		}
+		size = 0;
+	}
+	
+	private void removeAt(int i) {
+		Entry removed = heap[i];
+		Entry last = heap[--size];
+		heap[size] = null;
+		removed.index = -1;
+		if(i < size) {
+			heap[i] = last;
+			last.index = i;
+			siftDown(i);
+			siftUp(last.index);
+		}
+	}
+	
+	private static boolean isLess(Entry a, Entry b) {
+		return a.priority < b.priority ||
+		       a.priority == b.priority && a.tieBreak < b.tieBreak;
+	}
+	
+	private void siftUp(int i) {
+		Entry e = heap[i];
+		while(i > 0) {
+			int parent = (i - 1) >>> 1;
+			if(!isLess(e, heap[parent])) { break; }
+			heap[i] = heap[parent];
+			heap[i].index = i;
+			i = parent;
+		}
+		heap[i] = e;
+		e.index = i;
+	}
+	
+	private void siftDown(int i) {
+		Entry e = heap[i];
+		int half = size >>> 1;
+		while(i < half) {
+			int child = 2 * i + 1;
+			if(child + 1 < size && isLess(heap[child + 1], heap[child])) {
+				++child;
+			}
+			if(!isLess(heap[child], e)) { break; }
+			heap[i] = heap[child];
+			heap[i].index = i;
+			i = child;
+		}
+		heap[i] = e;
+		e.index = i;
+	}
+}
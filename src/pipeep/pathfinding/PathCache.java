@@ -0,0 +1,382 @@
+package pipeep.pathfinding;
+
+import pipeep.arithmetic.Rounding;
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the results of shortest path queries on a board, so
+ * that repeated queries do not run the search again. Results are keyed by
+ * their endpoints, snapped to a grid, and the least recently used ones are
+ * dropped once the cache is full. Any change to the board clears the cache.
+ * <p/>
+ * 
+ * Queries whose endpoints snap to the same cells share a result, the path
+ * then ending at the goal asked about, as long as its first and last legs
+ * are still clear. With the default grid, as fine as
+ * <code>Rounding.EQUALITY_DIFFERENCE</code>, only endpoints that are equal
+ * to within rounding errors do. Coarser grids trade exactness for more hits,
+ * and as the shared path may be much longer than the shortest one between
+ * other endpoints, those hits are approximate, giving no bound either.<p/>
+ * 
+ * Optionally, a query missing the cache may also reuse a cached path whose
+ * endpoints are close by, and visible from its own: the path then goes
+ * straight to the start of the cached path, along it, and straight on from
+ * its end. Such paths are not the shortest ones, so their results give no
+ * bound on how much longer they may be, and they are not cached.<p/>
+ * 
+ * A cache serves a single board, and is safe to query from any number of
+ * threads.
+ * 
+ * @see  Board#setPathCache
+ */
+public class PathCache implements BoardListener {
+	private final int capacity;
+	private final double resolution;
+	private double reuseDistance = 0.;
+	private final LinkedHashMap<Key, Entry> entries;
+	private long generation = 0; // bumped whenever the cache is cleared
+	private long hits = 0;
+	private long approximateHits = 0;
+	private long misses = 0;
+	private long invalidations = 0;
+	
+	/**
+	 * Creates a cache snapping endpoints to a grid as fine as
+	 * <code>Rounding.EQUALITY_DIFFERENCE</code>.
+	 * 
+	 * @param  capacity  The largest number of results kept.
+	 */
+	public PathCache(int capacity) {
+		this(capacity, Rounding.EQUALITY_DIFFERENCE);
+	}
+	
+	/**
+	 * @param  capacity    The largest number of results kept.
+	 * @param  resolution  The size of the cells of the grid endpoints are
+	 *                     snapped to.
+	 */
+	public PathCache(final int capacity, double resolution) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity < 1");
+		}
+		if(!(resolution > 0.)) {
+			throw new IllegalArgumentException("resolution <= 0");
+		}
+		this.capacity = capacity;
+		this.resolution = resolution;
+		entries = new LinkedHashMap<Key, Entry>(16, .75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> e) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	public double getResolution() {
+		return resolution;
+	}
+	
+	/**
+	 * Lets queries missing the cache reuse a cached path, if both of its
+	 * endpoints are within the given distance of theirs, and visible from
+	 * them.
+	 * 
+	 * @param  reuseDistance  How far the endpoints of a reused path may be,
+	 *                        or <code>0</code> to never reuse paths, which is
+	 *                        the default.
+	 */
+	public synchronized void setReuseDistance(double reuseDistance) {
+		if(!(reuseDistance >= 0.)) {
+			throw new IllegalArgumentException("reuseDistance < 0");
+		}
+		this.reuseDistance = reuseDistance;
+	}
+	
+	public synchronized double getReuseDistance() {
+		return reuseDistance;
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Drops every cached result, as is done whenever the board changes.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		++generation;
+		++invalidations;
+	}
+	
+	// Statistics
+	
+	/**
+	 * @return  The number of queries answered from a result cached for the
+	 *          same endpoints.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return  The number of queries answered by reusing the path of other
+	 *          endpoints close by, or snapping to the same cells.
+	 */
+	public synchronized long getApproximateHits() {
+		return approximateHits;
+	}
+	
+	/**
+	 * @return  The number of queries that had to be searched.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return  The number of times the cache was cleared.
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+	
+	/**
+	 * @return  The share of queries answered without searching, counting
+	 *          approximate hits, or <code>0</code> if there were no queries.
+	 */
+	public synchronized double getHitRate() {
+		long answered = hits + approximateHits;
+		long total = answered + misses;
+		return total == 0 ? 0. : (double)answered / total;
+	}
+	
+	/**
+	 * Sets every statistic back to zero, leaving the cached results alone.
+	 */
+	public synchronized void resetStatistics() {
+		hits = approximateHits = misses = invalidations = 0;
+	}
+	
+	// Board listener
+	
+	public void polygonAdded(Board board, Polygon p) {
+		clear();
+	}
+	
+	public void polygonRemoved(Board board, Polygon p) {
+		clear();
+	}
+	
+	public void boardChanged(Board board) {
+		clear();
+	}
+	
+	// Lookups, used by the board
+	
+	/**
+	 * Gives the cached result of a query, or one reusing the path of other
+	 * endpoints, if allowed.
+	 * 
+	 * @return  The result, or <code>null</code> if the query has to be
+	 *          searched, in which case the miss is counted.
+	 */
+	PathResult get(Board board, PathQuery query) {
+		Node a = query.getStart(), b = query.getEnd();
+		Entry exact;
+		List<Entry> candidates = null;
+		synchronized(this) {
+			exact = entries.get(new Key(a, b, resolution));
+			if(exact != null && exact.isFor(a, b)) {
+				++hits;
+				return new PathResult(query, exact.getPath(b), exact.bound);
+			}
+			if(reuseDistance > 0.) {
+				candidates = getCandidates(a, b);
+			}
+		}
+		
+		// visibility is tested outside the lock, as it may take a while
+		if(exact != null) {
+			List<Node> path = exact.getPath(b);
+			if(isValid(board, a, path)) {
+				synchronized(this) {
+					++approximateHits;
+				}
+				return new PathResult(query, path, Double.POSITIVE_INFINITY);
+			}
+		}
+		if(candidates == null) {
+			synchronized(this) {
+				++misses;
+			}
+			return null;
+		}
+		for(Entry e : candidates) {
+			if(board.isVisible(a, e.start) && board.isVisible(e.end, b)) {
+				LinkedList<Node> path = new LinkedList<Node>(e.path);
+				if(!a.equals(e.start)) {
+					path.addFirst(e.start);
+				}
+				if(!b.equals(e.end)) {
+					path.addLast(b);
+				}
+				synchronized(this) {
+					entries.get(e.key); // keeps it from being dropped
+					++approximateHits;
+				}
+				return new PathResult(query, path, Double.POSITIVE_INFINITY);
+			}
+		}
+		synchronized(this) {
+			++misses;
+		}
+		return null;
+	}
+	
+	/**
+	 * Tests if a path cached for endpoints snapping to the same cells as the
+	 * given ones is still clear once it starts and ends at them, which may
+	 * not be the case on a coarse grid. Only the first and last legs changed.
+	 */
+	private static boolean isValid(Board board, Node a, List<Node> path) {
+		if(path == null) {
+			return false; // these endpoints may well be reachable
+		}
+		Node goal = path.get(path.size() - 1);
+		Node last = path.size() == 1 ? a : path.get(path.size() - 2);
+		return board.isVisible(a, path.get(0)) && board.isVisible(last, goal);
+	}
+	
+	/**
+	 * Lists the cached paths with endpoints close enough to be reused, the
+	 * closest ones first.
+	 */
+	private List<Entry> getCandidates(final Node a, final Node b) {
+		List<Entry> candidates = new ArrayList<Entry>();
+		for(Entry e : entries.values()) {
+			if(e.path != null && a.getDistance(e.start) <= reuseDistance &&
+			   b.getDistance(e.end) <= reuseDistance) {
+				candidates.add(e);
+			}
+		}
+		Collections.sort(candidates, new Comparator<Entry>() {
+			public int compare(Entry e, Entry f) {
+				return Double.compare(
+					a.getDistance(e.start) + b.getDistance(e.end),
+					a.getDistance(f.start) + b.getDistance(f.end)
+				);
+			}
+		});
+		return candidates;
+	}
+	
+	/**
+	 * Gives a value to hand back to <code>put</code>, so that a result
+	 * searched for while the board changed is not cached.
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Caches the result of a search.
+	 * 
+	 * @param  path        The path found, or <code>null</code> if there is
+	 *                     none. It is copied.
+	 * @param  bound       How many times longer than the shortest path the
+	 *                     path may be, at most.
+	 * @param  generation  The generation of the cache when the search began.
+	 */
+	synchronized void put(PathQuery query, List<Node> path, double bound,
+	                      long generation) {
+		if(generation != this.generation) {
+			return; // the board changed meanwhile
+		}
+		Key key = new Key(query.getStart(), query.getEnd(), resolution);
+		entries.put(key, new Entry(key, query.getStart(), query.getEnd(),
+		                           path, bound));
+	}
+	
+	/**
+	 * The endpoints of a query, snapped to the grid.
+	 */
+	private static final class Key {
+		private final long ax, ay, bx, by;
+		
+		Key(Node a, Node b, double resolution) {
+			ax = Math.round(a.getX() / resolution);
+			ay = Math.round(a.getY() / resolution);
+			bx = Math.round(b.getX() / resolution);
+			by = Math.round(b.getY() / resolution);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key)o;
+			return ax == k.ax && ay == k.ay && bx == k.bx && by == k.by;
+		}
+		
+		@Override
+		public int hashCode() {
+			long h = ((ax * 31 + ay) * 31 + bx) * 31 + by;
+			return (int)(h ^ h >>> 32);
+		}
+	}
+	
+	/**
+	 * A cached result, along with the endpoints it was searched for.
+	 */
+	private static final class Entry {
+		final Key key;
+		final Node start;
+		final Node end;
+		final List<Node> path; // null if there is no path
+		final double bound;
+		
+		Entry(Key key, Node start, Node end, List<Node> path, double bound) {
+			this.key = key;
+			this.start = start;
+			this.end = end;
+			this.path = path == null ? null : new ArrayList<Node>(path);
+			this.bound = bound;
+		}
+		
+		/**
+		 * Tells if this was searched for exactly the given endpoints.
+		 */
+		boolean isFor(Node a, Node b) {
+			return a.equals(start) && b.equals(end);
+		}
+		
+		/**
+		 * Gives a copy of the path, ending at the given goal, which snaps to
+		 * the same cell as the one it was searched for.
+		 */
+		List<Node> getPath(Node goal) {
+			if(path == null) {
+				return null;
+			}
+			LinkedList<Node> copy = new LinkedList<Node>(path);
+			copy.removeLast();
+			copy.addLast(goal);
+			return copy;
+		}
+	}
+}
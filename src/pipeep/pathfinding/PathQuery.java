@@ -0,0 +1,34 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+/**
+ * A single shortest path query, from a starting node to an ending node, as
+ * handed to <code>Board.getShortestPaths</code>. It is immutable.
+ * 
+ * @see  Board#getShortestPaths
+ */
+public class PathQuery {
+	private final Node start;
+	private final Node end;
+	
+	public PathQuery(Node start, Node end) {
+		if(start == null || end == null) {
+			throw new NullPointerException("start and end may not be null");
+		}
+		this.start = start;
+		this.end = end;
+	}
+	
+	public Node getStart() {
+		return start;
+	}
+	
+	public Node getEnd() {
+		return end;
+	}
+	
+	public String toString() {
+		return start + " -> " + end;
+	}
+}
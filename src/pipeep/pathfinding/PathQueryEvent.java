@@ -0,0 +1,39 @@
+package pipeep.pathfinding;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder event of a single <code>getShortestPath</code>
+ * query, emitted by boards with metrics enabled.
+ * 
+ * @see  BoardMetrics
+ */
+@Name("pipeep.PathQuery")
+@Label("Path Query")
+@Category("Pathfinding")
+@Description("A shortest path query on a board")
+final class PathQueryEvent extends jdk.jfr.Event {
+	@Label("Start X")
+	double startX;
+	
+	@Label("Start Y")
+	double startY;
+	
+	@Label("End X")
+	double endX;
+	
+	@Label("End Y")
+	double endY;
+	
+	@Label("Search Engine")
+	String engine;
+	
+	@Label("Found")
+	boolean found;
+	
+	@Label("Path Nodes")
+	int pathNodes;
+}
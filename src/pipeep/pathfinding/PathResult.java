@@ -0,0 +1,131 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.List;
+
+/**
+ * The outcome of a <code>PathQuery</code>. Along with the path itself, it
+ * tells whether a path was found, or why not. It is immutable.
+ * 
+ * @see  Board#getShortestPaths
+ */
+public class PathResult {
+	/**
+	 * What came out of a query.
+	 */
+	public static enum Status {
+		/** A path was found. */
+		FOUND,
+		/** The search completed, but there is no possible path. */
+		UNREACHABLE,
+		/** The search threw an exception, given by <code>getError</code>. */
+		FAILED,
+		/**
+		 * The search gave up as the deadline passed, or as it expanded as
+		 * many nodes as it was allowed to.
+		 */
+		TIMED_OUT,
+		/** The search was cancelled, or its thread was interrupted. */
+		CANCELLED
+	}
+	
+	private final PathQuery query;
+	private final Status status;
+	private final List<Node> path;
+	private final Throwable error;
+	private final double bound;
+	
+	/**
+	 * Creates the result of a completed search.
+	 * 
+	 * @param  path  The path found, or <code>null</code> if there is none.
+	 */
+	public PathResult(PathQuery query, List<Node> path) {
+		this(query, path, 1.);
+	}
+	
+	/**
+	 * Creates the result of a completed search that may not have found the
+	 * shortest path.
+	 * 
+	 * @param  path   The path found, or <code>null</code> if there is none.
+	 * @param  bound  How many times longer than the shortest path the path
+	 *                may be, at most.
+	 */
+	public PathResult(PathQuery query, List<Node> path, double bound) {
+		this(query, path == null ? Status.UNREACHABLE : Status.FOUND, path,
+		     null, bound);
+	}
+	
+	/**
+	 * Creates the result of a search that did not find a path.
+	 * 
+	 * @param  status  Why not, anything but <code>FOUND</code> or
+	 *                 <code>FAILED</code>.
+	 * @see    QueryOptions
+	 */
+	public PathResult(PathQuery query, Status status) {
+		this(query, status, null, null, 1.);
+		if(status == Status.FOUND || status == Status.FAILED) {
+			throw new IllegalArgumentException(status + " needs a " +
+				(status == Status.FOUND ? "path" : "error"));
+		}
+	}
+	
+	/**
+	 * Creates the result of a search that threw an exception.
+	 */
+	public PathResult(PathQuery query, Throwable error) {
+		this(query, Status.FAILED, null, error, 1.);
+	}
+	
+	private PathResult(PathQuery query, Status status, List<Node> path,
+	                   Throwable error, double bound) {
+		this.query = query;
+		this.status = status;
+		this.path = path;
+		this.error = error;
+		this.bound = bound;
+	}
+	
+	public PathQuery getQuery() {
+		return query;
+	}
+	
+	public Status getStatus() {
+		return status;
+	}
+	
+	/**
+	 * @return  The path found, in the format given by
+	 *          <code>Board.getShortestPath</code>, or <code>null</code> if
+	 *          the status is not <code>FOUND</code>.
+	 */
+	public List<Node> getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return  What the search threw if the status is <code>FAILED</code>,
+	 *          <code>null</code> otherwise.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	/**
+	 * @return  How many times longer than the shortest path the path may be,
+	 *          at most, as reported by the search that found it:
+	 *          <code>1</code> if it is known to be the shortest path, which
+	 *          is the case unless the search says otherwise.
+	 */
+	public double getBound() {
+		return bound;
+	}
+	
+	public String toString() {
+		return query + ": " + status + (path == null ? "" : " " + path) +
+		       (bound == 1. ? "" : " (bound " + bound + ")");
+	}
+}
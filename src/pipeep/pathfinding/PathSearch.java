@@ -0,0 +1,29 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.List;
+
+/**
+ * A search strategy used by a <code>Board</code> to answer shortest path
+ * queries. Implementations must not keep any per-query state between calls,
+ * so a single instance can be shared by any number of boards.
+ * 
+ * @see  Board#setSearchEngine
+ */
+public interface PathSearch {
+	/**
+	 * Finds a path across the given board from node <code>a</code> to node
+	 * <code>b</code>, following the same contract as
+	 * <code>Board.getShortestPath</code>.
+	 * 
+	 * @param   board  The board to search across.
+	 * @param   a      The starting node to travel from.
+	 * @param   b      The ending node to travel to.
+	 * @return  A <code>List</code> of <code>Node</code>s to travel through,
+	 *          not including <code>a</code> but including <code>b</code>.
+	 *          <code>null</code> if there is no possible path.
+	 * @see     Board#getShortestPath
+	 */
+	public List<Node> getShortestPath(Board board, Node a, Node b);
+}
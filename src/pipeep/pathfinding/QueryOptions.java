@@ -0,0 +1,127 @@
+package pipeep.pathfinding;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on how long a shortest path query may run for: a deadline, a cap on
+ * the number of nodes expanded, and cooperative cancellation, either through
+ * <code>cancel</code> or by interrupting the searching thread. A query that
+ * runs into one of them gives up, and says why in its result, rather than
+ * searching the whole graph.<p/>
+ * 
+ * The limits are meant to be set up before the query is started, from one
+ * thread. <code>cancel</code> may then be called from any other thread. As
+ * the deadline is absolute, the same options may be handed to every query
+ * made on behalf of a single request, to bound all of them at once.
+ * 
+ * @see  Board#getShortestPath
+ * @see  LimitedPathSearch
+ */
+public class QueryOptions {
+	private boolean hasDeadline = false;
+	private long deadline = 0L;
+	private int maxExpansions = Integer.MAX_VALUE;
+	private boolean interruptible = true;
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * Sets the time after which queries give up.
+	 * 
+	 * @param  deadline  The deadline, as a value of
+	 *                   <code>System.nanoTime()</code>.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+		hasDeadline = true;
+	}
+	
+	/**
+	 * Sets the deadline to the given time from now.
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		setDeadline(System.nanoTime() + unit.toNanos(timeout));
+	}
+	
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+	
+	/**
+	 * @return  The deadline, as a value of <code>System.nanoTime()</code>.
+	 *          Meaningless unless <code>hasDeadline</code>.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+	
+	/**
+	 * Sets the largest number of nodes a single query may expand before it
+	 * gives up, which bounds its running time however slow the clock is to
+	 * read.
+	 */
+	public void setMaxExpansions(int maxExpansions) {
+		if(maxExpansions < 0) {
+			throw new IllegalArgumentException("maxExpansions < 0");
+		}
+		this.maxExpansions = maxExpansions;
+	}
+	
+	public int getMaxExpansions() {
+		return maxExpansions;
+	}
+	
+	/**
+	 * Sets whether queries give up when the searching thread is interrupted.
+	 * They do by default. The interrupted status of the thread is left set,
+	 * for the caller to handle.
+	 */
+	public void setInterruptible(boolean interruptible) {
+		this.interruptible = interruptible;
+	}
+	
+	public boolean isInterruptible() {
+		return interruptible;
+	}
+	
+	/**
+	 * Makes every query using these options give up as soon as it next
+	 * checks them, including the ones already running. It cannot be undone.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Tests if a query should give up, to be called by searches before every
+	 * node they expand.
+	 * 
+	 * @param   expanded  The number of nodes expanded by the query so far.
+	 * @return  <code>CANCELLED</code> or <code>TIMED_OUT</code> if the query
+	 *          should give up, <code>null</code> if it may go on.
+	 */
+	PathResult.Status check(int expanded) {
+		if(expanded >= maxExpansions) {
+			return PathResult.Status.TIMED_OUT;
+		}
+		return check();
+	}
+	
+	/**
+	 * Tests if a query should give up, or not start at all, regardless of
+	 * how many nodes it has expanded.
+	 */
+	PathResult.Status check() {
+		if(cancelled ||
+		   interruptible && Thread.currentThread().isInterrupted()) {
+			return PathResult.Status.CANCELLED;
+		}
+		if(hasDeadline && System.nanoTime() - deadline >= 0) {
+			return PathResult.Status.TIMED_OUT;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,205 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The reduced visibility graph of a board, as used when
+ * <code>Board.isReducedGraph()</code> is set. A shortest path among polygons
+ * only ever bends at convex vertices, wrapping around them, so it never
+ * passes through a reflex (concave) vertex, and every one of its edges is
+ * tangent to the polygons at both of its ends. Leaving out every other node
+ * and edge gives a much smaller graph, which still holds an optimal path.<p/>
+ * 
+ * A node is a turning point unless it is a reflex vertex of at least one of
+ * the polygons using it, as those polygons alone already take up more than
+ * half of the space around it. An edge is tangent at a node if, for every
+ * polygon using that node, both of the node's neighbours on the polygon lie
+ * on the same side of the edge's line, or on it. Nearly colinear cases are
+ * always kept, so rounding errors can only make the graph bigger, never
+ * drop an edge of an optimal path.<p/>
+ * 
+ * Where polygons touch, paths may run along the seam between them, and
+ * bend around corners of either polygon that the other one forces them
+ * to. So every node of a polygon touching another one, sharing a node with
+ * it or having a node on or within it, is always kept as a turning point,
+ * with every edge from it.<p/>
+ * 
+ * This is addressed by node id, and must be rebuilt whenever the board
+ * changes. Once built, it is only ever read from, so it may be used from any
+ * number of threads at once.
+ */
+class ReducedGraph {
+	// how close to colinear, relatively, two directions have to be to be
+	// treated as exactly colinear
+	private static final double EPSILON = 1e-9;
+	
+	private final double[] xs, ys;
+	private final boolean[] turning;
+	// nodes of polygons touching others, kept with every edge
+	private final boolean[] touching;
+	// the wedges of node id are wedgeStart[id] until wedgeStart[id + 1], each
+	// being the directions to its previous and next neighbours on a polygon,
+	// along with their squared lengths
+	private final int[] wedgeStart;
+	private final double[] wedges;
+	
+	public ReducedGraph(Board board) {
+		int count = board.getNodeCount();
+		xs = new double[count];
+		ys = new double[count];
+		turning = new boolean[count];
+		touching = new boolean[count];
+		wedgeStart = new int[count + 1];
+		
+		int total = 0;
+		for(int id = 0; id < count; ++id) {
+			Node n = board.getNode(id);
+			if(n != null) {
+				for(Polygon p : board.getOwners(n)) {
+					total += getOccurrences(p, n);
+				}
+			}
+		}
+		wedges = new double[total * 6];
+		
+		int w = 0;
+		for(int id = 0; id < count; ++id) {
+			wedgeStart[id] = w / 6;
+			Node n = board.getNode(id);
+			if(n == null) {
+				continue;
+			}
+			xs[id] = n.getX();
+			ys[id] = n.getY();
+			turning[id] = true;
+			for(Polygon p : board.getOwners(n)) {
+				Node[] nodes = p.getNodes();
+				for(int i = 0; i < nodes.length; ++i) {
+					if(!nodes[i].equals(n)) {
+						continue;
+					}
+					Node prev = nodes[(i + nodes.length - 1) % nodes.length];
+					Node next = nodes[(i + 1) % nodes.length];
+					double px = prev.getX() - xs[id], py = prev.getY() - ys[id];
+					double nx = next.getX() - xs[id], ny = next.getY() - ys[id];
+					// turning right on a counter-clockwise polygon, or left on
+					// a clockwise one, means the polygon is on the outside
+					double turn = px * ny - py * nx;
+					if(!p.isCCW()) {
+						turn = -turn;
+					}
+					if(turn > EPSILON * Math.hypot(px, py) *
+					          Math.hypot(nx, ny)) {
+						turning[id] = false;
+					}
+					wedges[w++] = px;
+					wedges[w++] = py;
+					wedges[w++] = px * px + py * py;
+					wedges[w++] = nx;
+					wedges[w++] = ny;
+					wedges[w++] = nx * nx + ny * ny;
+				}
+			}
+		}
+		wedgeStart[count] = w / 6;
+		findTouching(board);
+	}
+	
+	/**
+	 * Marks the nodes of every polygon sharing a node with another one, or
+	 * with a node on or within another one, or another one's node on or
+	 * within it.
+	 */
+	private void findTouching(Board board) {
+		List<Node> table = new ArrayList<Node>(xs.length);
+		for(int id = 0; id < xs.length; ++id) {
+			table.add(board.getNode(id));
+		}
+		Set<Polygon> touchingPolygons = new HashSet<Polygon>();
+		for(Node n : table) {
+			if(n != null && board.getOwners(n).size() > 1) {
+				touchingPolygons.addAll(board.getOwners(n));
+			}
+		}
+		NodeGrid grid = new NodeGrid(table);
+		for(Polygon p : board.getPolygons()) {
+			for(int id : grid.getNodesWithin(p.getMinX(), p.getMinY(),
+			                                 p.getMaxX(), p.getMaxY())) {
+				Node n = table.get(id);
+				List<Polygon> owners = board.getOwners(n);
+				if(!owners.contains(p) && p.containsNodeInArea(n)) {
+					touchingPolygons.add(p);
+					touchingPolygons.addAll(owners);
+				}
+			}
+		}
+		for(Polygon p : touchingPolygons) {
+			for(Node n : p.getNodes()) {
+				touching[board.getNodeId(n)] = true;
+			}
+		}
+	}
+	
+	private static int getOccurrences(Polygon p, Node n) {
+		int occurrences = 0;
+		for(Node m : p.getNodes()) {
+			if(m.equals(n)) {
+				++occurrences;
+			}
+		}
+		return occurrences;
+	}
+	
+	/**
+	 * Tests if a shortest path may bend at the node with the given id, that
+	 * is, if it is not a reflex vertex of any polygon, or if it is a node of
+	 * a polygon touching another one.
+	 */
+	public boolean isTurningPoint(int id) {
+		return turning[id] || touching[id];
+	}
+	
+	/**
+	 * Tests if the line from the node with the given id towards the given
+	 * point is tangent to every polygon using that node, which is taken to
+	 * be the case for the nodes of a polygon touching another one.
+	 */
+	public boolean isTangent(int id, double x, double y) {
+		if(touching[id]) {
+			return true;
+		}
+		double dx = x - xs[id], dy = y - ys[id];
+		double length = dx * dx + dy * dy;
+		for(int w = wedgeStart[id] * 6; w < wedgeStart[id + 1] * 6; w += 6) {
+			int prev = getSide(dx, dy, length, wedges[w], wedges[w + 1],
+			                   wedges[w + 2]);
+			int next = getSide(dx, dy, length, wedges[w + 3], wedges[w + 4],
+			                   wedges[w + 5]);
+			if(prev * next < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gives the side of the line along <code>(dx, dy)</code> that the
+	 * direction <code>(x, y)</code> points to, as <code>1</code>,
+	 * <code>-1</code>, or <code>0</code> if they are nearly colinear. Both
+	 * lengths are given squared.
+	 */
+	private static int getSide(double dx, double dy, double length,
+	                           double x, double y, double wedgeLength) {
+		double cross = dx * y - dy * x;
+		if(cross * cross <= EPSILON * EPSILON * length * wedgeLength) {
+			return 0;
+		}
+		return cross > 0. ? 1 : -1;
+	}
+}
@@ -0,0 +1,156 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The shortest paths from a single source to every node on a board, as given
+ * by <code>Board.getShortestPathTree</code>. It is built by a single run of
+ * Dijkstra's algorithm over the whole visibility graph, after which the
+ * distance to any node on the board is known in constant time, and the path
+ * to it can be extracted in time proportional to its length.<p/>
+ * 
+ * Targets that are not on the board can be asked about as well. They are
+ * attached to the tree through their visibility information, which takes
+ * time linear in the number of nodes on the board, rather than a whole new
+ * search.<p/>
+ * 
+ * A tree is only valid for as long as the board it was built from is not
+ * modified. Asking about nodes that are not on the board uses that board's
+ * caches, so it is only as thread-safe as the board is.
+ */
+public class ShortestPathTree {
+	private final Board board;
+	private final Node source;
+	// indexed by node id, null for ids that are not in use
+	private final AStarSearch.SearchNode[] entries;
+	private final AStarSearch.SearchNode root;
+	
+	ShortestPathTree(Board board, Node source) {
+		this.board = board;
+		this.source = source;
+		int count = board.getNodeCount();
+		entries = new AStarSearch.SearchNode[count];
+		for(int id = 0; id < count; ++id) {
+			Node n = board.getNode(id);
+			if(n != null) {
+				entries[id] = new AStarSearch.SearchNode(n, id);
+			}
+		}
+		int sourceId = board.getNodeId(source);
+		root = sourceId >= 0 ? entries[sourceId]
+		                     : new AStarSearch.SearchNode(source, count);
+		search();
+	}
+	
+	/**
+	 * Dijkstra's algorithm, expanding every node reachable from the source.
+	 */
+	private void search() {
+		NodeHeap<AStarSearch.SearchNode> frontier =
+			new NodeHeap<AStarSearch.SearchNode>(entries.length + 1);
+		root.cost = 0.;
+		frontier.add(root, 0.);
+		while(!frontier.isEmpty()) {
+			AStarSearch.SearchNode current = frontier.poll();
+			current.closed = true;
+			for(AStarSearch.SearchNode next : entries) {
+				if(next == null || next.closed) {
+					continue;
+				}
+				boolean visible = current.id < entries.length
+				                  ? board.isVisible(current.id, next.id)
+				                  : board.isVisible(source, next.getNode());
+				if(!visible) {
+					continue;
+				}
+				double cost = current.cost +
+				              current.getNode().getDistance(next.getNode());
+				if(cost < next.cost) {
+					next.cost = cost;
+					next.parent = current;
+					frontier.add(next, cost);
+				}
+			}
+		}
+	}
+	
+	public Node getSource() {
+		return source;
+	}
+	
+	public Board getBoard() {
+		return board;
+	}
+	
+	/**
+	 * Gives the length of the shortest path from the source to the target.
+	 * This takes constant time for nodes on the board.
+	 * 
+	 * @return  The length of the path, or <code>Double.POSITIVE_INFINITY</code>
+	 *          if there is no possible path.
+	 */
+	public double getDistance(Node target) {
+		AStarSearch.SearchNode last = getLastEntry(target);
+		if(last == null) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return last.cost + last.getNode().getDistance(target);
+	}
+	
+	/**
+	 * Gives the shortest path from the source to the target, in the same
+	 * format as <code>Board.getShortestPath</code>.
+	 * 
+	 * @return  The nodes to travel through, not including the source but
+	 *          including the target, or <code>null</code> if there is no
+	 *          possible path.
+	 * @see     Board#getShortestPath
+	 */
+	public List<Node> getPath(Node target) {
+		AStarSearch.SearchNode last = getLastEntry(target);
+		if(last == null) {
+			return null;
+		}
+		List<Node> path = last == root ? new LinkedList<Node>()
+		                               : AStarSearch.getPath(last);
+		if(path.isEmpty() || !last.getNode().equals(target)) {
+			path.add(target);
+		}
+		return path;
+	}
+	
+	/**
+	 * Finds the node of the tree that the target hangs off: the target itself
+	 * if it is on the board, or else the node it is visible from that makes
+	 * for the shortest path.
+	 * 
+	 * @return  The entry of that node, or <code>null</code> if the target is
+	 *          unreachable.
+	 */
+	private AStarSearch.SearchNode getLastEntry(Node target) {
+		int id = board.getNodeId(target);
+		if(id >= 0) {
+			AStarSearch.SearchNode e = entries[id];
+			return e.parent != null || e == root ? e : null;
+		}
+		if(board.isVisible(source, target)) {
+			return root;
+		}
+		AStarSearch.SearchNode best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for(AStarSearch.SearchNode e : entries) {
+			if(e == null || e.cost == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			double cost = e.cost + e.getNode().getDistance(target);
+			if(cost < bestCost && board.isVisible(e.getNode(), target)) {
+				best = e;
+				bestCost = cost;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,165 @@
+package pipeep.pathfinding;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A dense, symmetric matrix of visibility information between the nodes of a
+ * board, addressed by integer node ids. Only the lower triangle of the matrix
+ * is stored, using two bits per pair of nodes, so a board with
+ * <code>n</code> nodes takes up roughly <code>n * n / 4</code> bytes, rather
+ * than a boxed map entry per pair.<p/>
+ * 
+ * Every pair is in one of three states: <code>UNKNOWN</code>,
+ * <code>VISIBLE</code> or <code>BLOCKED</code>. Pairs may be read and written
+ * concurrently from any number of threads without locking.<p/>
+ * 
+ * A matrix may also be read straight from a buffer, such as a file mapped by
+ * <code>BoardFile</code>, in which case it is read-only.
+ */
+class VisibilityMatrix {
+	public static final int UNKNOWN = 0;
+	public static final int VISIBLE = 1;
+	public static final int BLOCKED = 2;
+	
+	private static final int STATE_MASK = 3;
+	
+	private final int size;
+	private final AtomicLongArray bits;
+	private final LongBuffer words; // instead of bits, when read-only
+	
+	/**
+	 * Creates a matrix where the visibility of every pair is unknown.
+	 * 
+	 * @param  size  The number of nodes, ids are in <code>[0, size)</code>.
+	 */
+	public VisibilityMatrix(int size) {
+		this.size = size;
+		bits = new AtomicLongArray(getWordCount(size));
+		words = null;
+	}
+	
+	/**
+	 * Creates a read-only matrix, reading from the given buffer, which holds
+	 * the words given by <code>getWord</code>, in order. The buffer is not
+	 * copied, and must not be modified.
+	 */
+	public VisibilityMatrix(LongBuffer words, int size) {
+		if(words.remaining() < getWordCount(size)) {
+			throw new IllegalArgumentException("buffer too small");
+		}
+		this.size = size;
+		this.bits = null;
+		this.words = words.slice();
+	}
+	
+	/**
+	 * Creates a matrix for more nodes, holding the same information as the
+	 * given one for the ids they have in common. As only the lower triangle
+	 * is stored, row by row, this is a plain copy.
+	 */
+	public VisibilityMatrix(VisibilityMatrix m, int size) {
+		this(Math.max(size, m.size));
+		for(int i = 0; i < getWordCount(m.size); ++i) {
+			bits.set(i, m.getWord(i));
+		}
+	}
+	
+	/**
+	 * @return  The number of words needed to hold the given number of nodes,
+	 *          32 pairs of two bits fitting in every one of them.
+	 */
+	public static int getWordCount(int size) {
+		long pairs = (long)size * (size - 1) / 2;
+		return (int)((pairs + 31) >>> 5);
+	}
+	
+	/**
+	 * Gives a word of the matrix, as stored. The first
+	 * <code>getWordCount(n)</code> words hold everything about the first
+	 * <code>n</code> nodes, whatever the size of the matrix.
+	 */
+	public long getWord(int index) {
+		return bits != null ? bits.get(index) : words.get(index);
+	}
+	
+	/**
+	 * @return  <code>true</code> if this matrix reads from a buffer, and may
+	 *          not be modified.
+	 */
+	public boolean isReadOnly() {
+		return bits == null;
+	}
+	
+	/**
+	 * @return  The number of nodes this matrix holds information about.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gives the state of the pair of nodes <code>a</code> and <code>b</code>.
+	 * The order of the two ids does not matter. A node is always considered
+	 * visible from itself.
+	 */
+	public int get(int a, int b) {
+		if(a == b) { return VISIBLE; }
+		long pair = getPairIndex(a, b);
+		long word = getWord((int)(pair >>> 5));
+		return (int)(word >>> getShift(pair)) & STATE_MASK;
+	}
+	
+	/**
+	 * Records the state of the pair of nodes <code>a</code> and
+	 * <code>b</code>, which is then also known for <code>b</code> and
+	 * <code>a</code>.
+	 * 
+	 * @throws UnsupportedOperationException  If this matrix is read-only.
+	 */
+	public void set(int a, int b, int state) {
+		if(a == b) { return; }
+		if(bits == null) {
+			throw new UnsupportedOperationException("read-only matrix");
+		}
+		long pair = getPairIndex(a, b);
+		int index = (int)(pair >>> 5);
+		int shift = getShift(pair);
+		long mask = (long)STATE_MASK << shift;
+		long value = (long)state << shift;
+		long old;
+		do {
+			old = bits.get(index);
+		} while(!bits.compareAndSet(index, old, (old & ~mask) | value));
+	}
+	
+	/**
+	 * Forgets everything known about the given node, marking every pair it is
+	 * part of as <code>UNKNOWN</code>.
+	 */
+	public void clear(int a) {
+		for(int b = 0; b < size; ++b) {
+			set(a, b, UNKNOWN);
+		}
+	}
+	
+	/**
+	 * Convenience wrapper around <code>set</code> for the result of a
+	 * visibility test.
+	 */
+	public void setVisible(int a, int b, boolean visible) {
+		set(a, b, visible ? VISIBLE : BLOCKED);
+	}
+	
+	/**
+	 * Index of the pair in the lower triangle, laid out row by row.
+	 */
+	private static long getPairIndex(int a, int b) {
+		if(a < b) { int t = a; a = b; b = t; }
+		return (long)a * (a - 1) / 2 + b;
+	}
+	
+	private static int getShift(long pair) {
+		return (int)(pair & 31) << 1;
+	}
+}
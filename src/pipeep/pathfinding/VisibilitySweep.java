@@ -0,0 +1,448 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Line;
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds rows of the owned navigation mesh of a board with a rotational
+ * plane sweep (Lee's algorithm), rather than testing every pair of nodes
+ * against the edge index. A row takes <code>O(n log n)</code> time for
+ * sorting the nodes and keeping the edges crossed by the ray in a balanced
+ * tree, plus <code>O(e)</code> for going over the <code>e</code> edges, plus
+ * whatever the pairs it cannot tell for sure cost.<p/>
+ * 
+ * For every node, the other nodes are sorted by angle around it, and a ray
+ * is swept around through them, keeping the edges it currently crosses
+ * sorted by their distance along the ray. A node is then visible exactly if
+ * the nearest of these edges is further away than it is.
+ * This ordering only holds if no two edges of the board cross each other, so
+ * boards with overlapping polygons cannot be swept, see
+ * <code>canSweep</code>.<p/>
+ * 
+ * The results are always the same as those of
+ * <code>Board.visibilityTest</code>. Whenever the sweep cannot tell for sure
+ * (several nodes in a line, edges grazing the segment, two nodes of the
+ * same polygon, which may see through its area, or a node seeing into the
+ * area of its own polygon, towards a polygon nested within it), it simply
+ * asks <code>visibilityTest</code>. Once built, a sweep may be used to compute
+ * different rows from any number of threads at once.
+ */
+class VisibilitySweep {
+	// how close to colinear, relatively, nodes have to be to be treated as
+	// lying on the same ray, and how close an edge has to be to a node to be
+	// treated as touching it
+	private static final double EPSILON = 1e-9;
+	
+	private final Board board;
+	private final int count;
+	private final double[] xs, ys;
+	private final Node[] nodes;
+	// the indexes of the polygons using every node
+	private final int[][] owners;
+	private final Polygon[] polygons; // by index
+	// edge e goes from node id edgeNodes[2 * e] to node id edgeNodes[2 * e + 1]
+	private final int[] edgeNodes;
+	private final int edgeCount;
+	
+	public VisibilitySweep(Board board) {
+		this.board = board;
+		count = board.getNodeCount();
+		xs = new double[count];
+		ys = new double[count];
+		nodes = new Node[count];
+		owners = new int[count][];
+		Map<Polygon, Integer> indexes =
+			new HashMap<Polygon, Integer>(board.size() * 2);
+		for(int id = 0; id < count; ++id) {
+			nodes[id] = board.getNode(id);
+			if(nodes[id] != null) {
+				xs[id] = nodes[id].getX();
+				ys[id] = nodes[id].getY();
+				List<Polygon> l = board.getOwners(nodes[id]);
+				owners[id] = new int[l.size()];
+				for(int i = 0; i < l.size(); ++i) {
+					Integer index = indexes.get(l.get(i));
+					if(index == null) {
+						index = indexes.size();
+						indexes.put(l.get(i), index);
+					}
+					owners[id][i] = index;
+				}
+			}
+		}
+		polygons = new Polygon[indexes.size()];
+		for(Map.Entry<Polygon, Integer> e : indexes.entrySet()) {
+			polygons[e.getValue()] = e.getKey();
+		}
+		Set<Line> lines = board.getLines();
+		edgeCount = lines.size();
+		edgeNodes = new int[edgeCount * 2];
+		int i = 0;
+		for(Line l : lines) {
+			edgeNodes[i++] = board.getNodeId(l.getNodeA());
+			edgeNodes[i++] = board.getNodeId(l.getNodeB());
+		}
+	}
+	
+	/**
+	 * Tests if the edges of a board can be swept, that is, if none of them
+	 * cross each other.
+	 */
+	public static boolean canSweep(Board board, EdgeGrid edgeIndex) {
+		for(Line l : board.getLines()) {
+			if(edgeIndex.doesIntersectLine(l)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Computes the visibility between the given node and every node with a
+	 * greater id, writing it to the given matrix.
+	 * 
+	 * @return  <code>false</code> if the row could not be swept, because the
+	 *          node lies on an edge, in which case nothing was written.
+	 */
+	public boolean computeRow(final int p, VisibilityMatrix mesh) {
+		final double px = xs[p], py = ys[p];
+		
+		// sort the other nodes by angle around p, then by distance
+		double[] angles = new double[count];
+		int[] order = sortByAngle(p, angles);
+		int m = order.length;
+		if(m == 0) {
+			return true;
+		}
+		
+		// group the nodes lying on the same ray
+		int[] group = new int[count];
+		int[] groupStart = new int[m + 1];
+		int groups = 0;
+		for(int i = 0; i < m; ++i) {
+			if(i == 0 || !isSameRay(p, order[i - 1], order[i])) {
+				groupStart[groups++] = i;
+			}
+			group[order[i]] = groups - 1;
+		}
+		groupStart[groups] = m;
+		if(groups > 1 &&
+		   isSameRay(p, order[m - 1], order[0])) { // around the cut at zero
+			return false;
+		}
+		double[] groupAngles = new double[groups];
+		for(int g = 0; g < groups; ++g) {
+			groupAngles[g] = angles[order[groupStart[g]]];
+		}
+		
+		// list the edges starting and ending at every group, as the ray turns
+		// counter-clockwise, in linked lists
+		int[] startHead = new int[groups], endHead = new int[groups];
+		Arrays.fill(startHead, -1);
+		Arrays.fill(endHead, -1);
+		int[] nextStart = new int[edgeCount], nextEnd = new int[edgeCount];
+		ActiveEdges active = new ActiveEdges(p);
+		active.setAngle(getBisector(groupAngles, groups - 1));
+		for(int e = 0; e < edgeCount; ++e) {
+			int c = edgeNodes[2 * e], d = edgeNodes[2 * e + 1];
+			if(c == p || d == p) {
+				continue; // never blocks anything seen from p
+			}
+			double cross = (xs[c] - px) * (ys[d] - py) -
+			               (ys[c] - py) * (xs[d] - px);
+			if(isColinear(p, c, d) && (xs[c] - px) * (xs[d] - px) +
+			                          (ys[c] - py) * (ys[d] - py) <= 0.) {
+				return false; // p lies on the edge
+			}
+			if(group[c] == group[d]) {
+				continue; // pointing straight at p, parallel to every ray
+			}
+			int start = cross > 0. ? c : d, end = cross > 0. ? d : c;
+			nextStart[e] = startHead[group[start]];
+			startHead[group[start]] = e;
+			nextEnd[e] = endHead[group[end]];
+			endHead[group[end]] = e;
+			if(group[start] > group[end]) { // crosses the starting ray
+				active.add(e);
+			}
+		}
+		
+		for(int g = 0; g < groups; ++g) {
+			active.setAngle(getBisector(groupAngles, g == 0 ? groups - 1
+			                                                : g - 1));
+			for(int e = endHead[g]; e >= 0; e = nextEnd[e]) {
+				active.remove(e);
+			}
+			
+			boolean colinear = groupStart[g + 1] - groupStart[g] > 1;
+			for(int i = groupStart[g]; i < groupStart[g + 1]; ++i) {
+				int w = order[i];
+				if(w > p && mesh.get(p, w) == VisibilityMatrix.UNKNOWN) {
+					boolean visible = colinear || haveCommonOwner(p, w)
+						? board.visibilityTest(nodes[p], nodes[w])
+						: isVisible(p, w, active.getNearest());
+					if(visible && isWithinOwner(p, w)) {
+						visible = board.visibilityTest(nodes[p], nodes[w]);
+					}
+					mesh.setVisible(p, w, visible);
+				}
+			}
+			
+			active.setAngle(getBisector(groupAngles, g));
+			for(int e = startHead[g]; e >= 0; e = nextStart[e]) {
+				active.add(e);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gives the nodes other than <code>p</code>, sorted by their angle around
+	 * it, and then by their distance from it. The angles are written to the
+	 * given array, by node id.
+	 */
+	private int[] sortByAngle(int p, double[] angles) {
+		// sort on the angles rounded to floats, packed along with the node
+		// ids, and then fix up the order of nodes with the same rounded angle
+		long[] packed = new long[count];
+		int m = 0;
+		for(int id = 0; id < count; ++id) {
+			if(nodes[id] != null && id != p) {
+				angles[id] = getPseudoAngle(xs[id] - xs[p], ys[id] - ys[p]);
+				int bits = Float.floatToIntBits((float)angles[id]);
+				packed[m++] = (long)bits << 32 | id;
+			}
+		}
+		Arrays.sort(packed, 0, m);
+		int[] order = new int[m];
+		for(int i = 0; i < m; ++i) {
+			int id = (int)packed[i];
+			int k = i;
+			for(; k > 0 && isBefore(p, angles, id, order[k - 1]); --k) {
+				order[k] = order[k - 1];
+			}
+			order[k] = id;
+		}
+		return order;
+	}
+	
+	private boolean isBefore(int p, double[] angles, int a, int b) {
+		if(angles[a] != angles[b]) {
+			return angles[a] < angles[b];
+		}
+		return getSquaredDistance(p, a) < getSquaredDistance(p, b);
+	}
+	
+	/**
+	 * Gives a number in <code>[0, 4)</code> that increases with the angle of
+	 * the given direction, like <code>atan2</code> does, but that is cheaper
+	 * to compute. It is the distance travelled counter-clockwise around the
+	 * diamond <code>|x| + |y| = 1</code>, from <code>(1, 0)</code>.
+	 */
+	private static double getPseudoAngle(double dx, double dy) {
+		double q = dy / (Math.abs(dx) + Math.abs(dy));
+		return dx < 0. ? 2. - q : dy < 0. ? 4. + q : q;
+	}
+	
+	/**
+	 * Gives the pseudo-angle halfway between the given group and the next one,
+	 * wrapping around after the last one.
+	 */
+	private static double getBisector(double[] groupAngles, int g) {
+		int groups = groupAngles.length;
+		if(g < groups - 1) {
+			return (groupAngles[g] + groupAngles[g + 1]) / 2.;
+		}
+		double bisector = (groupAngles[g] + groupAngles[0] + 4.) / 2.;
+		return bisector >= 4. ? bisector - 4. : bisector;
+	}
+	
+	/**
+	 * Decides whether <code>w</code> is visible from <code>p</code>, given
+	 * the nearest edge crossing the ray from <code>p</code> through
+	 * <code>w</code>, or <code>-1</code> if there is none.
+	 */
+	private boolean isVisible(int p, int w, int nearest) {
+		if(nearest < 0) {
+			return true;
+		}
+		int c = edgeNodes[2 * nearest], d = edgeNodes[2 * nearest + 1];
+		double t = getRayDistance(nearest, xs[p], ys[p],
+		                          xs[w] - xs[p], ys[w] - ys[p]);
+		if(t > 1. + EPSILON) {
+			return true;
+		}
+		if(t < 1. - EPSILON) {
+			int a = p, b = w;
+			if(!Board.isInCanonicalOrder(nodes[a], nodes[b])) {
+				a = w; b = p;
+			}
+			if(Line.doesIntersect(xs[c], ys[c], xs[d], ys[d],
+			                      xs[a], ys[a], xs[b], ys[b], false)) {
+				return false;
+			}
+		}
+		// too close to call
+		return board.visibilityTest(nodes[p], nodes[w]);
+	}
+	
+	/**
+	 * Gives how far along the ray from <code>(px, py)</code> in direction
+	 * <code>(rx, ry)</code> the given edge is, in lengths of the direction.
+	 */
+	private double getRayDistance(int e, double px, double py,
+	                              double rx, double ry) {
+		int c = edgeNodes[2 * e], d = edgeNodes[2 * e + 1];
+		double ex = xs[d] - xs[c], ey = ys[d] - ys[c];
+		return ((xs[c] - px) * ey - (ys[c] - py) * ex) / (rx * ey - ry * ex);
+	}
+	
+	private double getSquaredDistance(int a, int b) {
+		double dx = xs[b] - xs[a], dy = ys[b] - ys[a];
+		return dx * dx + dy * dy;
+	}
+	
+	private boolean isColinear(int p, int a, int b) {
+		double ax = xs[a] - xs[p], ay = ys[a] - ys[p];
+		double bx = xs[b] - xs[p], by = ys[b] - ys[p];
+		double cross = ax * by - ay * bx;
+		return cross * cross <= EPSILON * EPSILON * (ax * ax + ay * ay) *
+		                                            (bx * bx + by * by);
+	}
+	
+	/**
+	 * Tests if two nodes lie on the same ray out of <code>p</code>.
+	 */
+	private boolean isSameRay(int p, int a, int b) {
+		return isColinear(p, a, b) && (xs[a] - xs[p]) * (xs[b] - xs[p]) +
+		                              (ys[a] - ys[p]) * (ys[b] - ys[p]) > 0.;
+	}
+	
+	/**
+	 * Tests if the midpoint between two nodes lies in the area of a polygon
+	 * using either of them, or on its boundary. A segment crossing no edge
+	 * then runs through that area, unless it only grazes it.
+	 */
+	private boolean isWithinOwner(int a, int b) {
+		Node midpoint = new Node((xs[a] + xs[b]) / 2., (ys[a] + ys[b]) / 2.);
+		for(int i : owners[a]) {
+			if(polygons[i].containsNodeInArea(midpoint)) {
+				return true;
+			}
+		}
+		for(int i : owners[b]) {
+			if(polygons[i].containsNodeInArea(midpoint)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean haveCommonOwner(int a, int b) {
+		for(int i : owners[a]) {
+			for(int k : owners[b]) {
+				if(i == k) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The edges crossed by the ray, ordered by their distance along it from
+	 * the center of the sweep, in a balanced tree. Edges at the same distance
+	 * are ordered by index. As no two edges cross, the order of the edges
+	 * already in the tree never changes as the ray turns, so it stays valid
+	 * even though the distances it is sorted on do.
+	 */
+	private class ActiveEdges implements Comparator<Integer> {
+		// for every edge, packed together: the cross product of the vector
+		// from the center to its first node with the edge, and the edge, both
+		// turned so that they are positive wherever the edge is crossed
+		private final double[] edgeData = new double[edgeCount * 3];
+		private double rx, ry;
+		private final TreeSet<Integer> edges = new TreeSet<Integer>(this);
+		
+		public ActiveEdges(int p) {
+			for(int e = 0; e < edgeCount; ++e) {
+				int c = edgeNodes[2 * e], d = edgeNodes[2 * e + 1];
+				double ex = xs[d] - xs[c], ey = ys[d] - ys[c];
+				double cross = (xs[c] - xs[p]) * ey - (ys[c] - ys[p]) * ex;
+				double sign = cross < 0. ? -1. : 1.;
+				edgeData[3 * e] = sign * cross;
+				edgeData[3 * e + 1] = sign * ex;
+				edgeData[3 * e + 2] = sign * ey;
+			}
+		}
+		
+		/**
+		 * Points the ray in the direction of the given pseudo-angle.
+		 */
+		public void setAngle(double q) {
+			// walk back from the pseudo-angle to a point on the diamond
+			if(q < 1.) {
+				rx = 1. - q; ry = q;
+			} else if(q < 2.) {
+				rx = 1. - q; ry = 2. - q;
+			} else if(q < 3.) {
+				rx = q - 3.; ry = 2. - q;
+			} else {
+				rx = q - 3.; ry = q - 4.;
+			}
+		}
+		
+		/**
+		 * @return  The nearest edge, or <code>-1</code> if there are none.
+		 */
+		public int getNearest() {
+			return edges.isEmpty() ? -1 : edges.first();
+		}
+		
+		public void add(int e) {
+			edges.add(e);
+		}
+		
+		public void remove(int e) {
+			if(!edges.remove(e)) { // only if rounding got in the way
+				for(Iterator<Integer> i = edges.iterator(); i.hasNext();) {
+					if(i.next() == e) {
+						i.remove();
+						break;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * The distance of the edge along the current ray is its cross product
+		 * divided by this.
+		 */
+		private double getDenominator(int e) {
+			return rx * edgeData[3 * e + 2] - ry * edgeData[3 * e + 1];
+		}
+		
+		/**
+		 * Compares two edges by their distance along the current ray, as
+		 * fractions, without dividing.
+		 */
+		public int compare(Integer a, Integer b) {
+			double u = edgeData[3 * a] * getDenominator(b);
+			double v = edgeData[3 * b] * getDenominator(a);
+			if(u != v) {
+				return u < v ? -1 : 1;
+			}
+			return a.compareTo(b);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package pipeep.pathfinding;
+
+/**
+ * A bounded-suboptimal variant of <code>AStarSearch</code>, for when a path
+ * found quickly matters more than the shortest one. The heuristic is
+ * multiplied by a weight <code>epsilon</code>, which makes the search head
+ * much more greedily towards the goal, and expand far fewer nodes on boards
+ * where the straight line is blocked. The path found is never more than
+ * <code>epsilon</code> times longer than the shortest one, which is the
+ * bound its result reports, and is usually much closer to it than that.<p/>
+ * 
+ * With an <code>epsilon</code> of <code>1</code>, this is exactly
+ * <code>AStarSearch</code>. For the best path that can be found within a
+ * time budget, see <code>AnytimeSearch</code>.
+ * 
+ * @see  Board#setSearchEngine
+ */
+public class WeightedAStarSearch extends AStarSearch {
+	private final double epsilon;
+	
+	/**
+	 * @param  epsilon  The suboptimality bound, at least <code>1</code>.
+	 */
+	public WeightedAStarSearch(double epsilon) {
+		super(epsilon);
+		this.epsilon = epsilon;
+	}
+	
+	/**
+	 * @return  How many times longer than the shortest path the paths found
+	 *          may be, at most.
+	 */
+	public double getEpsilon() {
+		return epsilon;
+	}
+}
@@ -99,4 +99,18 @@ public class LineTest {
 		Line p = new Line(l.getNodeA().add(offsetA), l.getNodeB().add(offsetB));
 		assert !l.doesIntersect(p);
 	}
+	
+	@Test(groups={"intersection"}, dataProvider="singleLine",
+	      dataProviderClass=LineProvider.class)
+	public void sharedVertexIntersectionTest(Line l) {
+		// an equal node, rather than the same one, still counts as shared
+		Node a = new Node(l.getNodeA().getX(), l.getNodeA().getY());
+		Line p = new Line(a, l.getNodeB().add(new Node(1., -1.)));
+		assert !l.doesIntersect(p, false);
+		assert l.doesIntersect(p, true) == Line.doesIntersect(
+			l.getNodeA().getX(), l.getNodeA().getY(),
+			l.getNodeB().getX(), l.getNodeB().getY(),
+			a.getX(), a.getY(), p.getNodeB().getX(), p.getNodeB().getY(), true
+		);
+	}
 }
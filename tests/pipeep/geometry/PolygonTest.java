@@ -0,0 +1,87 @@
+package pipeep.geometry;
+
+import pipeep.arithmetic.Rounding;
+import pipeep.geometry.data.NodeProvider;
+
+import org.testng.annotations.*;
+
+public class PolygonTest {
+	private static Polygon getSquare(Node center) {
+		double x = center.getX(), y = center.getY();
+		return new Polygon(new Node(x - 1., y - 1.), new Node(x + 1., y - 1.),
+		                   new Node(x + 1., y + 1.), new Node(x - 1., y + 1.));
+	}
+	
+	@Test(groups={"bounds"}, dataProvider="singleNode",
+	      dataProviderClass=NodeProvider.class)
+	public void boundsTest(Node center) {
+		Polygon p = getSquare(center);
+		assert p.isInBounds(center);
+		assert !p.isInBounds(center.add(new Node(2., 0.)));
+		assert p.getMaxX() - p.getMinX() == 2. &&
+		       p.getMaxY() - p.getMinY() == 2.;
+	}
+	
+	@Test(groups={"bounds"}, dataProvider="singleNode",
+	      dataProviderClass=NodeProvider.class)
+	public void convexHullTest(Node center) {
+		// a square with a notch cut into its top
+		Polygon p = new Polygon(center.add(new Node(-1., -1.)),
+		                        center.add(new Node(1., -1.)),
+		                        center.add(new Node(1., 1.)),
+		                        center.add(new Node(0., 0.)),
+		                        center.add(new Node(-1., 1.)));
+		Node[] hull = p.getConvexHull();
+		assert hull.length == 4;
+		for(Node n : hull) {
+			assert n != p.getNodes()[3];
+		}
+		// crosses the notch, but not the polygon
+		Line notch = new Line(center.add(new Node(-.5, .8)),
+		                      center.add(new Node(.5, .8)));
+		assert p.mayIntersectLine(notch) && !p.doesIntersectLine(notch);
+	}
+	
+	@Test(groups={"intersection"}, dataProvider="singleNode",
+	      dataProviderClass=NodeProvider.class)
+	public void lineIntersectionTest(Node center) {
+		Polygon p = getSquare(center);
+		Line through = new Line(center.add(new Node(-2., .5)),
+		                        center.add(new Node(2., .5)));
+		Line far = new Line(center.add(new Node(-2., 3.)),
+		                    center.add(new Node(2., 3.)));
+		Line diagonal = new Line(p.getNodes()[0], p.getNodes()[2]);
+		Line edge = new Line(p.getNodes()[0], p.getNodes()[1]);
+		assert p.doesIntersectLine(through);
+		assert !p.mayIntersectLine(far) && !p.doesIntersectLine(far);
+		assert p.doesIntersectLine(diagonal);
+		assert !p.doesIntersectLine(edge);
+	}
+	
+	@Test(groups={"triangulation"}, dataProvider="singleNode",
+	      dataProviderClass=NodeProvider.class)
+	public void triangulationTest(Node center) {
+		// a square with a notch cut into its top, along with a colinear node
+		Node[] nodes = {center.add(new Node(-1., -1.)),
+		                center.add(new Node(0., -1.)),
+		                center.add(new Node(1., -1.)),
+		                center.add(new Node(1., 1.)),
+		                center.add(new Node(0., 0.)),
+		                center.add(new Node(-1., 1.))};
+		Node[] reversed = new Node[nodes.length];
+		for(int i = 0; i < nodes.length; ++i) {
+			reversed[i] = nodes[nodes.length - i - 1];
+		}
+		for(Polygon p : new Polygon[] {new Polygon(nodes),
+		                               new Polygon(reversed)}) {
+			Triangle[] triangles = p.getTriangles();
+			assert triangles.length == nodes.length - 2;
+			double area = 0.;
+			for(Triangle t : triangles) {
+				assert t.isCCW() && t.getArea() > 0.;
+				area += t.getArea();
+			}
+			assert Rounding.isEqual(area, 3.);
+		}
+	}
+}
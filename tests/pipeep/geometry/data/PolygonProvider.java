@@ -1,8 +1,10 @@
 package pipeep.geometry.data;
 
+import pipeep.geometry.Line;
 import pipeep.geometry.Node;
 import pipeep.geometry.Polygon;
 import pipeep.geometry.data.NodeProvider;
+import pipeep.data.RandomNumber;
 
 import org.testng.annotations.*;
 
@@ -15,6 +17,34 @@ public class PolygonProvider {
 		}
 		
 		// sort them
-		
+		if(!Line.isCCW(nList[0].getX(), nList[0].getY(),
+		               nList[1].getX(), nList[1].getY(),
+		               nList[2].getX(), nList[2].getY())) {
+			Node swap = nList[1];
+			nList[1] = nList[2];
+			nList[2] = swap;
+		}
+		return new Polygon(nList);
+	}
+	
+	/**
+	 * Gives a large, counter-clockwise, star-shaped polygon, its vertexes
+	 * being evenly spread out around the center, each at a random distance
+	 * from it, so that about half of them are reflex.
+	 * 
+	 * @param  center    The center of the star.
+	 * @param  radius    The greatest distance of a vertex from the center.
+	 * @param  vertexes  The number of vertexes, at least 3.
+	 */
+	public static Polygon getConcavePolygon(Node center, double radius,
+	                                        int vertexes) {
+		Node[] nodes = new Node[vertexes];
+		for(int i = 0; i < vertexes; ++i) {
+			double angle = 2. * Math.PI * i / vertexes;
+			double r = radius * (.3 + .7 * RandomNumber.rand.nextDouble());
+			nodes[i] = new Node(center.getX() + r * Math.cos(angle),
+			                    center.getY() + r * Math.sin(angle));
+		}
+		return new Polygon(nodes);
 	}
 }
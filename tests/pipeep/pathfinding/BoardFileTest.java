@@ -0,0 +1,57 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class BoardFileTest {
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void roundTripTest(Board b) throws Exception {
+		b.getNodes();
+		b.remove(b.iterator().next()); // leave some unused node ids
+		File file = File.createTempFile("board", ".pfbd");
+		try {
+			BoardFile.write(b, file);
+			FrozenBoard f = BoardFile.read(file);
+			assert f.getPolygons().size() == b.getPolygons().size();
+			assert f.getNodes().equals(b.getNodes());
+			assert f.getNavigationMesh().isReadOnly();
+			for(Node n : b.getNodes()) {
+				for(Node m : b.getNodes()) {
+					assert f.isVisible(n, m) == b.isVisible(n, m);
+				}
+			}
+			for(int i = 0; i < 8; ++i) {
+				Node start = NodeProvider.getRandomNode();
+				Node end = NodeProvider.getRandomNode();
+				List<Node> expected = b.getShortestPath(start, end);
+				List<Node> path = f.getShortestPath(start, end);
+				assert expected == null ? path == null : expected.equals(path);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test(groups={"visibility"}, expectedExceptions=IOException.class)
+	public void badMagicTest() throws Exception {
+		File file = File.createTempFile("board", ".pfbd");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] {'n', 'o', 'p', 'e', 0, 0, 0, 1});
+			out.close();
+			BoardFile.read(file);
+		} finally {
+			file.delete();
+		}
+	}
+}
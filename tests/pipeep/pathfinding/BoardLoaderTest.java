@@ -0,0 +1,82 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BoardLoaderTest {
+	@Test(groups={"loading"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void roundTripTest(Board b) throws Exception {
+		StringBuilder s = new StringBuilder("# exported\n\n");
+		boolean wkt = false;
+		for(Polygon p : b) {
+			Node[] nodes = p.getNodes();
+			s.append(wkt ? "POLYGON ((" : "");
+			for(int i = 0; i <= nodes.length; ++i) { // closed rings
+				Node n = nodes[i % nodes.length];
+				s.append(i == 0 ? "" : ",").append(n.getX());
+				s.append(wkt ? " " : ",").append(n.getY());
+			}
+			s.append(wkt ? "))\n" : "\n");
+			wkt = !wkt;
+		}
+		
+		final long[] progress = new long[2];
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			BoardLoader loader = new BoardLoader(executor, 2);
+			loader.setBatchSize(3);
+			loader.setProgressListener(new BoardLoader.ProgressListener() {
+				public void progress(long lines, int polygons) {
+					assert lines > progress[0] && polygons >= progress[1];
+					progress[0] = lines;
+					progress[1] = polygons;
+				}
+			});
+			Board loaded = new Board();
+			int added = loader.load(new StringReader(s.toString()), loaded);
+			assert added == b.size() && loaded.size() == b.size();
+			assert progress[0] == b.size() + 2 && progress[1] == added;
+			assert loaded.getNodes().equals(b.getNodes());
+			for(Node n : b.getNodes()) {
+				for(Node m : b.getNodes()) {
+					assert loaded.isVisible(n, m) == b.isVisible(n, m);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test(groups={"loading"})
+	public void multiPolygonTest() {
+		assert BoardLoader.parseLine("  # 1,2,3,4,5,6").isEmpty();
+		assert BoardLoader.parseLine("polygon empty").isEmpty();
+		assert BoardLoader.parseLine(
+			"MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 6)))"
+		).size() == 2;
+		assert BoardLoader.parseLine("0, 0, 1, 0, 1, 1").get(0)
+		                  .getNodes().length == 3;
+	}
+	
+	@Test(groups={"loading"}, expectedExceptions=IOException.class)
+	public void holeTest() throws Exception {
+		new BoardLoader().load(new StringReader(
+			"POLYGON ((0 0, 9 0, 9 9, 0 9), (1 1, 2 1, 2 2))"
+		), new Board());
+	}
+	
+	@Test(groups={"loading"}, expectedExceptions=IOException.class)
+	public void malformedTest() throws Exception {
+		new BoardLoader().load(new StringReader("0,0,1,0,1,1\n0,0,1,x,1,1"),
+		                       new Board());
+	}
+}
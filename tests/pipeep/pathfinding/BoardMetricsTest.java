@@ -0,0 +1,47 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+public class BoardMetricsTest {
+	@Test(groups={"metrics"}, dataProvider="doubleNodes",
+	      dataProviderClass=NodeProvider.class)
+	public void recordingTest(Node a, Node b) {
+		Board board = BoardProvider.getScatteredBoard(20);
+		BoardMetrics metrics = new BoardMetrics();
+		board.setMetrics(metrics);
+		board.getShortestPath(a, b);
+		board.getShortestPath(a, b);
+		
+		BoardMetrics.Snapshot s = metrics.getSnapshot();
+		assert s.getSearches() == 2;
+		assert s.getUnownedRows() == 2; // one per endpoint
+		assert s.getVisibilityTests() == s.getMeshMisses();
+		assert s.getMeshHits() > 0; // the second search is all cached
+		assert s.getExpansions().getCount() <= 2;
+		assert s.getLatency(BoardMetrics.Phase.VISIBILITY).getCount() ==
+		       s.getVisibilityTests();
+		assert s.getLatency(BoardMetrics.Phase.CACHE_BUILD).getCount() > 0;
+		
+		metrics.reset();
+		board.setMetrics(null);
+		board.getShortestPath(b, a);
+		assert metrics.getSnapshot().getSearches() == 0;
+	}
+	
+	@Test(groups={"metrics"})
+	public void histogramTest() {
+		long[] buckets = new long[BoardMetrics.Histogram.BUCKETS];
+		for(long v : new long[] {0, 1, 5, 6, 7, 100}) {
+			++buckets[BoardMetrics.Histogram.getBucket(v)];
+		}
+		BoardMetrics.Histogram h = new BoardMetrics.Histogram(6, 119, buckets);
+		assert h.getPercentile(0.) == 0;
+		assert h.getPercentile(.5) == 7;
+		assert h.getPercentile(1.) == 127;
+		assert h.getMean() == 119. / 6.;
+	}
+}
@@ -0,0 +1,536 @@
+package pipeep.pathfinding;
+
+import pipeep.arithmetic.Rounding;
+import pipeep.geometry.Line;
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BoardTest {
+	private static boolean bruteVisibilityTest(Board b, Node n, Node m) {
+		Line l = new Line(n, m);
+		for(Polygon p : b) {
+			if(p.doesIntersectLine(l)) {
+				return false;
+			}
+			// from a vertex of it into its area
+			List<Node> vertexes = Arrays.asList(p.getNodes());
+			boolean own = false;
+			for(Line e : p.getLines()) {
+				own |= e.equals(l, false);
+			}
+			if(vertexes.contains(n) != vertexes.contains(m) && !own &&
+			   p.containsNodeInArea(l.getMidpoint())) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void visibilityTest(Board b) {
+		Node[] nodes = b.getNodes().toArray(new Node[0]);
+		for(int i = 0; i < nodes.length; ++i) {
+			Node n = nodes[i];
+			Node m = i % 2 == 0 ? nodes[nodes.length - i - 1]
+			                    : NodeProvider.getRandomNode();
+			assert b.isVisible(n, m) == bruteVisibilityTest(b, n, m);
+			assert b.isVisible(m, n) == b.isVisible(n, m);
+		}
+	}
+	
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void incrementalUpdateTest(Board b) throws InterruptedException {
+		b.precomputeVisibilityGraph();
+		List<Polygon> removed = new ArrayList<Polygon>();
+		for(Polygon p : b.toArray(new Polygon[0])) {
+			if(removed.size() < b.size()) {
+				removed.add(p);
+				b.remove(p);
+			}
+		}
+		b.add(removed.get(0));
+		Board fresh = new Board(b.toArray(new Polygon[0]));
+		for(Node n : fresh.getNodes()) {
+			for(Node m : fresh.getNodes()) {
+				assert b.isVisible(n, m) == fresh.isVisible(n, m);
+			}
+		}
+	}
+	
+	/**
+	 * Squares sharing edges and corners, and an L-shape whose edge the
+	 * corners of two of them lie on.
+	 */
+	private static Polygon[] getTouchingPolygons() {
+		return new Polygon[] {
+			BoardProvider.getSquare(new Node(2., 2.), 2.),
+			BoardProvider.getSquare(new Node(6., 2.), 2.),
+			BoardProvider.getSquare(new Node(6., 6.), 2.),
+			BoardProvider.getSquare(new Node(2., 10.), 2.),
+			new Polygon(new Node(8., 0.), new Node(16., 0.),
+			            new Node(16., 4.), new Node(12., 4.),
+			            new Node(12., 12.), new Node(8., 12.))
+		};
+	}
+	
+	@Test(groups={"visibility"})
+	public void touchingUpdateTest() throws InterruptedException {
+		Polygon[] polygons = getTouchingPolygons();
+		Board b = new Board(polygons);
+		b.precomputeVisibilityGraph();
+		for(Polygon p : polygons) {
+			b.remove(p);
+			assertSameVisibility(b);
+			b.add(p);
+			assertSameVisibility(b);
+		}
+	}
+	
+	/**
+	 * Tests that a board sees the same as a new board of the same polygons.
+	 */
+	private static void assertSameVisibility(Board b) {
+		Board fresh = new Board(b.toArray(new Polygon[0]));
+		for(Node n : fresh.getNodes()) {
+			for(Node m : fresh.getNodes()) {
+				assert b.isVisible(n, m) == fresh.isVisible(n, m);
+			}
+		}
+	}
+	
+	/**
+	 * Keeps the polygons of a board that do not overlap any other one kept,
+	 * replacing every other one with a concave polygon in the same bounds.
+	 */
+	private static Board getSeparateBoard(Board b) {
+		Board separate = new Board();
+		for(Polygon p : b) {
+			boolean overlaps = false;
+			for(Polygon q : separate) {
+				overlaps |= p.mayIntersectPolygon(q);
+			}
+			if(!overlaps) {
+				separate.add(separate.size() % 2 == 0 ? p
+				             : BoardProvider.getLShape(p.getCenter(),
+				                                       p.getMaxX() -
+				                                       p.getCenter().getX()));
+			}
+		}
+		return separate;
+	}
+	
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void sweepTest(Board b) throws InterruptedException {
+		// the sweep needs a board where no edges cross
+		Board separate = getSeparateBoard(b);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			separate.precomputeVisibilityGraph(executor, true);
+		} finally {
+			executor.shutdown();
+		}
+		Board fresh = new Board(separate.toArray(new Polygon[0]));
+		for(Node n : fresh.getNodes()) {
+			for(Node m : fresh.getNodes()) {
+				assert separate.isVisible(n, m) == fresh.isVisible(n, m);
+			}
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleNode",
+	      dataProviderClass=NodeProvider.class)
+	public void aroundSquareTest(Node center) {
+		Board b = new Board(BoardProvider.getSquare(center, 1.));
+		Node start = center.add(new Node(-2., 0.));
+		Node end = center.add(new Node(2., 0.));
+		assert !b.isVisible(start, end);
+		List<Node> path = b.getShortestPath(start, end);
+		// around two corners of the square, then to the end
+		assert path.size() == 3 && path.get(2) == end;
+		assert path.get(0).getDistance(start) < path.get(1).getDistance(start);
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void overlappingTest() {
+		// each square has a corner inside the other one
+		Board b = new Board(
+			new Polygon(new Node(0., 0.), new Node(2., 0.),
+			            new Node(2., 2.), new Node(0., 2.)),
+			new Polygon(new Node(1., 1.), new Node(3., 1.),
+			            new Node(3., 3.), new Node(1., 3.))
+		);
+		assert !b.isVisible(new Node(1., 1.), new Node(2., 2.));
+		assert !b.isVisible(new Node(0., 2.), new Node(1., 1.));
+		assert !b.isVisible(new Node(.5, .5), new Node(2., 2.));
+		Node start = new Node(-1., 2.5);
+		List<Node> path = b.getShortestPath(start, new Node(3.5, -.5));
+		Node previous = start;
+		for(Node n : path) {
+			// no hop may run through the area of either square
+			double x = (previous.getX() + n.getX()) / 2.;
+			double y = (previous.getY() + n.getY()) / 2.;
+			assert !(x > 0. && x < 2. && y > 0. && y < 2.);
+			assert !(x > 1. && x < 3. && y > 1. && y < 3.);
+			previous = n;
+		}
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void insideTest() {
+		Board b = new Board(BoardProvider.getSquare(new Node(0., 0.), 2.));
+		Node a = new Node(-1., -1.), z = new Node(1., 1.);
+		// points inside an obstacle see nothing, not even each other
+		assert !b.isVisible(a, z) && !b.isVisible(z, a);
+		assert !b.isVisible(a, new Node(-2., -2.));
+		assert b.getShortestPath(a, z) == null;
+		assert b.isVisible(new Node(-3., -3.), new Node(3., -3.));
+	}
+	
+	@Test(groups={"visibility"})
+	public void longRowTest() {
+		// far more cells across than the edge index allows
+		List<Polygon> row = new ArrayList<Polygon>();
+		for(int i = 0; i < 3000; ++i) {
+			row.add(BoardProvider.getSquare(new Node(2. * i, 0.), .5));
+		}
+		Board b = new Board(row.toArray(new Polygon[0]));
+		for(int i = 0; i < 3000; i += 499) {
+			assert !b.isVisible(new Node(2. * i, -1.), new Node(2. * i, 1.));
+			assert b.isVisible(new Node(2. * i + 1., -1.),
+			                   new Node(2. * i + 1., 1.));
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void batchTest(Board b) throws InterruptedException {
+		List<PathQuery> queries = new ArrayList<PathQuery>();
+		Node shared = NodeProvider.getRandomNode();
+		for(int i = 0; i < 10; ++i) {
+			queries.add(new PathQuery(shared, NodeProvider.getRandomNode()));
+		}
+		List<PathResult> results = b.getShortestPaths(queries);
+		assert results.size() == queries.size();
+		for(int i = 0; i < queries.size(); ++i) {
+			PathResult r = results.get(i);
+			List<Node> path = b.getShortestPath(shared,
+			                                    queries.get(i).getEnd());
+			assert r.getQuery() == queries.get(i);
+			PathResult.Status expected = path == null
+			                             ? PathResult.Status.UNREACHABLE
+			                             : PathResult.Status.FOUND;
+			assert r.getStatus() == expected;
+			assert path == null || path.equals(r.getPath());
+		}
+		
+		// the snapshot is reused, until the board changes
+		FrozenBoard snapshot = b.getLastSnapshot();
+		b.getShortestPaths(queries);
+		assert b.getLastSnapshot() == snapshot;
+		b.add(BoardProvider.getSquare(shared, 1.));
+		results = b.getShortestPaths(queries);
+		assert b.getLastSnapshot() != snapshot;
+		for(PathResult r : results) {
+			assert r.getStatus() == PathResult.Status.UNREACHABLE;
+		}
+	}
+	
+	private static double getLength(Node start, List<Node> path) {
+		double length = 0.;
+		for(Node n : path) {
+			length += start.getDistance(n);
+			start = n;
+		}
+		return length;
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void shortestPathTreeTest(Board b) {
+		Node source = NodeProvider.getRandomNode();
+		ShortestPathTree tree = b.getShortestPathTree(source);
+		List<Node> targets = new ArrayList<Node>(b.getNodes());
+		for(int i = 0; i < 10; ++i) {
+			targets.add(NodeProvider.getRandomNode());
+		}
+		for(Node target : targets) {
+			List<Node> expected = b.getShortestPath(source, target);
+			List<Node> path = tree.getPath(target);
+			if(expected == null) {
+				assert path == null;
+				assert tree.getDistance(target) == Double.POSITIVE_INFINITY;
+				continue;
+			}
+			double length = getLength(source, expected);
+			assert path.get(path.size() - 1).equals(target);
+			assert Rounding.isEqual(getLength(source, path), length);
+			assert Rounding.isEqual(tree.getDistance(target), length);
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void reducedGraphTest(Board b) {
+		// overlapping polygons let the full graph cut through them
+		Board full = getSeparateBoard(b);
+		Board reduced = new Board(full.toArray(new Polygon[0]));
+		reduced.setReducedGraph(true);
+		List<Node> ends = new ArrayList<Node>(full.getNodes());
+		for(int i = 0; i < 20; ++i) {
+			ends.add(NodeProvider.getRandomNode());
+		}
+		for(int i = 0; i < ends.size() - 1; ++i) {
+			Node a = ends.get(i), z = ends.get(ends.size() - i - 1);
+			List<Node> expected = full.getShortestPath(a, z);
+			List<Node> path = reduced.getShortestPath(a, z);
+			assert expected == null ? path == null
+			                        : Rounding.isEqual(getLength(a, path),
+			                                           getLength(a, expected));
+		}
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void touchingReducedGraphTest() {
+		// paths may run along the seam between the two rectangles, and bend
+		// at the corner of the top one
+		Polygon[] polygons = {
+			new Polygon(new Node(24., 16.), new Node(32., 16.),
+			            new Node(32., 28.), new Node(24., 28.)),
+			new Polygon(new Node(20., 0.), new Node(28., 0.),
+			            new Node(28., 16.), new Node(20., 16.))
+		};
+		List<Polygon> all = new ArrayList<Polygon>();
+		all.addAll(Arrays.asList(getTouchingPolygons()));
+		all.addAll(Arrays.asList(polygons));
+		Board full = new Board(all.toArray(new Polygon[0]));
+		Board reduced = new Board(all.toArray(new Polygon[0]));
+		reduced.setReducedGraph(true);
+		List<Node> ends = new ArrayList<Node>();
+		for(double x = -1.; x < 34.; x += 1.5) {
+			for(double y = -1.; y < 30.; y += 1.5) {
+				if(!full.isInsidePolygon(new Node(x, y))) {
+					ends.add(new Node(x, y));
+				}
+			}
+		}
+		ends.add(0, new Node(21.5, 23.5)); // around the corner at (32, 16)
+		ends.add(new Node(32.5, -10.));
+		for(int i = 0; i < ends.size() - 1; ++i) {
+			Node a = ends.get(i), z = ends.get(ends.size() - i - 1);
+			List<Node> expected = full.getShortestPath(a, z);
+			List<Node> path = reduced.getShortestPath(a, z);
+			assert expected == null ? path == null
+			                        : Rounding.isEqual(getLength(a, path),
+			                                           getLength(a, expected));
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void bidirectionalSearchTest(Board b) {
+		Board both = new Board(b.toArray(new Polygon[0]));
+		both.setSearchEngine(new BidirectionalSearch());
+		List<Node> ends = new ArrayList<Node>(b.getNodes());
+		for(int i = 0; i < 20; ++i) {
+			ends.add(NodeProvider.getRandomNode());
+		}
+		for(int i = 0; i < ends.size() - 1; ++i) {
+			Node a = ends.get(i), z = ends.get(ends.size() - i - 1);
+			List<Node> expected = b.getShortestPath(a, z);
+			List<Node> path = both.getShortestPath(a, z);
+			if(expected == null) {
+				assert path == null;
+				continue;
+			}
+			assert path.get(path.size() - 1).equals(z);
+			Node previous = a;
+			for(Node n : path) {
+				assert b.isVisible(previous, n);
+				previous = n;
+			}
+			assert Rounding.isEqual(getLength(a, path), getLength(a, expected));
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void freeSpaceSearchTest(Board b) {
+		assertFreeSpacePaths(getSeparateBoard(b), new ArrayList<Node>());
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void touchingFreeSpaceTest() {
+		Board b = new Board(getTouchingPolygons());
+		List<Node> ends = new ArrayList<Node>();
+		for(double x = -1.; x < 17.; x += 1.5) {
+			for(double y = -1.; y < 17.; y += 1.5) {
+				if(!b.isInsidePolygon(new Node(x, y))) {
+					ends.add(new Node(x, y));
+				}
+			}
+		}
+		assertFreeSpacePaths(b, ends);
+	}
+	
+	/**
+	 * Tests the paths <code>FreeSpaceSearch</code> finds on a board between
+	 * the given ends, and a few random ones, against those of
+	 * <code>AStarSearch</code>.
+	 */
+	private static void assertFreeSpacePaths(Board exact, List<Node> ends) {
+		Board mesh = new Board(exact.toArray(new Polygon[0]));
+		mesh.setSearchEngine(new FreeSpaceSearch());
+		ends.addAll(exact.getNodes());
+		for(int i = 0; i < 20; ++i) {
+			Node n = NodeProvider.getRandomNode();
+			if(!exact.isInsidePolygon(n)) {
+				ends.add(n);
+			}
+		}
+		for(int i = 0; i < ends.size() - 1; ++i) {
+			Node a = ends.get(i), z = ends.get(ends.size() - i - 1);
+			List<Node> expected = exact.getShortestPath(a, z);
+			List<Node> path = mesh.getShortestPath(a, z);
+			if(expected == null) {
+				assert path == null;
+				continue;
+			}
+			// any path found must be possible, and no shorter than the best
+			assert path.get(path.size() - 1).equals(z);
+			Node previous = a;
+			for(Node n : path) {
+				assert exact.isVisible(previous, n);
+				assert previous == a || !n.equals(previous); // no repeats
+				previous = n;
+			}
+			double length = getLength(a, path);
+			double best = getLength(a, expected);
+			assert length > best || Rounding.isEqual(length, best);
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void boundedSearchTest(Board b) {
+		WeightedAStarSearch weighted = new WeightedAStarSearch(1.5);
+		AnytimeSearch quick = new AnytimeSearch(3., .5, 0, TimeUnit.SECONDS);
+		AnytimeSearch patient = new AnytimeSearch(3., .5, 1, TimeUnit.MINUTES);
+		for(int i = 0; i < 20; ++i) {
+			Node a = NodeProvider.getRandomNode();
+			Node z = NodeProvider.getRandomNode();
+			List<Node> expected = b.getShortestPath(a, z);
+			PathResult first = quick.search(b, a, z);
+			PathResult last = patient.search(b, a, z);
+			if(expected == null) {
+				assert weighted.getShortestPath(b, a, z) == null;
+				assert first.getPath() == null && last.getPath() == null;
+				continue;
+			}
+			double best = getLength(a, expected);
+			double length = getLength(a, weighted.getShortestPath(b, a, z));
+			assert Rounding.isLessOrEqual(length, best * 1.5);
+			// a path is found even without any time, within the bound given
+			assert first.getBound() >= 1. && first.getBound() <= 3.;
+			length = getLength(a, first.getPath());
+			assert Rounding.isLessOrEqual(length, best * first.getBound());
+			assert last.getBound() == 1.;
+			assert Rounding.isEqual(getLength(a, last.getPath()), best);
+		}
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void limitedSearchTest(Board b) {
+		Node z = NodeProvider.getRandomNode();
+		b.add(BoardProvider.getSquare(z, 1.)); // walls the goal in
+		for(int i = 0; i < 10; ++i) {
+			Node a = NodeProvider.getRandomNode();
+			List<Node> expected = b.getShortestPath(a, z);
+			QueryOptions options = new QueryOptions();
+			options.setTimeout(1, TimeUnit.MINUTES);
+			PathResult result = b.getShortestPath(a, z, options);
+			assert result.getStatus() == (expected == null
+			                              ? PathResult.Status.UNREACHABLE
+			                              : PathResult.Status.FOUND);
+			
+			options.setMaxExpansions(0);
+			result = b.getShortestPath(a, z, options);
+			assert b.isVisible(a, z) ||
+			       result.getStatus() == PathResult.Status.TIMED_OUT;
+			b.setSearchEngine(new AnytimeSearch(2., .5, 1, TimeUnit.SECONDS));
+			result = b.getShortestPath(a, z, options);
+			assert b.isVisible(a, z) ||
+			       result.getStatus() == PathResult.Status.TIMED_OUT;
+			b.setSearchEngine(new AStarSearch());
+			
+			options = new QueryOptions();
+			options.setDeadline(System.nanoTime() - 1L);
+			result = b.getShortestPath(a, z, options);
+			assert result.getStatus() == PathResult.Status.TIMED_OUT;
+			assert result.getPath() == null;
+			
+			options = new QueryOptions();
+			options.cancel();
+			result = b.getShortestPath(a, z, options);
+			assert result.getStatus() == PathResult.Status.CANCELLED;
+			
+			options = new QueryOptions();
+			Thread.currentThread().interrupt();
+			result = b.getShortestPath(a, z, options);
+			boolean interrupted = Thread.interrupted(); // left set, clear it
+			assert interrupted;
+			assert result.getStatus() == PathResult.Status.CANCELLED;
+			options.setInterruptible(false);
+			Thread.currentThread().interrupt();
+			result = b.getShortestPath(a, z, options);
+			interrupted = Thread.interrupted();
+			assert interrupted;
+			assert result.getStatus() != PathResult.Status.CANCELLED;
+		}
+	}
+	
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void expandedTest(Board b) throws InterruptedException {
+		Board expanded = b.getExpanded(2.);
+		assert expanded.size() == b.size();
+		assert b.getExpanded(2.) == expanded; // cached
+		assert b.getExpanded(3.) != expanded;
+		try {
+			expanded.clear();
+			assert false;
+		} catch(UnsupportedOperationException e) {
+			// it is shared, so it may not be modified
+		}
+		try {
+			expanded.setSearchEngine(new BidirectionalSearch());
+			assert false;
+		} catch(UnsupportedOperationException e) {
+			// nor configured
+		}
+		// modifying the original drops its variants
+		b.add(BoardProvider.getSquare(NodeProvider.getRandomNode(), 1.));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Board updated = b.getExpanded(2., executor);
+			assert updated != expanded;
+			assert updated.size() == b.size();
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FrozenBoardTest {
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void snapshotTest(Board b) throws InterruptedException {
+		FrozenBoard f = b.freeze();
+		assert b.getLastSnapshot() == f && f.freeze() == f;
+		Polygon p = f.iterator().next();
+		b.remove(p);
+		assert f.contains(p) && !b.contains(p);
+		Board fresh = new Board(f.toArray(new Polygon[0]));
+		for(Node n : fresh.getNodes()) {
+			for(Node m : fresh.getNodes()) {
+				assert f.isVisible(n, m) == fresh.isVisible(n, m);
+			}
+		}
+	}
+	
+	@Test(groups={"visibility"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class,
+	      expectedExceptions=UnsupportedOperationException.class)
+	public void immutabilityTest(Board b) throws InterruptedException {
+		b.freeze().add(BoardProvider.getSquare(NodeProvider.getRandomNode(),
+		                                       1.));
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void concurrentQueryTest(Board b) throws Exception {
+		final FrozenBoard f = b.freeze();
+		final Node[] ends = new Node[16];
+		for(int i = 0; i < ends.length; ++i) {
+			ends[i] = NodeProvider.getRandomNode();
+		}
+		List<Callable<List<Node>>> queries =
+			new ArrayList<Callable<List<Node>>>();
+		for(int i = 0; i < ends.length - 1; ++i) {
+			final int k = i;
+			queries.add(new Callable<List<Node>>() {
+				public List<Node> call() {
+					return f.getShortestPath(ends[k], ends[k + 1]);
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Node>>> paths = executor.invokeAll(queries);
+			for(int i = 0; i < paths.size(); ++i) {
+				List<Node> expected = b.getShortestPath(ends[i], ends[i + 1]);
+				List<Node> path = paths.get(i).get();
+				assert expected == null ? path == null
+				                        : expected.equals(path);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+import pipeep.data.RandomNumber;
+
+import org.testng.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IncrementalPlannerTest {
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void replanTest(Board b) {
+		List<Polygon> added = new ArrayList<Polygon>();
+		Node goal = NodeProvider.getRandomNode();
+		IncrementalPlanner planner = new IncrementalPlanner(b, goal);
+		Node start = NodeProvider.getRandomNode();
+		for(int step = 0; step < 24; ++step) {
+			start = new Node(start.getX() + RandomNumber.getDouble(1.),
+			                 start.getY() + RandomNumber.getDouble(1.));
+			if(step % 6 == 2) {
+				Node center = NodeProvider.getRandomNode();
+				Polygon p = BoardProvider.getSquare(center, 5.);
+				added.add(p);
+				b.add(p);
+			} else if(step % 6 == 5) {
+				b.remove(added.remove(0));
+			} else if(step == 12) {
+				b.add(BoardProvider.getSquare(goal, 1.)); // walls the goal in
+			}
+			List<Node> path = planner.getShortestPath(start);
+			List<Node> expected = b.getShortestPath(start, goal);
+			assert expected == null ? path == null
+			                        : Math.abs(getLength(start, path) -
+			                                   getLength(start, expected))
+			                          < 1e-6;
+		}
+		planner.close();
+	}
+	
+	private static double getLength(Node start, List<Node> path) {
+		double length = 0.;
+		Node previous = start;
+		for(Node n : path) {
+			length += previous.getDistance(n);
+			previous = n;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,48 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.data.NodeProvider;
+
+import org.testng.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NavigationMeshCacheTest {
+	private static Map<Node, Boolean> getRow(int size) {
+		Map<Node, Boolean> row = new HashMap<Node, Boolean>();
+		for(int i = 0; i < size; ++i) {
+			row.put(NodeProvider.getRandomNode(), true);
+		}
+		return row;
+	}
+	
+	@Test(groups={"cache"}, dataProvider="doubleNodes",
+	      dataProviderClass=NodeProvider.class)
+	public void statisticsTest(Node a, Node b) {
+		NavigationMeshCache c = new NavigationMeshCache(10, false);
+		assert c.get(a) == null;
+		Map<Node, Boolean> row = getRow(3);
+		c.put(a, row);
+		assert c.get(a) == row;
+		assert c.getHitCount() == 1 && c.getMissCount() == 1;
+		assert c.getWeight() == 4;
+		assert c.get(b) == null;
+		assert c.getHitRate() == 1. / 3.;
+	}
+	
+	@Test(groups={"cache"}, dataProvider="doubleNodes",
+	      dataProviderClass=NodeProvider.class)
+	public void evictionTest(Node a, Node b) {
+		NavigationMeshCache c = new NavigationMeshCache(10, false);
+		Map<Node, Boolean> row = getRow(4);
+		c.put(a, row);
+		c.put(b, getRow(4));
+		assert c.size() == 2 && c.getEvictionCount() == 0;
+		// growing a row past the bound evicts the least recently used one
+		row.putAll(getRow(2));
+		c.update(a);
+		assert c.size() == 1 && c.getEvictionCount() == 1;
+		assert c.get(a) != null && c.get(b) == null;
+	}
+}
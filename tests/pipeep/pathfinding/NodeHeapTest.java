@@ -0,0 +1,46 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.data.RandomNumber;
+import pipeep.data.Settings;
+
+import org.testng.annotations.*;
+
+public class NodeHeapTest {
+	private static NodeHeap.Entry[] getRandomEntries(
+			NodeHeap<NodeHeap.Entry> h) {
+		NodeHeap.Entry[] entries =
+			new NodeHeap.Entry[Settings.DATA_POINTS * 10];
+		for(int i = 0; i < entries.length; ++i) {
+			entries[i] = new NodeHeap.Entry(new Node(i, i));
+			h.add(entries[i], RandomNumber.getDouble());
+		}
+		return entries;
+	}
+	
+	@Test(groups={"heap"})
+	public void orderingTest() {
+		NodeHeap<NodeHeap.Entry> h = new NodeHeap<NodeHeap.Entry>(2);
+		NodeHeap.Entry[] entries = getRandomEntries(h);
+		assert h.size() == entries.length;
+		double last = Double.NEGATIVE_INFINITY;
+		while(!h.isEmpty()) {
+			NodeHeap.Entry e = h.poll();
+			assert !e.isQueued();
+			assert e.getPriority() >= last;
+			last = e.getPriority();
+		}
+	}
+	
+	@Test(groups={"heap"})
+	public void decreaseKeyTest() {
+		NodeHeap<NodeHeap.Entry> h = new NodeHeap<NodeHeap.Entry>();
+		NodeHeap.Entry[] entries = getRandomEntries(h);
+		NodeHeap.Entry e = entries[entries.length / 2];
+		h.add(e, Double.NEGATIVE_INFINITY);
+		assert h.peek() == e;
+		h.remove(e);
+		assert !e.isQueued() && h.size() == entries.length - 1;
+		assert h.poll() != e;
+	}
+}
@@ -0,0 +1,129 @@
+package pipeep.pathfinding;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.data.BoardProvider;
+
+import org.testng.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PathCacheTest {
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void repeatTest(Board b) {
+		PathCache cache = new PathCache(8);
+		b.setPathCache(cache);
+		cache.resetStatistics();
+		List<Node> ends = new ArrayList<Node>();
+		for(int i = 0; i < 20; ++i) {
+			ends.add(NodeProvider.getRandomNode());
+		}
+		for(int i = 0; i < ends.size() - 1; ++i) {
+			Node a = ends.get(i), z = ends.get(i + 1);
+			List<Node> first = b.getShortestPath(a, z);
+			List<Node> again = b.getShortestPath(a, z);
+			assert first == null ? again == null : first.equals(again);
+			assert first == null || first != again; // copies
+			assert cache.size() <= cache.getCapacity();
+		}
+		assert cache.getHits() == ends.size() - 1;
+		assert cache.getMisses() == ends.size() - 1;
+		assert cache.getHitRate() == .5;
+		
+		// any change clears it
+		Node a = ends.get(0), z = ends.get(1);
+		b.getShortestPath(a, z);
+		b.add(BoardProvider.getSquare(z, 1.));
+		assert cache.size() == 0 && cache.getInvalidations() == 1;
+		List<Node> cached = b.getShortestPath(a, z);
+		b.setPathCache(null);
+		List<Node> fresh = b.getShortestPath(a, z);
+		assert cached == null ? fresh == null : cached.equals(fresh);
+	}
+	
+	@Test(groups={"pathfinding"}, dataProvider="singleBoard",
+	      dataProviderClass=BoardProvider.class)
+	public void reuseTest(Board b) {
+		PathCache cache = new PathCache(64);
+		cache.setReuseDistance(2.);
+		b.setPathCache(cache);
+		for(int i = 0; i < 20; ++i) {
+			Node a = NodeProvider.getRandomNode();
+			Node z = NodeProvider.getRandomNode();
+			b.getShortestPath(a, z);
+			long reused = cache.getApproximateHits();
+			Node near = a.add(new Node(1., -1.));
+			QueryOptions options = new QueryOptions();
+			PathResult result = b.getShortestPath(near, z, options);
+			if(cache.getApproximateHits() == reused) {
+				continue; // searched for
+			}
+			assert result.getBound() == Double.POSITIVE_INFINITY;
+			List<Node> path = result.getPath();
+			assert path.get(path.size() - 1).equals(z);
+			Node previous = near;
+			for(Node n : path) {
+				assert b.isVisible(previous, n);
+				previous = n;
+			}
+		}
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void coarseTest() {
+		Board b = new Board(
+			new Polygon(new Node(4., -50.), new Node(6., -50.),
+			            new Node(6., 40.), new Node(4., 40.)),
+			BoardProvider.getSquare(new Node(19., 9.), .5)
+		);
+		b.setPathCache(new PathCache(8, 10.));
+		b.getShortestPath(new Node(0., 0.), new Node(20., 0.));
+		
+		// snaps to the same cells, but the last leg is blocked by the square
+		Node start = new Node(3., -4.), goal = new Node(24., -4.);
+		List<Node> path = b.getShortestPath(start, goal);
+		assert path.get(path.size() - 1).equals(goal);
+		Node previous = start;
+		for(Node n : path) {
+			assert b.isVisible(previous, n);
+			previous = n;
+		}
+		assert b.getPathCache().getMisses() == 2;
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void boundTest() {
+		Board b = new Board(
+			new Polygon(new Node(4., -50.), new Node(6., -50.),
+			            new Node(6., 40.), new Node(4., 40.))
+		);
+		b.setSearchEngine(new WeightedAStarSearch(2.));
+		b.setPathCache(new PathCache(8));
+		Node a = new Node(0., 0.), z = new Node(20., 0.);
+		b.getShortestPath(a, z);
+		PathResult result = b.getShortestPath(a, z, new QueryOptions());
+		assert b.getPathCache().getHits() == 1;
+		assert result.getBound() == 2.;
+	}
+	
+	@Test(groups={"pathfinding"})
+	public void snappedBoundTest() {
+		Board b = new Board(
+			new Polygon(new Node(4., -50.), new Node(6., -50.),
+			            new Node(6., 40.), new Node(4., 40.))
+		);
+		b.setPathCache(new PathCache(8, 10.));
+		b.getShortestPath(new Node(0., 0.), new Node(20., 0.));
+		
+		// snaps to the same cells, so the path is shared, but not optimal
+		PathResult result = b.getShortestPath(new Node(1., 1.),
+		                                      new Node(21., 1.),
+		                                      new QueryOptions());
+		assert b.getPathCache().getHits() == 0;
+		assert b.getPathCache().getApproximateHits() == 1;
+		assert result.getBound() == Double.POSITIVE_INFINITY;
+	}
+}
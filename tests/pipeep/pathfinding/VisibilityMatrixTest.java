@@ -0,0 +1,38 @@
+package pipeep.pathfinding;
+
+import pipeep.data.RandomNumber;
+import pipeep.data.Settings;
+
+import org.testng.annotations.*;
+
+public class VisibilityMatrixTest {
+	@Test(groups={"matrix"})
+	public void unknownTest() {
+		VisibilityMatrix m = new VisibilityMatrix(Settings.DATA_POINTS);
+		for(int i = 0; i < m.size(); ++i) {
+			assert m.get(i, i) == VisibilityMatrix.VISIBLE;
+			for(int k = 0; k < i; ++k) {
+				assert m.get(i, k) == VisibilityMatrix.UNKNOWN;
+			}
+		}
+	}
+	
+	@Test(groups={"matrix"})
+	public void symmetryTest() {
+		int size = Settings.DATA_POINTS * 10;
+		VisibilityMatrix m = new VisibilityMatrix(size);
+		int[][] expected = new int[size][size];
+		for(int i = 0; i < size; ++i) {
+			for(int k = 0; k < i; ++k) {
+				expected[i][k] = RandomNumber.rand.nextInt(3);
+				m.set(k, i, expected[i][k]);
+			}
+		}
+		for(int i = 0; i < size; ++i) {
+			for(int k = 0; k < i; ++k) {
+				assert m.get(i, k) == expected[i][k];
+				assert m.get(k, i) == expected[i][k];
+			}
+		}
+	}
+}
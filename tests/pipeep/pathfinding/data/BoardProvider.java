@@ -0,0 +1,155 @@
+package pipeep.pathfinding.data;
+
+import pipeep.geometry.Node;
+import pipeep.geometry.Polygon;
+import pipeep.geometry.data.NodeProvider;
+import pipeep.pathfinding.Board;
+import pipeep.data.RandomNumber;
+import pipeep.data.Settings;
+
+import org.testng.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+public class BoardProvider {
+	@DataProvider(name="singleBoard")
+	public static Object[][] getRandomBoards() {
+		Object[][] result = new Object[Settings.DATA_POINTS][1];
+		for(int i = 0; i < result.length; ++i) {
+			result[i][0] = getScatteredBoard(Settings.DATA_POINTS * 2);
+		}
+		return result;
+	}
+	
+	/**
+	 * Gives a board of randomly placed, randomly sized squares, which may
+	 * overlap.
+	 */
+	public static Board getScatteredBoard(int count) {
+		Board b = new Board();
+		for(int i = 0; i < count; ++i) {
+			b.add(getSquare(NodeProvider.getRandomNode(),
+			                Math.abs(RandomNumber.getDouble(
+			                	Settings.STD_DEV / 10.
+			                )) + 1.));
+		}
+		return b;
+	}
+	
+	/**
+	 * Gives a counter-clockwise square, centered on the given node.
+	 */
+	public static Polygon getSquare(Node center, double halfSide) {
+		double x = center.getX(), y = center.getY();
+		return new Polygon(new Node(x - halfSide, y - halfSide),
+		                   new Node(x + halfSide, y - halfSide),
+		                   new Node(x + halfSide, y + halfSide),
+		                   new Node(x - halfSide, y + halfSide));
+	}
+	
+	/**
+	 * Gives a counter-clockwise, L-shaped polygon, filling the same square as
+	 * <code>getSquare</code> but for its top right quarter.
+	 */
+	public static Polygon getLShape(Node center, double halfSide) {
+		double x = center.getX(), y = center.getY();
+		return new Polygon(new Node(x - halfSide, y - halfSide),
+		                   new Node(x + halfSide, y - halfSide),
+		                   new Node(x + halfSide, y),
+		                   new Node(x, y),
+		                   new Node(x, y + halfSide),
+		                   new Node(x - halfSide, y + halfSide));
+	}
+	
+	/**
+	 * Gives a maze of <code>cells</code> by <code>cells</code> square cells,
+	 * carved by a randomized depth-first search, so that there is exactly one
+	 * way through the corridors between any two cells. Every straight run of
+	 * wall is a single thin rectangle, and walls overlap where they meet.
+	 */
+	public static Board getMazeBoard(int cells, double cellSize) {
+		// horizontal[r][c] is the wall below cell (r, c), vertical[r][c] the
+		// one to its left, with an extra row and column for the outer walls
+		boolean[][] horizontal = new boolean[cells + 1][cells];
+		boolean[][] vertical = new boolean[cells][cells + 1];
+		for(boolean[] row : horizontal) {
+			Arrays.fill(row, true);
+		}
+		for(boolean[] row : vertical) {
+			Arrays.fill(row, true);
+		}
+		boolean[] visited = new boolean[cells * cells];
+		Deque<Integer> stack = new ArrayDeque<Integer>();
+		stack.push(0);
+		visited[0] = true;
+		int[] neighbours = new int[4];
+		while(!stack.isEmpty()) {
+			int cell = stack.peek(), r = cell / cells, c = cell % cells;
+			int count = 0;
+			if(r > 0 && !visited[cell - cells]) {
+				neighbours[count++] = cell - cells;
+			}
+			if(r < cells - 1 && !visited[cell + cells]) {
+				neighbours[count++] = cell + cells;
+			}
+			if(c > 0 && !visited[cell - 1]) {
+				neighbours[count++] = cell - 1;
+			}
+			if(c < cells - 1 && !visited[cell + 1]) {
+				neighbours[count++] = cell + 1;
+			}
+			if(count == 0) {
+				stack.pop();
+				continue;
+			}
+			int next = neighbours[RandomNumber.rand.nextInt(count)];
+			if(next == cell - cells) {
+				horizontal[r][c] = false;
+			} else if(next == cell + cells) {
+				horizontal[r + 1][c] = false;
+			} else if(next == cell - 1) {
+				vertical[r][c] = false;
+			} else {
+				vertical[r][c + 1] = false;
+			}
+			visited[next] = true;
+			stack.push(next);
+		}
+		
+		Board b = new Board();
+		double t = cellSize / 20.;
+		for(int r = 0; r <= cells; ++r) {
+			for(int c = 0; c < cells; ++c) {
+				int start = c;
+				while(c < cells && horizontal[r][c]) {
+					++c;
+				}
+				if(c > start) {
+					b.add(getRectangle(start * cellSize - t, r * cellSize - t,
+					                   c * cellSize + t, r * cellSize + t));
+				}
+			}
+		}
+		for(int c = 0; c <= cells; ++c) {
+			for(int r = 0; r < cells; ++r) {
+				int start = r;
+				while(r < cells && vertical[r][c]) {
+					++r;
+				}
+				if(r > start) {
+					b.add(getRectangle(c * cellSize - t, start * cellSize - t,
+					                   c * cellSize + t, r * cellSize + t));
+				}
+			}
+		}
+		return b;
+	}
+	
+	private static Polygon getRectangle(double x0, double y0, double x1,
+	                                    double y1) {
+		return new Polygon(new Node(x0, y0), new Node(x1, y0),
+		                   new Node(x1, y1), new Node(x0, y1));
+	}
+}